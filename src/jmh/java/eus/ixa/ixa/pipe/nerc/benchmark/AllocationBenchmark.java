@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.TaggingContext;
+
+/**
+ * Time and allocation per token of the tagging loop of {@link Annotate} in
+ * every tagging mode. Every invocation tags a corpus of exactly
+ * {@link #TOKENS} tokens and counts as that many operations, so that with
+ * the JMH gc profiler, {@code -prof gc}, {@code gc.alloc.rate.norm} is the
+ * number of bytes allocated per token. {@link #annotateNEsToKAF} includes
+ * adding the entities to the document, which is parsed before every
+ * invocation and not measured; {@link #nercToSpans} only the tagging of the
+ * token arrays.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+
+  /**
+   * The tokens of the corpus.
+   */
+  public static final int TOKENS = 20000;
+
+  @Param({ "dictTag", "statistical", "post", "numeric" })
+  public String mode;
+  @Param({ "" })
+  public String model;
+
+  private Annotate annotator;
+  private List<String[]> tokens;
+  private String naf;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Path dictPath = SyntheticCorpus
+        .writeDictionary(Files.createTempDirectory("nerc-dicts"));
+    this.annotator = new Annotate(
+        SyntheticCorpus.properties(this.mode, this.model, dictPath));
+    this.tokens = SyntheticCorpus.sentencesOfTokens(TOKENS, 42);
+    this.naf = SyntheticCorpus.naf(this.tokens, "en");
+  }
+
+  /**
+   * A freshly parsed copy of the document for every invocation, as the
+   * annotation adds the entities layer to it.
+   */
+  @State(Scope.Thread)
+  public static class Document {
+
+    private KAFDocument kaf;
+
+    @Setup(Level.Invocation)
+    public void parse(final AllocationBenchmark benchmark)
+        throws IOException, JDOMException {
+      this.kaf = KAFDocument.createFromStream(
+          new StringReader(benchmark.naf));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public KAFDocument annotateNEsToKAF(final Document document)
+      throws IOException {
+    this.annotator.annotateNEsToKAF(document.kaf);
+    return document.kaf;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public void nercToSpans(final Blackhole blackhole) {
+    final TaggingContext context = this.annotator.getTaggingContext();
+    try {
+      for (final String[] sentence : this.tokens) {
+        blackhole.consume(this.annotator.nercToSpans(context, sentence));
+      }
+    } finally {
+      this.annotator.releaseTaggingContext(context);
+    }
+  }
+
+}
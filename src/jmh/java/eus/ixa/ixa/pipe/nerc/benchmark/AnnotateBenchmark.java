@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.ml.utils.Span;
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.TaggingContext;
+
+/**
+ * Tagging throughput of {@link Annotate} in every tagging mode: statistical,
+ * dictTag (dictionary only), post (statistical post-processed with the
+ * dictionaries) and numeric (statistical plus the numeric lexer). Every mode
+ * but dictTag needs a model, given with {@code -p model=path}.
+ * {@link #annotateNEsToKAF} measures the whole NAF annotation of a document;
+ * {@link #nercToSpans} only the tagging of its token arrays.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnnotateBenchmark {
+
+  @Param({ "dictTag", "statistical", "post", "numeric" })
+  public String mode;
+  @Param({ "100", "1000" })
+  public int sentences;
+  @Param({ "" })
+  public String model;
+
+  private Annotate annotator;
+  private List<String[]> tokens;
+  private String naf;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Path dictPath = SyntheticCorpus
+        .writeDictionary(Files.createTempDirectory("nerc-dicts"));
+    this.annotator = new Annotate(
+        SyntheticCorpus.properties(this.mode, this.model, dictPath));
+    this.tokens = SyntheticCorpus.sentences(this.sentences, 42);
+    this.naf = SyntheticCorpus.naf(this.tokens, "en");
+  }
+
+  /**
+   * A freshly parsed copy of the document for every invocation, as the
+   * annotation adds the entities layer to it.
+   */
+  @State(Scope.Thread)
+  public static class Document {
+
+    private KAFDocument kaf;
+
+    @Setup(Level.Invocation)
+    public void parse(final AnnotateBenchmark benchmark)
+        throws IOException, JDOMException {
+      this.kaf = KAFDocument.createFromStream(
+          new StringReader(benchmark.naf));
+    }
+  }
+
+  @Benchmark
+  public KAFDocument annotateNEsToKAF(final Document document)
+      throws IOException {
+    this.annotator.annotateNEsToKAF(document.kaf);
+    return document.kaf;
+  }
+
+  @Benchmark
+  public void nercToSpans(final Blackhole blackhole) {
+    final TaggingContext context = this.annotator.getTaggingContext();
+    try {
+      for (final String[] sentence : this.tokens) {
+        final Span[] spans = this.annotator.nercToSpans(context, sentence);
+        blackhole.consume(spans);
+      }
+    } finally {
+      this.annotator.releaseTaggingContext(context);
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.ml.nerc.DictionariesNERTagger;
+import eus.ixa.ixa.pipe.ml.resources.Dictionaries;
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelerME;
+import eus.ixa.ixa.pipe.nerc.DictionaryTrie;
+
+/**
+ * Sentences per second of the dictionary lookup, with the
+ * {@link DictionariesNERTagger} of ixa-pipe-ml, whose overlapping spans are
+ * dropped as the tagger does, and with the compiled {@link DictionaryTrie},
+ * over the same {@link #SENTENCES} sentences and synthetic gazetteer.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryBenchmark {
+
+  /**
+   * The sentences looked up by every invocation.
+   */
+  public static final int SENTENCES = 20000;
+
+  private DictionariesNERTagger dictionaries;
+  private DictionaryTrie trie;
+  private List<String[]> sentences;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final String dictPath = SyntheticCorpus
+        .writeDictionary(Files.createTempDirectory("nerc-dicts")).toString();
+    this.dictionaries = new DictionariesNERTagger(new Dictionaries(dictPath));
+    this.trie = DictionaryTrie.compile(dictPath);
+    this.sentences = SyntheticCorpus.sentences(SENTENCES, 42);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SENTENCES)
+  public void dictionaries(final Blackhole blackhole) {
+    for (final String[] sentence : this.sentences) {
+      blackhole.consume(SequenceLabelerME
+          .dropOverlappingSpans(this.dictionaries.nercToSpansExact(sentence)));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SENTENCES)
+  public void trie(final Blackhole blackhole) {
+    for (final String[] sentence : this.sentences) {
+      blackhole.consume(this.trie.nercToSpansExact(sentence));
+    }
+  }
+
+}
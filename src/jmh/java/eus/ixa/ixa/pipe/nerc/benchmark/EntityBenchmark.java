@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+
+/**
+ * Time per entity of {@link Annotate#annotateNEsToKAF} for documents of
+ * growing size, with the dictionary only tagger, whose entities are known in
+ * advance. Every invocation annotates documents with {@link #ENTITIES}
+ * entities in all, split into documents of {@link #entitiesPerDocument}
+ * entities, and counts as that many operations, so the score is the time per
+ * entity: it stays flat as the documents grow while adding the entities to a
+ * document is linear in its size, and grows with them otherwise. The documents
+ * are parsed before every invocation and not measured.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntityBenchmark {
+
+  /**
+   * The entities annotated by every invocation.
+   */
+  public static final int ENTITIES = 30000;
+
+  @Param({ "300", "3000", "30000" })
+  public int entitiesPerDocument;
+
+  private Annotate annotator;
+  private String naf;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, JDOMException {
+    if (ENTITIES % this.entitiesPerDocument != 0) {
+      throw new IllegalStateException("The entities per document must divide "
+          + ENTITIES);
+    }
+    final Path dictPath = SyntheticCorpus
+        .writeDictionary(Files.createTempDirectory("nerc-dicts"));
+    this.annotator = new Annotate(
+        SyntheticCorpus.properties("dictTag", "", dictPath));
+    this.naf = SyntheticCorpus.naf(
+        SyntheticCorpus.sentencesOfEntities(this.entitiesPerDocument, 42),
+        "en");
+    // the score is only per entity if every generated name is tagged
+    final KAFDocument kaf = KAFDocument
+        .createFromStream(new StringReader(this.naf));
+    this.annotator.annotateNEsToKAF(kaf);
+    if (kaf.getEntities().size() != this.entitiesPerDocument) {
+      throw new IllegalStateException("Tagged " + kaf.getEntities().size()
+          + " entities instead of " + this.entitiesPerDocument);
+    }
+  }
+
+  /**
+   * Freshly parsed copies of the document for every invocation, as the
+   * annotation adds the entities layer to them.
+   */
+  @State(Scope.Thread)
+  public static class Documents {
+
+    private KAFDocument[] documents;
+
+    @Setup(Level.Invocation)
+    public void parse(final EntityBenchmark benchmark)
+        throws IOException, JDOMException {
+      this.documents = new KAFDocument[ENTITIES
+          / benchmark.entitiesPerDocument];
+      for (int i = 0; i < this.documents.length; i++) {
+        this.documents[i] = KAFDocument.createFromStream(
+            new StringReader(benchmark.naf));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ENTITIES)
+  public void annotateNEsToKAF(final Documents documents,
+      final Blackhole blackhole) throws IOException {
+    for (final KAFDocument kaf : documents.documents) {
+      this.annotator.annotateNEsToKAF(kaf);
+      blackhole.consume(kaf);
+    }
+  }
+
+}
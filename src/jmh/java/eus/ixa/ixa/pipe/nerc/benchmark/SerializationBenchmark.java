@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.NAFStreamTagger;
+import eus.ixa.ixa.pipe.nerc.TokenStreamTagger;
+
+/**
+ * Cost of reading and writing the documents around the tagging: NAF parsing
+ * and serialization, the CoNLL and OpenNLP serializers of an annotated
+ * document and the streaming taggers, which read NAF or tokenized text and
+ * write OpenNLP or CoNLL directly. The tagging uses the dictionaries only, so that no
+ * model is needed and the input and output costs dominate.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+  @Param({ "100", "1000" })
+  public int sentences;
+
+  private Annotate annotator;
+  private String naf;
+  private String tokens;
+  private KAFDocument annotated;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, JDOMException {
+    this.annotator = new Annotate(SyntheticCorpus.properties("dictTag", null,
+        SyntheticCorpus
+            .writeDictionary(Files.createTempDirectory("nerc-dicts"))));
+    final List<String[]> corpus = SyntheticCorpus.sentences(this.sentences,
+        42);
+    this.naf = SyntheticCorpus.naf(corpus, "en");
+    this.tokens = SyntheticCorpus.tokens(corpus);
+    this.annotated = KAFDocument.createFromStream(new StringReader(this.naf));
+    this.annotator.annotateNEsToKAF(this.annotated);
+  }
+
+  @Benchmark
+  public KAFDocument parseNAF() throws IOException, JDOMException {
+    return KAFDocument.createFromStream(new StringReader(this.naf));
+  }
+
+  @Benchmark
+  public String serializeNAF() {
+    return this.annotated.toString();
+  }
+
+  @Benchmark
+  public String toCoNLL2002() {
+    return this.annotator.annotateNEsToCoNLL2002(this.annotated);
+  }
+
+  @Benchmark
+  public String toCoNLL2003() {
+    return this.annotator.annotateNEsToCoNLL2003(this.annotated);
+  }
+
+  /**
+   * The OpenNLP output tags the sentences again, as it is built from the
+   * tagger spans rather than from the entities layer.
+   */
+  @Benchmark
+  public String toOpenNLP() {
+    return this.annotator.annotateNEsToOpenNLP(this.annotated);
+  }
+
+  @Benchmark
+  public String streamNAFToOpenNLP() throws IOException, JDOMException {
+    final StringWriter writer = new StringWriter();
+    new NAFStreamTagger(new StringReader(this.naf)).annotate(this.annotator,
+        "opennlp", writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String streamTokensToCoNLL2002() throws IOException {
+    final StringWriter writer = new StringWriter();
+    new TokenStreamTagger(new BufferedReader(new StringReader(this.tokens)),
+        "tokens").annotate(this.annotator, "conll02", writer);
+    return writer.toString();
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.ByteStreams;
+
+import eus.ixa.ixa.pipe.nerc.FramedProtocol;
+import eus.ixa.ixa.pipe.nerc.NERTaggerServer;
+
+/**
+ * Round trips to a {@link NERTaggerServer} running in the benchmark JVM:
+ * {@link #lineRoundTrip} opens a connection per document with the line based
+ * protocol, while {@link #framedRoundTrip} sends every document over the
+ * persistent connection of each benchmark thread. The server tags in the
+ * given mode, dictTag by default so that no model is needed, and replies in
+ * the given output format; {@code -p nio=true} uses the non-blocking front
+ * end. The blocking server keeps a worker busy for every open framed
+ * connection, so its {@code threads} must not be lower than the benchmark
+ * threads given with {@code -t}.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+
+  @Param({ "dictTag" })
+  public String mode;
+  @Param({ "" })
+  public String model;
+  @Param({ "100" })
+  public int sentences;
+  @Param({ "naf", "conll02" })
+  public String outputFormat;
+  @Param({ "false", "true" })
+  public boolean nio;
+  @Param({ "4" })
+  public int threads;
+
+  private int port;
+  private byte[] document;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, InterruptedException {
+    final Properties properties = SyntheticCorpus.properties(this.mode,
+        this.model, SyntheticCorpus
+            .writeDictionary(Files.createTempDirectory("nerc-dicts")));
+    try (ServerSocket free = new ServerSocket(0)) {
+      this.port = free.getLocalPort();
+    }
+    properties.setProperty("port", String.valueOf(this.port));
+    properties.setProperty("outputFormat", this.outputFormat);
+    properties.setProperty("threads", String.valueOf(this.threads));
+    properties.setProperty("nio", String.valueOf(this.nio));
+    final Thread server = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        new NERTaggerServer(properties);
+      }
+    });
+    server.setDaemon(true);
+    server.start();
+    this.document = SyntheticCorpus
+        .naf(SyntheticCorpus.sentences(this.sentences, 42), "en")
+        .getBytes(StandardCharsets.UTF_8);
+    waitForServer();
+  }
+
+  private void waitForServer() throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      try {
+        new Socket("localhost", this.port).close();
+        return;
+      } catch (final IOException e) {
+        Thread.sleep(100);
+      }
+    }
+    throw new IllegalStateException("The server did not start");
+  }
+
+  /**
+   * The persistent framed connection of a benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class Connection {
+
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    @Setup(Level.Trial)
+    public void open(final ServerBenchmark benchmark) throws IOException {
+      this.socket = new Socket("localhost", benchmark.port);
+      this.socket.setTcpNoDelay(true);
+      this.out = new DataOutputStream(
+          new BufferedOutputStream(this.socket.getOutputStream()));
+      this.in = new DataInputStream(
+          new BufferedInputStream(this.socket.getInputStream()));
+      this.out.write(FramedProtocol.MAGIC);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+      this.socket.close();
+    }
+  }
+
+  @Benchmark
+  public byte[] framedRoundTrip(final Connection connection)
+      throws IOException {
+    FramedProtocol.writeFrame(connection.out, FramedProtocol.DOCUMENT,
+        this.document);
+    connection.out.flush();
+    return FramedProtocol.readFrame(connection.in).getPayload();
+  }
+
+  @Benchmark
+  public byte[] lineRoundTrip() throws IOException {
+    try (Socket socket = new Socket("localhost", this.port)) {
+      final OutputStream out = new BufferedOutputStream(
+          socket.getOutputStream());
+      out.write(this.document);
+      out.write("\n<ENDOFDOCUMENT>\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      return ByteStreams.toByteArray(socket.getInputStream());
+    }
+  }
+
+}
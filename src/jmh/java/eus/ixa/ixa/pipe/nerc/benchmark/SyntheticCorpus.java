@@ -0,0 +1,315 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmark;
+
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+import ixa.kaflib.WF;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import eus.ixa.ixa.pipe.ml.utils.Flags;
+
+/**
+ * Synthetic corpora for the benchmarks, generated locally with a fixed seed so
+ * that every run measures the same text. The sentences mix common words with
+ * person, organization and location names of a generated gazetteer, some of
+ * them multi-token, and numeric expressions for the numeric lexer.
+ * <p>
+ * The main method writes a corpus to disk:
+ *
+ * <pre>
+ * java -cp ... eus.ixa.ixa.pipe.nerc.benchmark.SyntheticCorpus outputDir sentences [documents]
+ * </pre>
+ *
+ * which creates the NAF documents, the same sentences as tokenized text and
+ * the gazetteer for the dictionary modes.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public final class SyntheticCorpus {
+
+  private static final String[] WORDS = { "the", "a", "of", "in", "to", "and",
+      "said", "on", "for", "with", "was", "by", "after", "market", "year",
+      "government", "team", "report", "city", "company", "new", "first",
+      "last", "week", "talks", "minister", "shares", "match", "visit", "," };
+  private static final String[] NUMERIC = { "1999", "2016", "12", "March",
+      "June", "%", "percent", "$", "million", "10:30" };
+  private static final String[] FIRST_NAMES = { "John", "Maria", "Peter",
+      "Ane", "Jon", "Laura", "Michael", "Sarah", "David", "Elena" };
+  private static final String[] SURNAMES = { "Smith", "Garcia", "Agirre",
+      "Brown", "Lopez", "Taylor", "Etxeberria", "Wilson", "Martin", "Jones" };
+  private static final String[] PLACES = { "Bilbao", "London", "New York",
+      "Donostia", "Paris", "Buenos Aires", "Berlin", "Tokyo", "Madrid",
+      "San Francisco" };
+  private static final String[] ORGANIZATIONS = { "Acme Corp", "United Nations",
+      "Real Sociedad", "European Commission", "Iberdrola", "BBC",
+      "Athletic Club", "Reuters", "World Bank", "Euskaltel" };
+  /**
+   * The file name of the gazetteer written by
+   * {@link #writeDictionary(Path)}.
+   */
+  public static final String DICTIONARY_NAME = "synthetic-names.txt";
+
+  private SyntheticCorpus() {
+  }
+
+  /**
+   * Generate sentences.
+   *
+   * @param count
+   *          the number of sentences
+   * @param seed
+   *          the random seed
+   * @return the tokens of every sentence
+   */
+  public static List<String[]> sentences(final int count, final long seed) {
+    final Random random = new Random(seed);
+    final List<String[]> sentences = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final List<String> tokens = new ArrayList<>();
+      final int length = 8 + random.nextInt(23);
+      while (tokens.size() < length) {
+        final int kind = random.nextInt(20);
+        String[] words;
+        if (kind < 2) {
+          words = new String[] { FIRST_NAMES[random.nextInt(10)],
+              SURNAMES[random.nextInt(10)] };
+        } else if (kind < 3) {
+          words = PLACES[random.nextInt(10)].split(" ");
+        } else if (kind < 4) {
+          words = ORGANIZATIONS[random.nextInt(10)].split(" ");
+        } else if (kind < 5) {
+          words = new String[] { NUMERIC[random.nextInt(NUMERIC.length)] };
+        } else {
+          words = new String[] { WORDS[random.nextInt(WORDS.length)] };
+        }
+        Collections.addAll(tokens, words);
+      }
+      tokens.add(".");
+      sentences.add(tokens.toArray(new String[tokens.size()]));
+    }
+    return sentences;
+  }
+
+  /**
+   * Generate sentences with the given number of tokens in all, the last one
+   * cut short to match it.
+   *
+   * @param tokens
+   *          the number of tokens
+   * @param seed
+   *          the random seed
+   * @return the tokens of every sentence
+   */
+  public static List<String[]> sentencesOfTokens(final int tokens,
+      final long seed) {
+    // every sentence has at least 9 tokens
+    final List<String[]> generated = sentences(tokens / 9 + 1, seed);
+    final List<String[]> sentences = new ArrayList<>();
+    int count = 0;
+    for (final String[] sentence : generated) {
+      if (count + sentence.length >= tokens) {
+        sentences.add(Arrays.copyOf(sentence, tokens - count));
+        break;
+      }
+      sentences.add(sentence);
+      count += sentence.length;
+    }
+    return sentences;
+  }
+
+  /**
+   * Generate sentences with the given number of gazetteer entities in all,
+   * three per sentence: a person, a location and an organization, separated
+   * by common words so that the dictionary tags exactly those.
+   *
+   * @param entities
+   *          the number of entities, a multiple of 3
+   * @param seed
+   *          the random seed
+   * @return the tokens of every sentence
+   */
+  public static List<String[]> sentencesOfEntities(final int entities,
+      final long seed) {
+    if (entities % 3 != 0) {
+      throw new IllegalArgumentException("The entities must be a multiple "
+          + "of 3: " + entities);
+    }
+    final Random random = new Random(seed);
+    final List<String[]> sentences = new ArrayList<>(entities / 3);
+    for (int i = 0; i < entities / 3; i++) {
+      final List<String> tokens = new ArrayList<>();
+      tokens.add(FIRST_NAMES[random.nextInt(10)]);
+      tokens.add(SURNAMES[random.nextInt(10)]);
+      Collections.addAll(tokens, "said", "in");
+      Collections.addAll(tokens, PLACES[random.nextInt(10)].split(" "));
+      Collections.addAll(tokens, "that", "the");
+      Collections.addAll(tokens, ORGANIZATIONS[random.nextInt(10)].split(" "));
+      Collections.addAll(tokens, "was", "first", ".");
+      sentences.add(tokens.toArray(new String[tokens.size()]));
+    }
+    return sentences;
+  }
+
+  /**
+   * Build a NAF document with the text and terms layers of the sentences.
+   *
+   * @param sentences
+   *          the sentences
+   * @param lang
+   *          the language of the document
+   * @return the NAF document
+   */
+  public static String naf(final List<String[]> sentences, final String lang) {
+    final KAFDocument kaf = new KAFDocument(lang, "v3");
+    int offset = 0;
+    for (int s = 0; s < sentences.size(); s++) {
+      for (final String token : sentences.get(s)) {
+        final WF wf = kaf.newWF(offset, token, s + 1);
+        offset += token.length() + 1;
+        final List<WF> wfs = new ArrayList<>(1);
+        wfs.add(wf);
+        final Term term = kaf.newTerm(KAFDocument.newWFSpan(wfs));
+        term.setLemma(token.toLowerCase());
+        term.setMorphofeat(Character.isUpperCase(token.charAt(0)) ? "NNP"
+            : "NN");
+      }
+    }
+    return kaf.toString();
+  }
+
+  /**
+   * Format the sentences as tokenized text, one sentence per line.
+   *
+   * @param sentences
+   *          the sentences
+   * @return the tokenized text
+   */
+  public static String tokens(final List<String[]> sentences) {
+    final StringBuilder sb = new StringBuilder();
+    for (final String[] sentence : sentences) {
+      sb.append(String.join(" ", sentence)).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Write the gazetteer of the generated names, one tab separated entry and
+   * class per line.
+   *
+   * @param dir
+   *          the dictionaries directory, created if needed
+   * @return the directory
+   * @throws IOException
+   *           if io error
+   */
+  public static Path writeDictionary(final Path dir) throws IOException {
+    Files.createDirectories(dir);
+    try (BufferedWriter writer = Files.newBufferedWriter(
+        dir.resolve(DICTIONARY_NAME), StandardCharsets.UTF_8)) {
+      for (final String first : FIRST_NAMES) {
+        for (final String surname : SURNAMES) {
+          writer.write(first + " " + surname + "\tPERSON\n");
+        }
+      }
+      for (final String place : PLACES) {
+        writer.write(place + "\tLOCATION\n");
+      }
+      for (final String organization : ORGANIZATIONS) {
+        writer.write(organization + "\tORGANIZATION\n");
+      }
+    }
+    return dir;
+  }
+
+  /**
+   * Get the annotation properties of a tagging mode.
+   *
+   * @param mode
+   *          statistical, dictTag, post or numeric
+   * @param model
+   *          the model, needed by every mode but dictTag
+   * @param dictPath
+   *          the dictionaries directory of the dictTag and post modes
+   * @return the properties
+   */
+  public static Properties properties(final String mode, final String model,
+      final Path dictPath) {
+    if (!mode.equals("dictTag") && (model == null || model.isEmpty())) {
+      throw new IllegalStateException("The " + mode
+          + " mode needs a model: run the benchmark with -p model=path");
+    }
+    final Properties properties = new Properties();
+    properties.setProperty("model", model == null ? "" : model);
+    properties.setProperty("language", "en");
+    properties.setProperty("clearFeatures", Flags.DEFAULT_FEATURE_FLAG);
+    properties.setProperty("ruleBasedOption",
+        mode.equals("numeric") ? "numeric" : Flags.DEFAULT_LEXER);
+    properties.setProperty("dictTag", mode.equals("dictTag") ? "tag"
+        : mode.equals("post") ? "post" : Flags.DEFAULT_DICT_OPTION);
+    properties.setProperty("dictPath",
+        mode.equals("dictTag") || mode.equals("post") ? dictPath.toString()
+            : Flags.DEFAULT_DICT_PATH);
+    return properties;
+  }
+
+  /**
+   * Write a synthetic corpus: the NAF documents, their tokenized text and the
+   * gazetteer.
+   *
+   * @param args
+   *          the output directory, the sentences per document and optionally
+   *          the number of documents, 1 by default
+   * @throws IOException
+   *           if io error
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: SyntheticCorpus outputDir sentences [documents]");
+      System.exit(1);
+    }
+    final Path outputDir = Paths.get(args[0]);
+    final int sentences = Integer.parseInt(args[1]);
+    final int documents = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    Files.createDirectories(outputDir);
+    for (int i = 0; i < documents; i++) {
+      final List<String[]> corpus = sentences(sentences, i);
+      Files.write(outputDir.resolve("doc-" + i + ".naf"),
+          naf(corpus, "en").getBytes(StandardCharsets.UTF_8));
+      Files.write(outputDir.resolve("doc-" + i + ".tok"),
+          tokens(corpus).getBytes(StandardCharsets.UTF_8));
+    }
+    writeDictionary(outputDir.resolve("dictionaries"));
+    System.err.println("-> Wrote " + documents + " documents of " + sentences
+        + " sentences to " + outputDir);
+  }
+
+}
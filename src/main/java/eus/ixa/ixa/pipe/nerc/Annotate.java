@@ -16,28 +16,36 @@
 
 package eus.ixa.ixa.pipe.nerc;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-
-import com.google.common.collect.Lists;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import eus.ixa.ixa.pipe.ml.StatisticalSequenceLabeler;
-import eus.ixa.ixa.pipe.ml.nerc.DictionariesNERTagger;
 import eus.ixa.ixa.pipe.ml.nerc.NumericNERTagger;
-import eus.ixa.ixa.pipe.ml.resources.Dictionaries;
 import eus.ixa.ixa.pipe.ml.sequence.SequenceLabel;
 import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelSample;
 import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelerME;
 import eus.ixa.ixa.pipe.ml.utils.Flags;
 import eus.ixa.ixa.pipe.ml.utils.Span;
-import eus.ixa.ixa.pipe.ml.utils.StringUtils;
 import ixa.kaflib.Entity;
 import ixa.kaflib.KAFDocument;
 import ixa.kaflib.Term;
@@ -46,6 +54,10 @@ import ixa.kaflib.WF;
 /**
  * Annotation class for Named Entities in ixa-pipe-nerc. Use this class for
  * examples on using ixa-pipe-ml API for Named Entity tagging.
+ * <p>
+ * An instance can be shared by many threads: the model and dictionaries are
+ * loaded once, and the state changing while a document is tagged is kept in
+ * {@link TaggingContext}s taken from a pool for each call.
  * 
  * @author ragerri
  * @version 2016-04-22
@@ -54,21 +66,10 @@ import ixa.kaflib.WF;
 public class Annotate {
 
   /**
-   * The SequenceLabeler to do the annotation.
-   */
-  private StatisticalSequenceLabeler nerTagger;
-  /**
-   * The dictionaries.
+   * The dictionary Named Entity Tagger, shared with the other annotators of
+   * the same dictionary path through {@link SharedModels}.
    */
-  private Dictionaries dictionaries;
-  /**
-   * The dictionary Named Entity Tagger.
-   */
-  private DictionariesNERTagger nerTaggerDict;
-  /**
-   * The Named Entity Lexer for rule-based name tagging.
-   */
-  private NumericNERTagger numericNerTaggerLexer;
+  private DictionaryTrie nerTaggerDict;
   /**
    * True if the NER tagger is statistical.
    */
@@ -90,6 +91,42 @@ public class Annotate {
    * Clear features after every sentence or when a -DOCSTART- mark appears.
    */
   private String clearFeatures;
+  /**
+   * The properties used to create the sequence labelers of the contexts.
+   */
+  private final Properties properties;
+  /**
+   * The pool tagging the sentences of a document in parallel, null if the
+   * sentences are tagged sequentially.
+   */
+  private final ForkJoinPool sentencePool;
+  /**
+   * The idle tagging contexts. Every call, and every sentence worker, takes
+   * its own context, as the adaptive features are kept in the labeler.
+   */
+  private final ConcurrentLinkedQueue<TaggingContext> contexts = new ConcurrentLinkedQueue<>();
+  /**
+   * The stage timers and counters.
+   */
+  private final NERCMetrics metrics = NERCMetrics.getInstance();
+  /**
+   * The spans of the sentences tagged last, null if the sentences are not
+   * cached.
+   */
+  private final SentenceCache sentenceCache;
+  /**
+   * The tagger of the dictionary only configuration, null if a statistical
+   * model is used.
+   */
+  private final DictionaryTagger dictionaryTagger;
+  /**
+   * The fingerprints of the sentences in incremental mode, null otherwise.
+   */
+  private final SentenceFingerprints fingerprints;
+  /**
+   * True once the annotator is closed.
+   */
+  private volatile boolean closed;
 
   /**
    * It manages the use of the three different name finders:
@@ -100,7 +137,17 @@ public class Annotate {
    * gazetteer and "post" post-processes the probabilistic annotation giving
    * priority to the gazetteer. Obviously, this option depends on the --dictPath
    * parameter being correctly specified. The --lexer numeric option annotates
-   * numeric entities (dates, percentages, and so on) via rules.
+   * numeric entities (dates, percentages, and so on) via rules. If the
+   * sentenceThreads property is greater than 1 the sentences of each document
+   * are tagged in parallel. If the sentenceCache property is greater than 0
+   * and the spans of a sentence depend on its tokens only, that is, if
+   * clearFeatures is 'yes' or no statistical model is used, the spans of that
+   * number of sentences are cached. With --dictTag 'tag' the sentences are
+   * tagged by a {@link DictionaryTagger}, which splits them by tokens rather
+   * than sentences among the sentenceThreads threads. If the incremental
+   * property is true and the sentences are tagged independently, only the
+   * sentences changed since the previous annotation of a document are tagged
+   * again.
    * 
    * @param properties
    *          the properties
@@ -110,13 +157,92 @@ public class Annotate {
   public Annotate(final Properties properties) throws IOException {
 
     this.clearFeatures = properties.getProperty("clearFeatures");
+    this.properties = properties;
+    int sentenceThreads = Integer
+        .parseInt(properties.getProperty("sentenceThreads", "1"));
+    this.sentencePool = sentenceThreads > 1 ? new ForkJoinPool(sentenceThreads)
+        : null;
     annotateOptions(properties);
+    if (statistical) {
+      SharedModels.acquireModel(properties.getProperty("model"));
+    }
+    try {
+      // load the model now rather than on the first request
+      contexts.add(newTaggingContext());
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    int sentenceCacheSize = Integer
+        .parseInt(properties.getProperty("sentenceCache", "0"));
+    if (sentenceCacheSize > 0 && isStateless()) {
+      this.sentenceCache = new SentenceCache(sentenceCacheSize);
+    } else {
+      if (sentenceCacheSize > 0) {
+        System.err.println("-> Sentence cache disabled: the statistical "
+            + "model keeps adaptive features unless clearFeatures is yes");
+      }
+      this.sentenceCache = null;
+    }
+    this.dictionaryTagger = dictTag ? new DictionaryTagger(nerTaggerDict,
+        lexerTagger, sentenceCache, sentencePool) : null;
+    boolean incremental = Boolean
+        .parseBoolean(properties.getProperty("incremental", "false"));
+    if (incremental && isStateless()
+        && SentenceFingerprints.canRemoveEntities()) {
+      String dictionaries = nerTaggerDict == null ? ""
+          : nerTaggerDict.getDigest();
+      this.fingerprints = new SentenceFingerprints(
+          statistical ? getModelVersion(properties.getProperty("model")) : "",
+          properties.getProperty("dictTag"), dictionaries,
+          String.valueOf(lexerTagger));
+    } else {
+      if (incremental && !isStateless()) {
+        System.err.println("-> Incremental mode disabled: the statistical "
+            + "model keeps adaptive features unless clearFeatures is yes");
+      } else if (incremental) {
+        System.err.println("-> Incremental mode disabled: this kaflib "
+            + "version cannot remove the entities of the changed sentences");
+      }
+      this.fingerprints = null;
+    }
+  }
+
+  /**
+   * Identify a model by its path, size and modification time, so that a model
+   * trained again and saved over the same path is told apart.
+   *
+   * @param model
+   *          the model path or resource name
+   * @return the path, followed by the size and modification time of the file
+   *         if there is one
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  private static String getModelVersion(final String model)
+      throws IOException {
+    Path path = Paths.get(model);
+    if (!Files.isRegularFile(path)) {
+      return model;
+    }
+    return model + " " + Files.size(path) + " "
+        + Files.getLastModifiedTime(path).toMillis();
+  }
+
+  /**
+   * Get the clearFeatures option: 'yes' to reset the adaptive features after
+   * every sentence, 'docstart' to reset them at -DOCSTART- marks or 'no'.
+   * 
+   * @return the clearFeatures option
+   */
+  public final String getClearFeatures() {
+    return clearFeatures;
   }
 
   /**
    * Generates the right options for NERC tagging: using the
    * {@link StatisticalSequenceLabeler} or using the
-   * {@link DictionariesNERTagger} or a combination of those with the
+   * {@link DictionaryTrie} or a combination of those with the
    * {@link NumericNERTagger}.
    * 
    * @param properties
@@ -140,21 +266,18 @@ public class Annotate {
         lexerTagger = true;
       }
       if (!dictPath.equals(Flags.DEFAULT_DICT_PATH)) {
-        if (dictionaries == null) {
-          dictionaries = new Dictionaries(dictPath);
-          nerTaggerDict = new DictionariesNERTagger(dictionaries);
+        if (nerTaggerDict == null) {
+          nerTaggerDict = SharedModels.acquireDictionary(dictPath);
         }
         if (dictOption.equalsIgnoreCase("tag")) {
           dictTag = true;
           postProcess = false;
           statistical = false;
         } else if (dictOption.equalsIgnoreCase("post")) {
-          nerTagger = new StatisticalSequenceLabeler(properties);
           statistical = true;
           postProcess = true;
           dictTag = false;
         } else {
-          nerTagger = new StatisticalSequenceLabeler(properties);
           statistical = true;
           dictTag = false;
           postProcess = false;
@@ -165,16 +288,93 @@ public class Annotate {
       statistical = true;
       dictTag = false;
       postProcess = false;
-      nerTagger = new StatisticalSequenceLabeler(properties);
     } else {
       lexerTagger = false;
       statistical = true;
       dictTag = false;
       postProcess = false;
-      nerTagger = new StatisticalSequenceLabeler(properties);
     }
   }
 
+  /**
+   * Check whether the spans of a sentence depend on its tokens only, as no
+   * adaptive features are carried from one sentence to the next.
+   * 
+   * @return true if the sentences are tagged independently
+   */
+  private boolean isStateless() {
+    return !statistical || clearFeatures.equalsIgnoreCase("yes");
+  }
+
+  /**
+   * Get a tagging context for the sentences of a document. The context must be
+   * given back with {@link #releaseTaggingContext(TaggingContext)} once the
+   * document is tagged and not be used by other threads in the meantime.
+   * 
+   * @return an idle tagging context, created if all of them are in use
+   */
+  public final TaggingContext getTaggingContext() {
+    TaggingContext context = contexts.poll();
+    if (context == null) {
+      context = newTaggingContext();
+    }
+    return context;
+  }
+
+  /**
+   * Give back a tagging context, clearing its adaptive features and the
+   * tokens left in its buffers.
+   * 
+   * @param context
+   *          the context obtained from {@link #getTaggingContext()}
+   */
+  public final void releaseTaggingContext(final TaggingContext context) {
+    if (closed) {
+      return;
+    }
+    context.clearAdaptiveData();
+    context.clearBuffers();
+    contexts.add(context);
+  }
+
+  /**
+   * Close the annotator: shut down the sentence threads and give back the
+   * model and dictionaries, which are freed once no other annotator uses
+   * them and this one is no longer referenced. The calls in progress finish
+   * tagging their sentences in the calling thread. Closing it again does
+   * nothing.
+   */
+  public final synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (sentencePool != null) {
+      sentencePool.shutdown();
+    }
+    if (dictionaryTagger != null) {
+      dictionaryTagger.close();
+    }
+    contexts.clear();
+    if (statistical) {
+      SharedModels.releaseModel(properties.getProperty("model"));
+    }
+    if (nerTaggerDict != null) {
+      SharedModels.releaseDictionary(properties.getProperty("dictPath"));
+    }
+  }
+
+  /**
+   * Create a tagging context. The labelers share the model, which
+   * ixa-pipe-ml loads only once.
+   * 
+   * @return the new context
+   */
+  private TaggingContext newTaggingContext() {
+    return new TaggingContext(
+        statistical ? SharedModels.newLabeler(properties) : null);
+  }
+
   /**
    * Classify Named Entities creating the entities layer in the
    * {@link KAFDocument} using statistical models, post-processing and/or
@@ -187,72 +387,655 @@ public class Annotate {
    */
   public final void annotateNEsToKAF(final KAFDocument kaf) throws IOException {
 
-    List<Span> allSpans = null;
     List<List<WF>> sentences = kaf.getSentences();
+    // index built once per document to resolve the entity spans into terms
+    Map<String, Term> wfIdsToTerms = getWFIdsToTerms(kaf);
 
+    TaggingContext context = getTaggingContext();
+    try {
+      if (fingerprints != null) {
+        annotateChangedSentences(kaf, context, sentences, wfIdsToTerms);
+      } else if (sentencePool == null) {
+        annotateSentences(kaf, context, sentences, wfIdsToTerms);
+      } else {
+        List<String[]> sentenceTokens = getSentenceTokens(sentences);
+        Span[][] sentenceSpans = nercToSpans(context, sentenceTokens);
+        long start = System.nanoTime();
+        addEntities(kaf, context, sentences, sentenceTokens, sentenceSpans,
+            wfIdsToTerms);
+        metrics.record(NERCMetrics.Stage.ENTITIES, start);
+      }
+    } finally {
+      releaseTaggingContext(context);
+    }
+  }
+
+  /**
+   * Classify the Named Entities of many documents, creating the entities layer
+   * of each of them. With --dictTag 'tag' the sentences of all the documents
+   * are tagged together by the {@link DictionaryTagger}, so that a batch of
+   * short documents is spread over the sentenceThreads threads too; otherwise
+   * the documents are annotated one after the other.
+   * 
+   * @param kafs
+   *          the documents
+   * @throws IOException
+   *           throws exception if problems with the kaf documents
+   */
+  public final void annotateNEsToKAF(final List<KAFDocument> kafs)
+      throws IOException {
+    if (dictionaryTagger == null || fingerprints != null) {
+      for (KAFDocument kaf : kafs) {
+        annotateNEsToKAF(kaf);
+      }
+      return;
+    }
+    List<List<List<WF>>> documentSentences = new ArrayList<>(kafs.size());
+    List<String[]> sentenceTokens = new ArrayList<>();
+    for (KAFDocument kaf : kafs) {
+      List<List<WF>> sentences = kaf.getSentences();
+      documentSentences.add(sentences);
+      sentenceTokens.addAll(getSentenceTokens(sentences));
+    }
+    TaggingContext context = getTaggingContext();
+    try {
+      Span[][] sentenceSpans = dictionaryTagger.tag(sentenceTokens, context);
+      int offset = 0;
+      for (int d = 0; d < kafs.size(); d++) {
+        KAFDocument kaf = kafs.get(d);
+        List<List<WF>> sentences = documentSentences.get(d);
+        int end = offset + sentences.size();
+        long start = System.nanoTime();
+        addEntities(kaf, context, sentences,
+            sentenceTokens.subList(offset, end),
+            Arrays.copyOfRange(sentenceSpans, offset, end),
+            getWFIdsToTerms(kaf));
+        metrics.record(NERCMetrics.Stage.ENTITIES, start);
+        offset = end;
+      }
+    } finally {
+      releaseTaggingContext(context);
+    }
+  }
+
+  /**
+   * Tag the sentences of a document one after the other, adding the entities
+   * of every sentence as soon as it is tagged. The tokens and WF ids of the
+   * sentences are copied into the buffers of the context rather than into new
+   * arrays.
+   */
+  private void annotateSentences(KAFDocument kaf, TaggingContext context,
+      List<List<WF>> sentences, Map<String, Term> wfIdsToTerms) {
+    long entitiesNanos = 0;
+    for (List<WF> sentence : sentences) {
+      String[] tokens = context.getTokens(sentence.size());
+      String[] tokenIds = context.getTokenIds(sentence.size());
+      for (int i = 0; i < sentence.size(); i++) {
+        WF form = sentence.get(i);
+        tokens[i] = form.getForm();
+        tokenIds[i] = form.getId();
+      }
+      Span[] spans = nercToSpans(context, tokens);
+      long start = System.nanoTime();
+      addEntities(kaf, context, tokens, tokenIds, spans, wfIdsToTerms, 0);
+      entitiesNanos += System.nanoTime() - start;
+    }
+    metrics.add(NERCMetrics.Stage.ENTITIES, entitiesNanos);
+  }
+
+  /**
+   * Tag only the sentences of a document missing from the record of its
+   * previous annotation, see {@link SentenceFingerprints}. The entities of
+   * the recorded sentences found unchanged are kept as they are, those of
+   * the other recorded sentences are removed and the entities of the tagged
+   * sentences are added after the existing ones, numbered from the highest
+   * entity id of the document. The record is then replaced.
+   */
+  private void annotateChangedSentences(KAFDocument kaf,
+      TaggingContext context, List<List<WF>> sentences,
+      Map<String, Term> wfIdsToTerms) {
+    List<SentenceFingerprints.Sentence> recorded = SentenceFingerprints
+        .read(kaf);
+    Map<Long, Deque<SentenceFingerprints.Sentence>> recordedSentences = new HashMap<>();
+    for (SentenceFingerprints.Sentence sentence : recorded) {
+      Deque<SentenceFingerprints.Sentence> sameTokens = recordedSentences
+          .get(sentence.getFingerprint());
+      if (sameTokens == null) {
+        sameTokens = new ArrayDeque<>();
+        recordedSentences.put(sentence.getFingerprint(), sameTokens);
+      }
+      sameTokens.add(sentence);
+    }
+    Map<String, Entity> entities = getEntitiesById(kaf);
+    Map<String, Integer> wfPositions = getWFPositions(sentences);
+    List<String[]> sentenceTokens = getSentenceTokens(sentences);
+    long[] sentenceFingerprints = new long[sentences.size()];
+    SentenceFingerprints.Sentence[] record = new SentenceFingerprints.Sentence[sentences
+        .size()];
+    Set<String> keptIds = new HashSet<>();
+    List<Integer> changed = new ArrayList<>();
+    List<String[]> changedTokens = new ArrayList<>();
+    for (int s = 0; s < sentences.size(); s++) {
+      String[] tokens = sentenceTokens.get(s);
+      sentenceFingerprints[s] = fingerprints.fingerprint(tokens);
+      Deque<SentenceFingerprints.Sentence> sameTokens = recordedSentences
+          .get(sentenceFingerprints[s]);
+      SentenceFingerprints.Sentence previous = sameTokens == null ? null
+          : pollUnchanged(sameTokens, sentences.get(s), entities,
+              wfPositions);
+      if (previous != null) {
+        record[s] = previous;
+        for (int e = 0; e < previous.getEntityCount(); e++) {
+          keptIds.add(previous.getEntityId(e));
+        }
+        metrics.sentence(tokens.length, previous.getEntityCount());
+      } else {
+        changed.add(s);
+        changedTokens.add(tokens);
+      }
+    }
+    metrics.incremental(sentences.size() - changed.size(), changed.size());
+    Span[][] changedSpans = nercToSpans(context, changedTokens);
+    long start = System.nanoTime();
+    for (SentenceFingerprints.Sentence sentence : recorded) {
+      for (int e = 0; e < sentence.getEntityCount(); e++) {
+        Entity entity = entities.remove(sentence.getEntityId(e));
+        if (entity != null && !keptIds.contains(entity.getId())) {
+          SentenceFingerprints.removeEntity(kaf, entity);
+        }
+      }
+    }
+    int nextId = getNextEntityId(kaf);
+    int[] firstIds = new int[changed.size() + 1];
+    for (int i = 0; i < changed.size(); i++) {
+      List<WF> sentence = sentences.get(changed.get(i));
+      String[] tokenIds = context.getTokenIds(sentence.size());
+      for (int t = 0; t < sentence.size(); t++) {
+        tokenIds[t] = sentence.get(t).getId();
+      }
+      firstIds[i] = nextId;
+      nextId = addEntities(kaf, context, changedTokens.get(i), tokenIds,
+          changedSpans[i], wfIdsToTerms, nextId);
+    }
+    firstIds[changed.size()] = nextId;
+    metrics.record(NERCMetrics.Stage.ENTITIES, start);
+    if (!changed.isEmpty()) {
+      // the record of the tagged sentences is read back from their entities
+      Map<String, Entity> addedEntities = getEntitiesById(kaf);
+      for (int i = 0; i < changed.size(); i++) {
+        int s = changed.get(i);
+        int count = firstIds[i + 1] - firstIds[i];
+        String[] entityIds = new String[count];
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int e = 0; e < count; e++) {
+          entityIds[e] = "e" + (firstIds[i] + e);
+          Entity entity = addedEntities.get(entityIds[e]);
+          int[] span = entity == null ? null
+              : getSentenceSpan(entity, sentences.get(s), wfPositions);
+          // an entity not over the sentence tokens is removed next time
+          starts[e] = span == null ? -1 : span[0];
+          ends[e] = span == null ? -1 : span[1];
+        }
+        record[s] = new SentenceFingerprints.Sentence(sentenceFingerprints[s],
+            entityIds, starts, ends);
+      }
+    }
+    SentenceFingerprints.write(kaf, record);
+  }
+
+  /**
+   * Take the first of the recorded sentences with the tokens of a sentence
+   * whose entities are over that sentence, as the same tokens may be found in
+   * many sentences.
+   * 
+   * @return the recorded sentence or null if none is unchanged
+   */
+  private static SentenceFingerprints.Sentence pollUnchanged(
+      Deque<SentenceFingerprints.Sentence> sameTokens, List<WF> sentence,
+      Map<String, Entity> entities, Map<String, Integer> wfPositions) {
+    Iterator<SentenceFingerprints.Sentence> iterator = sameTokens.iterator();
+    while (iterator.hasNext()) {
+      SentenceFingerprints.Sentence recorded = iterator.next();
+      if (isUnchanged(recorded, sentence, entities, wfPositions)) {
+        iterator.remove();
+        return recorded;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Check that the entities of a recorded sentence are still in the document
+   * over the same tokens of the sentence.
+   */
+  private static boolean isUnchanged(SentenceFingerprints.Sentence recorded,
+      List<WF> sentence, Map<String, Entity> entities,
+      Map<String, Integer> wfPositions) {
+    for (int e = 0; e < recorded.getEntityCount(); e++) {
+      Entity entity = entities.get(recorded.getEntityId(e));
+      int[] span = entity == null ? null
+          : getSentenceSpan(entity, sentence, wfPositions);
+      if (span == null || span[0] != recorded.getStart(e)
+          || span[1] != recorded.getEnd(e)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the token span of an entity in a sentence.
+   * 
+   * @return the first token and the token after the last one, or null if the
+   *         entity is not over consecutive tokens of the sentence
+   */
+  private static int[] getSentenceSpan(Entity entity, List<WF> sentence,
+      Map<String, Integer> wfPositions) {
+    int first = Integer.MAX_VALUE;
+    int last = -1;
+    Set<String> wfIds = new HashSet<>();
+    for (Term term : entity.getTerms()) {
+      for (WF wf : term.getWFs()) {
+        Integer position = wfPositions.get(wf.getId());
+        if (position == null || sentence.get(position) != wf) {
+          return null;
+        }
+        wfIds.add(wf.getId());
+        first = Math.min(first, position);
+        last = Math.max(last, position);
+      }
+    }
+    if (last < 0 || wfIds.size() != last - first + 1) {
+      return null;
+    }
+    return new int[] { first, last + 1 };
+  }
+
+  /**
+   * Get the position of every WF in its sentence.
+   */
+  private static Map<String, Integer> getWFPositions(
+      List<List<WF>> sentences) {
+    Map<String, Integer> wfPositions = new HashMap<>();
+    for (List<WF> sentence : sentences) {
+      for (int i = 0; i < sentence.size(); i++) {
+        wfPositions.put(sentence.get(i).getId(), i);
+      }
+    }
+    return wfPositions;
+  }
+
+  private static Map<String, Entity> getEntitiesById(KAFDocument kaf) {
+    Map<String, Entity> entities = new HashMap<>();
+    for (Entity entity : kaf.getEntities()) {
+      entities.put(entity.getId(), entity);
+    }
+    return entities;
+  }
+
+  /**
+   * Get the number of the entity after the highest e&lt;number&gt; id of a
+   * document.
+   */
+  private static int getNextEntityId(KAFDocument kaf) {
+    int nextId = 1;
+    for (Entity entity : kaf.getEntities()) {
+      String id = entity.getId();
+      if (id.length() > 1 && id.charAt(0) == 'e') {
+        try {
+          nextId = Math.max(nextId, Integer.parseInt(id.substring(1)) + 1);
+        } catch (NumberFormatException e) {
+          // not numbered by ixa-pipe-nerc
+        }
+      }
+    }
+    return nextId;
+  }
+
+  /**
+   * Get the tokens of every sentence of a document.
+   */
+  private static List<String[]> getSentenceTokens(List<List<WF>> sentences) {
+    List<String[]> sentenceTokens = new ArrayList<>(sentences.size());
     for (List<WF> sentence : sentences) {
-      // process each sentence
       String[] tokens = new String[sentence.size()];
-      String[] tokenIds = new String[sentence.size()];
       for (int i = 0; i < sentence.size(); i++) {
         tokens[i] = sentence.get(i).getForm();
+      }
+      sentenceTokens.add(tokens);
+    }
+    return sentenceTokens;
+  }
+
+  /**
+   * Add the entities of the tagged sentences to the document, in sentence
+   * order whatever the order the sentences were tagged in.
+   */
+  private void addEntities(KAFDocument kaf, TaggingContext context,
+      List<List<WF>> sentences, List<String[]> sentenceTokens,
+      Span[][] sentenceSpans, Map<String, Term> wfIdsToTerms) {
+    addEntities(kaf, context, sentences, sentenceTokens, sentenceSpans,
+        wfIdsToTerms, 0);
+  }
+
+  /**
+   * Add the entities of the tagged sentences to the document numbering them
+   * from nextId, or letting the document number them if nextId is 0.
+   * 
+   * @return the number of the entity after the last one added
+   */
+  private int addEntities(KAFDocument kaf, TaggingContext context,
+      List<List<WF>> sentences, List<String[]> sentenceTokens,
+      Span[][] sentenceSpans, Map<String, Term> wfIdsToTerms, int nextId) {
+    for (int s = 0; s < sentences.size(); s++) {
+      List<WF> sentence = sentences.get(s);
+      String[] tokenIds = context.getTokenIds(sentence.size());
+      for (int i = 0; i < sentence.size(); i++) {
         tokenIds[i] = sentence.get(i).getId();
       }
-      if (statistical) {
-        if (clearFeatures.equalsIgnoreCase("docstart")
-            && tokens[0].startsWith("-DOCSTART-")) {
-          nerTagger.clearAdaptiveData();
-        }
-        Span[] statSpans = nerTagger.seqToSpans(tokens);
-        allSpans = Lists.newArrayList(statSpans);
+      nextId = addEntities(kaf, context, sentenceTokens.get(s), tokenIds,
+          sentenceSpans[s], wfIdsToTerms, nextId);
+    }
+    return nextId;
+  }
+
+  /**
+   * Add the entities of a tagged sentence to the document numbering them
+   * from nextId, or letting the document number them if nextId is 0.
+   * 
+   * @return the number of the entity after the last one added
+   */
+  private int addEntities(KAFDocument kaf, TaggingContext context,
+      String[] tokens, String[] tokenIds, Span[] spans,
+      Map<String, Term> wfIdsToTerms, int nextId) {
+    if (spans.length == 0) {
+      return nextId;
+    }
+    if (statistical) {
+      List<SequenceLabel> names = context.getNerTagger()
+          .getSequencesFromSpans(tokens, spans);
+      for (SequenceLabel name : names) {
+        nextId = addEntity(kaf, name.getSpan(), name.getType(), tokenIds,
+            wfIdsToTerms, nextId);
       }
+    } else {
+      for (Span name : spans) {
+        nextId = addEntity(kaf, name, name.getType(), tokenIds, wfIdsToTerms,
+            nextId);
+      }
+    }
+    return nextId;
+  }
+
+  /**
+   * Add an entity to the document if all its WFs are referenced by terms.
+   * 
+   * @return the number of the next entity
+   */
+  private int addEntity(KAFDocument kaf, Span nameSpan, String type,
+      String[] tokenIds, Map<String, Term> wfIdsToTerms, int nextId) {
+    List<Term> nameTerms = getTermsFromWFIds(tokenIds, nameSpan.getStart(),
+        nameSpan.getEnd(), wfIdsToTerms);
+    if (nameTerms == null) {
+      return nextId;
+    }
+    ixa.kaflib.Span<Term> neSpan = KAFDocument.newTermSpan(nameTerms);
+    List<ixa.kaflib.Span<Term>> references = new ArrayList<ixa.kaflib.Span<Term>>();
+    references.add(neSpan);
+    Entity neEntity = nextId > 0 ? kaf.newEntity("e" + nextId, references)
+        : kaf.newEntity(references);
+    neEntity.setType(type);
+    return nextId > 0 ? nextId + 1 : 0;
+  }
+
+  /**
+   * Tag the Named Entities of a single sentence, which does not share adaptive
+   * features with any other sentence. Use
+   * {@link #nercToSpans(TaggingContext, String[])} to tag the sentences of a
+   * document.
+   * 
+   * @param tokens
+   *          the tokens of the sentence
+   * @return the spans of the Named Entities, without overlaps
+   */
+  public final Span[] nercToSpans(final String[] tokens) {
+    TaggingContext context = getTaggingContext();
+    try {
+      return nercToSpans(context, tokens);
+    } finally {
+      releaseTaggingContext(context);
+    }
+  }
+
+  /**
+   * Tag the Named Entities of a sentence using statistical models,
+   * post-processing, dictionaries and/or the numeric lexer. The sentences of a
+   * document need to be tagged in document order with the same context, as
+   * the adaptive features of the statistical model depend on the previous
+   * sentences unless clearFeatures is 'yes'. The spans of the sentences in
+   * the sentence cache are not tagged again.
+   * 
+   * @param context
+   *          the tagging context of the document
+   * @param tokens
+   *          the tokens of the sentence
+   * @return the spans of the Named Entities, without overlaps
+   */
+  public final Span[] nercToSpans(final TaggingContext context,
+      final String[] tokens) {
+    if (dictionaryTagger != null) {
+      return dictionaryTagger.tag(tokens, context);
+    }
+    if (sentenceCache != null) {
+      Span[] cachedSpans = sentenceCache.get(tokens);
+      if (cachedSpans != null) {
+        metrics.sentenceCacheHit();
+        metrics.sentence(tokens.length, cachedSpans.length);
+        return cachedSpans;
+      }
+      metrics.sentenceCacheMiss();
+    }
+    // without a dictionary tagger the statistical model is always used
+    StatisticalSequenceLabeler labeler = context.getNerTagger();
+    if (clearFeatures.equalsIgnoreCase("docstart")
+        && tokens[0].startsWith("-DOCSTART-")) {
+      labeler.clearAdaptiveData();
+    }
+    long start = System.nanoTime();
+    Span[] statSpans = labeler.seqToSpans(tokens);
+    metrics.record(NERCMetrics.Stage.STATISTICAL, start);
+    Span[] allSpansArray;
+    if (!postProcess && !lexerTagger) {
+      // the spans decoded from the labels of a sequence never overlap
+      allSpansArray = statSpans;
+    } else {
+      List<Span> allSpans = context.getSpans();
+      Collections.addAll(allSpans, statSpans);
       if (postProcess) {
-        Span[] dictSpans = nerTaggerDict.nercToSpansExact(tokens);
+        start = System.nanoTime();
+        Span[] dictSpans = nerTaggerDict.nercToSpansExact(tokens,
+            context.getTokenIndexes(tokens.length));
+        metrics.record(NERCMetrics.Stage.DICTIONARY, start);
         Span.postProcessDuplicatedSpans(allSpans, dictSpans);
         Span.concatenateSpans(allSpans, dictSpans);
       }
-      if (dictTag) {
-        Span[] dictOnlySpans = nerTaggerDict.nercToSpansExact(tokens);
-        allSpans = Lists.newArrayList(dictOnlySpans);
-      }
       if (lexerTagger) {
-        String sentenceText = StringUtils.getStringFromTokens(tokens);
-        StringReader stringReader = new StringReader(sentenceText);
-        BufferedReader sentenceReader = new BufferedReader(stringReader);
-        numericNerTaggerLexer = new NumericNERTagger(sentenceReader);
-        Span[] numericSpans = numericNerTaggerLexer.nercToSpans(tokens);
+        start = System.nanoTime();
+        Span[] numericSpans = context.getNumericNerTaggerLexer()
+            .nercToSpans(tokens);
+        metrics.record(NERCMetrics.Stage.NUMERIC, start);
         Span.concatenateSpans(allSpans, numericSpans);
       }
-      Span[] allSpansArray = SequenceLabelerME
-          .dropOverlappingSpans(allSpans.toArray(new Span[allSpans.size()]));
-      List<SequenceLabel> names = new ArrayList<>();
-      if (statistical) {
-        names = nerTagger.getSequencesFromSpans(tokens, allSpansArray);
-      } else {
-        names = nerTaggerDict.getNamesFromSpans(allSpansArray, tokens);
+      allSpansArray = SequenceLabelerME.dropOverlappingSpans(
+          allSpans.toArray(context.getSpanArray(allSpans.size())));
+    }
+    if (clearFeatures.equalsIgnoreCase("yes")) {
+      labeler.clearAdaptiveData();
+    }
+    metrics.sentence(tokens.length, allSpansArray.length);
+    if (sentenceCache != null) {
+      sentenceCache.put(tokens, allSpansArray);
+    }
+    return allSpansArray;
+  }
+
+  /**
+   * Tag the Named Entities of the sentences of a document. With the
+   * sentenceThreads property the document is split into parts which do not
+   * share adaptive features and the parts are tagged in parallel, each by a
+   * worker with its own tagging context: every sentence if clearFeatures is
+   * 'yes' or no statistical model is used, the sections starting at
+   * -DOCSTART- marks if it is 'docstart' and the whole document if it is
+   * 'no'. The sentences within a part are tagged in document order. With
+   * --dictTag 'tag' the {@link DictionaryTagger} tags them instead.
+   * 
+   * @param context
+   *          the tagging context of the document
+   * @param sentences
+   *          the tokens of every sentence
+   * @return the spans of every sentence, in the order of the sentences
+   */
+  private Span[][] nercToSpans(final TaggingContext context,
+      final List<String[]> sentences) {
+    if (dictionaryTagger != null) {
+      return dictionaryTagger.tag(sentences, context);
+    }
+    final Span[][] sentenceSpans = new Span[sentences.size()][];
+    List<int[]> parts = getIndependentParts(sentences);
+    if (sentencePool == null || sentencePool.isShutdown()
+        || parts.size() < 2) {
+      for (int i = 0; i < sentences.size(); i++) {
+        sentenceSpans[i] = nercToSpans(context, sentences.get(i));
       }
-      for (SequenceLabel name : names) {
-        Integer startIndex = name.getSpan().getStart();
-        Integer endIndex = name.getSpan().getEnd();
-        List<String> wfIds = Arrays
-            .asList(Arrays.copyOfRange(tokenIds, startIndex, endIndex));
-        List<String> wfTermIds = getAllWFIdsFromTerms(kaf);
-        if (checkTermsRefsIntegrity(wfIds, wfTermIds)) {
-          List<Term> nameTerms = kaf.getTermsFromWFs(wfIds);
-          ixa.kaflib.Span<Term> neSpan = KAFDocument.newTermSpan(nameTerms);
-          List<ixa.kaflib.Span<Term>> references = new ArrayList<ixa.kaflib.Span<Term>>();
-          references.add(neSpan);
-          Entity neEntity = kaf.newEntity(references);
-          neEntity.setType(name.getType());
+      return sentenceSpans;
+    }
+    List<Callable<Void>> tasks = new ArrayList<>(parts.size());
+    for (final int[] part : parts) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          TaggingContext workerContext = getTaggingContext();
+          try {
+            for (int i = part[0]; i < part[1]; i++) {
+              sentenceSpans[i] = nercToSpans(workerContext, sentences.get(i));
+            }
+          } finally {
+            releaseTaggingContext(workerContext);
+          }
+          return null;
         }
+      });
+    }
+    try {
+      for (Future<Void> result : sentencePool.invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (RejectedExecutionException e) {
+      // the annotator was closed while tagging
+      for (int i = 0; i < sentences.size(); i++) {
+        sentenceSpans[i] = nercToSpans(context, sentences.get(i));
       }
-      if (clearFeatures.equalsIgnoreCase("yes")) {
-        nerTagger.clearAdaptiveData();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while tagging sentences", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new RuntimeException(e.getCause());
     }
-    if (statistical) {
-      nerTagger.clearAdaptiveData();
+    return sentenceSpans;
+  }
+
+  /**
+   * Split the sentences of a document into the parts that can be tagged
+   * independently of each other. Sentences without shared adaptive features
+   * are grouped in blocks of consecutive sentences to keep the number of tasks
+   * proportional to the number of workers.
+   * 
+   * @param sentences
+   *          the tokens of every sentence
+   * @return the parts as [start, end) sentence ranges in document order
+   */
+  private List<int[]> getIndependentParts(final List<String[]> sentences) {
+    List<int[]> parts = new ArrayList<>();
+    if (sentences.isEmpty()) {
+      return parts;
+    }
+    if (isStateless()) {
+      int workers = sentencePool == null ? 1 : sentencePool.getParallelism();
+      int blockSize = Math.max(1, sentences.size() / (workers * 4));
+      for (int start = 0; start < sentences.size(); start += blockSize) {
+        parts.add(new int[] { start,
+            Math.min(start + blockSize, sentences.size()) });
+      }
+    } else if (clearFeatures.equalsIgnoreCase("docstart")) {
+      int start = 0;
+      for (int i = 1; i < sentences.size(); i++) {
+        if (sentences.get(i)[0].startsWith("-DOCSTART-")) {
+          parts.add(new int[] { start, i });
+          start = i;
+        }
+      }
+      parts.add(new int[] { start, sentences.size() });
+    } else {
+      parts.add(new int[] { 0, sentences.size() });
+    }
+    return parts;
+  }
+
+  /**
+   * Index every WF id in the terms layer with the term containing it. The
+   * index is built once per document so that the terms of each entity can be
+   * looked up in constant time per token.
+   * 
+   * @param kaf
+   *          the KAFDocument
+   * @return the map from WF ids to the terms referencing them
+   */
+  public Map<String, Term> getWFIdsToTerms(KAFDocument kaf) {
+    List<Term> terms = kaf.getTerms();
+    Map<String, Term> wfIdsToTerms = new HashMap<>(terms.size() * 2);
+    for (Term term : terms) {
+      for (WF form : term.getWFs()) {
+        wfIdsToTerms.put(form.getId(), term);
+      }
+    }
+    return wfIdsToTerms;
+  }
+
+  /**
+   * Get the terms covering the WF ids of a span. This replaces the combination
+   * of {@link #checkTermsRefsIntegrity(List, List)} and
+   * {@link KAFDocument#getTermsFromWFs(List)} by lookups in the index built by
+   * {@link #getWFIdsToTerms(KAFDocument)}.
+   * 
+   * @param tokenIds
+   *          the WF ids of the sentence
+   * @param start
+   *          the start of the span
+   * @param end
+   *          the end of the span, exclusive
+   * @param wfIdsToTerms
+   *          the index from WF ids to terms
+   * @return the terms in document order or null if some WF id is not
+   *         referenced by the terms layer
+   */
+  public List<Term> getTermsFromWFIds(String[] tokenIds, int start, int end,
+      Map<String, Term> wfIdsToTerms) {
+    List<Term> nameTerms = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      Term term = wfIdsToTerms.get(tokenIds[i]);
+      if (term == null) {
+        return null;
+      }
+      // multiword terms span several WFs but are referenced once
+      if (nameTerms.isEmpty() || nameTerms.get(nameTerms.size() - 1) != term) {
+        nameTerms.add(term);
+      }
     }
+    return nameTerms;
   }
 
   /**
@@ -295,190 +1078,122 @@ public class Annotate {
   }
 
   /**
-   * Enumeration class for CoNLL 2003 BIO format
+   * Output Conll2003 format.
+   * 
+   * @param kaf
+   *          the kaf document
+   * @return the annotated named entities in conll03 format
    */
-  private static enum BIO {
-    BEGIN("B-"), IN("I-"), OUT("O");
-    String tag;
-
-    BIO(String tag) {
-      this.tag = tag;
-    }
-
-    public String toString() {
-      return this.tag;
+  public String annotateNEsToCoNLL2003(KAFDocument kaf) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      annotateNEsToCoNLL2003(kaf, sb);
+    } catch (IOException e) {
+      // this cannot happen with a StringBuilder
+      throw new AssertionError(e);
     }
+    return sb.toString();
   }
 
   /**
-   * Output Conll2003 format.
+   * Output Conll2003 format, writing every sentence to the output as soon as
+   * it is formatted.
    * 
    * @param kaf
    *          the kaf document
-   * @return the annotated named entities in conll03 format
+   * @param out
+   *          the output
+   * @throws IOException
+   *           if io error
    */
-  public String annotateNEsToCoNLL2003(KAFDocument kaf) {
-    List<Entity> namedEntityList = kaf.getEntities();
-    Map<String, Integer> entityToSpanSize = new HashMap<String, Integer>();
-    Map<String, String> entityToType = new HashMap<String, String>();
-    for (Entity ne : namedEntityList) {
-      List<ixa.kaflib.Span<Term>> entitySpanList = ne.getSpans();
-      for (ixa.kaflib.Span<Term> spanTerm : entitySpanList) {
-        Term neTerm = spanTerm.getFirstTarget();
-        // create map from term Id to Entity span size
-        entityToSpanSize.put(neTerm.getId(), spanTerm.size());
-        // create map from term Id to Entity type
-        entityToType.put(neTerm.getId(), ne.getType());
-      }
-    }
+  public void annotateNEsToCoNLL2003(KAFDocument kaf, Appendable out)
+      throws IOException {
+    annotateNEsToCoNLL(kaf, new CoNLLFormatter(out, true));
+  }
 
-    List<List<WF>> sentences = kaf.getSentences();
+  /**
+   * Output Conll2002 format.
+   * 
+   * @param kaf
+   *          the kaf document
+   * @return the annotated named entities in conll02 format
+   */
+  public String annotateNEsToCoNLL2002(KAFDocument kaf) {
     StringBuilder sb = new StringBuilder();
-    for (List<WF> sentence : sentences) {
-      int sentNumber = sentence.get(0).getSent();
-      List<Term> sentenceTerms = kaf.getSentenceTerms(sentNumber);
-      String previousType = null;
-      boolean previousIsEntity = false;
-
-      for (int i = 0; i < sentenceTerms.size(); i++) {
-        Term thisTerm = sentenceTerms.get(i);
-        // if term is inside an entity span then annotate B-I entities
-        if (entityToSpanSize.get(thisTerm.getId()) != null) {
-          int neSpanSize = entityToSpanSize.get(thisTerm.getId());
-          String neClass = entityToType.get(thisTerm.getId());
-          String neType = this.convertToConLLTypes(neClass);
-          // if Entity span is multi token
-          if (neSpanSize > 1) {
-            for (int j = 0; j < neSpanSize; j++) {
-              thisTerm = sentenceTerms.get(i + j);
-              sb.append(thisTerm.getForm());
-              sb.append("\t");
-              sb.append(thisTerm.getLemma());
-              sb.append("\t");
-              sb.append(thisTerm.getMorphofeat());
-              sb.append("\t");
-              if (j == 0 && previousIsEntity
-                  && previousType.equalsIgnoreCase(neType)) {
-                sb.append(BIO.BEGIN.toString());
-              } else {
-                sb.append(BIO.IN.toString());
-              }
-              sb.append(neType);
-              sb.append("\n");
-            }
-            previousType = neType;
-          } else {
-            sb.append(thisTerm.getForm());
-            sb.append("\t");
-            sb.append(thisTerm.getLemma());
-            sb.append("\t");
-            sb.append(thisTerm.getMorphofeat());
-            sb.append("\t");
-            if (previousIsEntity && previousType.equalsIgnoreCase(neType)) {
-              sb.append(BIO.BEGIN.toString());
-            } else {
-              sb.append(BIO.IN.toString());
-            }
-            sb.append(neType);
-            sb.append("\n");
-          }
-          previousIsEntity = true;
-          previousType = neType;
-          i += neSpanSize - 1;
-        } else {
-          sb.append(thisTerm.getForm());
-          sb.append("\t");
-          sb.append(thisTerm.getLemma());
-          sb.append("\t");
-          sb.append(thisTerm.getMorphofeat());
-          sb.append("\t");
-          sb.append(BIO.OUT);
-          sb.append("\n");
-          previousIsEntity = false;
-          previousType = BIO.OUT.toString();
-        }
-      }
-      sb.append("\n");// end of sentence
+    try {
+      annotateNEsToCoNLL2002(kaf, sb);
+    } catch (IOException e) {
+      // this cannot happen with a StringBuilder
+      throw new AssertionError(e);
     }
     return sb.toString();
   }
 
   /**
-   * Output Conll2002 format.
+   * Output Conll2002 format, writing every sentence to the output as soon as
+   * it is formatted.
    * 
    * @param kaf
    *          the kaf document
-   * @return the annotated named entities in conll03 format
+   * @param out
+   *          the output
+   * @throws IOException
+   *           if io error
    */
-  public String annotateNEsToCoNLL2002(KAFDocument kaf) {
-    List<Entity> namedEntityList = kaf.getEntities();
+  public void annotateNEsToCoNLL2002(KAFDocument kaf, Appendable out)
+      throws IOException {
+    annotateNEsToCoNLL(kaf, new CoNLLFormatter(out, false));
+  }
+
+  /**
+   * Format the terms of the document in a single pass over the terms layer,
+   * ending a sentence whenever the sentence of the terms changes.
+   * 
+   * @param kaf
+   *          the kaf document
+   * @param formatter
+   *          the CoNLL formatter
+   * @throws IOException
+   *           if io error
+   */
+  private void annotateNEsToCoNLL(KAFDocument kaf, CoNLLFormatter formatter)
+      throws IOException {
     Map<String, Integer> entityToSpanSize = new HashMap<String, Integer>();
     Map<String, String> entityToType = new HashMap<String, String>();
-    for (Entity ne : namedEntityList) {
-      List<ixa.kaflib.Span<Term>> entitySpanList = ne.getSpans();
-      for (ixa.kaflib.Span<Term> spanTerm : entitySpanList) {
+    for (Entity ne : kaf.getEntities()) {
+      for (ixa.kaflib.Span<Term> spanTerm : ne.getSpans()) {
         Term neTerm = spanTerm.getFirstTarget();
+        // map from the first term id to the entity span size and type
         entityToSpanSize.put(neTerm.getId(), spanTerm.size());
         entityToType.put(neTerm.getId(), ne.getType());
       }
     }
-
-    List<List<WF>> sentences = kaf.getSentences();
-    StringBuilder sb = new StringBuilder();
-    for (List<WF> sentence : sentences) {
-      int sentNumber = sentence.get(0).getSent();
-      List<Term> sentenceTerms = kaf.getSentenceTerms(sentNumber);
-
-      for (int i = 0; i < sentenceTerms.size(); i++) {
-        Term thisTerm = sentenceTerms.get(i);
-
-        if (entityToSpanSize.get(thisTerm.getId()) != null) {
-          int neSpanSize = entityToSpanSize.get(thisTerm.getId());
-          String neClass = entityToType.get(thisTerm.getId());
-          String neType = convertToConLLTypes(neClass);
-          if (neSpanSize > 1) {
-            for (int j = 0; j < neSpanSize; j++) {
-              thisTerm = sentenceTerms.get(i + j);
-              sb.append(thisTerm.getForm());
-              sb.append("\t");
-              sb.append(thisTerm.getLemma());
-              sb.append("\t");
-              sb.append(thisTerm.getMorphofeat());
-              sb.append("\t");
-              if (j == 0) {
-                sb.append(BIO.BEGIN.toString());
-              } else {
-                sb.append(BIO.IN.toString());
-              }
-              sb.append(neType);
-              sb.append("\n");
-            }
-          } else {
-            sb.append(thisTerm.getForm());
-            sb.append("\t");
-            sb.append(thisTerm.getLemma());
-            sb.append("\t");
-            sb.append(thisTerm.getMorphofeat());
-            sb.append("\t");
-            sb.append(BIO.BEGIN.toString());
-            sb.append(neType);
-            sb.append("\n");
-          }
-          i += neSpanSize - 1;
-        } else {
-          sb.append(thisTerm.getForm());
-          sb.append("\t");
-          sb.append(thisTerm.getLemma());
-          sb.append("\t");
-          sb.append(thisTerm.getMorphofeat());
-          sb.append("\t");
-          sb.append(BIO.OUT);
-          sb.append("\n");
-        }
+    List<Term> terms = kaf.getTerms();
+    Integer previousSent = null;
+    for (int i = 0; i < terms.size(); i++) {
+      Term thisTerm = terms.get(i);
+      Integer sent = thisTerm.getSent();
+      if (previousSent != null && !previousSent.equals(sent)) {
+        formatter.endSentence();
+      }
+      previousSent = sent;
+      Integer neSpanSize = entityToSpanSize.get(thisTerm.getId());
+      if (neSpanSize == null) {
+        formatter.token(thisTerm.getForm(), thisTerm.getLemma(),
+            thisTerm.getMorphofeat(), null, false);
+        continue;
       }
-      sb.append("\n");// end of sentence
+      String neType = convertToConLLTypes(entityToType.get(thisTerm.getId()));
+      for (int j = 0; j < neSpanSize && i + j < terms.size(); j++) {
+        Term neTerm = terms.get(i + j);
+        formatter.token(neTerm.getForm(), neTerm.getLemma(),
+            neTerm.getMorphofeat(), neType, j == 0);
+      }
+      i += neSpanSize - 1;
+    }
+    if (previousSent != null) {
+      formatter.endSentence();
     }
-    return sb.toString();
   }
 
   /**
@@ -500,54 +1215,33 @@ public class Annotate {
     return conllType;
   }
   
+  /**
+   * Output the Named Entities of every sentence in the OpenNLP format.
+   * 
+   * @param kaf
+   *          the kaf document
+   * @return the annotated sentences in OpenNLP format
+   */
   public final String annotateNEsToOpenNLP(KAFDocument kaf) {
     StringBuilder sb = new StringBuilder();
-    List<Span> allSpans = null;
     List<List<WF>> sentences = kaf.getSentences();
+    boolean isClearAdaptiveData = clearFeatures.equalsIgnoreCase("yes");
 
-    for (List<WF> sentence : sentences) {
-      // process each sentence
-      String[] tokens = new String[sentence.size()];
-      String[] tokenIds = new String[sentence.size()];
-      for (int i = 0; i < sentence.size(); i++) {
-        tokens[i] = sentence.get(i).getForm();
-        tokenIds[i] = sentence.get(i).getId();
-      }
-      if (statistical) {
-        if (clearFeatures.equalsIgnoreCase("docstart")
-            && tokens[0].startsWith("-DOCSTART-")) {
-          nerTagger.clearAdaptiveData();
+    TaggingContext context = getTaggingContext();
+    try {
+      for (List<WF> sentence : sentences) {
+        // process each sentence
+        String[] tokens = new String[sentence.size()];
+        for (int i = 0; i < sentence.size(); i++) {
+          tokens[i] = sentence.get(i).getForm();
         }
-        Span[] statSpans = nerTagger.seqToSpans(tokens);
-        allSpans = Lists.newArrayList(statSpans);
-      }
-      if (postProcess) {
-        Span[] dictSpans = nerTaggerDict.nercToSpansExact(tokens);
-        Span.postProcessDuplicatedSpans(allSpans, dictSpans);
-        Span.concatenateSpans(allSpans, dictSpans);
-      }
-      if (dictTag) {
-        Span[] dictOnlySpans = nerTaggerDict.nercToSpansExact(tokens);
-        allSpans = Lists.newArrayList(dictOnlySpans);
-      }
-      if (lexerTagger) {
-        String sentenceText = StringUtils.getStringFromTokens(tokens);
-        StringReader stringReader = new StringReader(sentenceText);
-        BufferedReader sentenceReader = new BufferedReader(stringReader);
-        numericNerTaggerLexer = new NumericNERTagger(sentenceReader);
-        Span[] numericSpans = numericNerTaggerLexer.nercToSpans(tokens);
-        Span.concatenateSpans(allSpans, numericSpans);
-      }
-      boolean isClearAdaptiveData = false;
-      if (clearFeatures.equalsIgnoreCase("yes")) {
-        isClearAdaptiveData = true;
+        Span[] allSpansArray = nercToSpans(context, tokens);
+        SequenceLabelSample seqSample = new SequenceLabelSample(tokens, allSpansArray, isClearAdaptiveData);
+        sb.append(seqSample.toString()).append("\n");
       }
-      Span[] allSpansArray = SequenceLabelerME
-          .dropOverlappingSpans(allSpans.toArray(new Span[allSpans.size()]));
-      SequenceLabelSample seqSample = new SequenceLabelSample(tokens, allSpansArray, isClearAdaptiveData);
-      sb.append(seqSample.toString()).append("\n");
+    } finally {
+      releaseTaggingContext(context);
     }
-    nerTagger.clearAdaptiveData();
     return sb.toString().trim();
   }
 
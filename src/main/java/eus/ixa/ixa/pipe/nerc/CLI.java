@@ -18,19 +18,33 @@ package eus.ixa.ixa.pipe.nerc;
 
 import ixa.kaflib.KAFDocument;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -57,6 +71,13 @@ public class CLI {
   private static final String ANNOTATE_PARSER_NAME = "tag";
   private static final String SERVER_PARSER_NAME = "server";
   private static final String CLIENT_PARSER_NAME = "client";
+  private static final String BATCH_PARSER_NAME = "batch";
+  private static final String COMPILE_DICT_PARSER_NAME = "compile-dict";
+  private static final String LOADTEST_PARSER_NAME = "loadtest";
+  /**
+   * The bytes sent or received at once by the line based client.
+   */
+  private static final int CLIENT_CHUNK_SIZE = 64 * 1024;
 
   /**
    * Get dynamically the version of ixa-pipe-nerc by looking at the MANIFEST
@@ -98,6 +119,18 @@ public class CLI {
    * Sends queries to the serverParser for annotation.
    */
   private Subparser clientParser;
+  /**
+   * The parser that manages the batch annotation sub-command.
+   */
+  private Subparser batchParser;
+  /**
+   * The parser that manages the dictionary compilation sub-command.
+   */
+  private Subparser compileDictParser;
+  /**
+   * The parser that manages the server load test sub-command.
+   */
+  private Subparser loadTestParser;
 
   /**
    * Construct a CLI object with the sub-parsers to manage the command line
@@ -113,6 +146,15 @@ public class CLI {
     clientParser = subParsers.addParser(CLIENT_PARSER_NAME)
         .help("Send queries to the TCP socket server");
     loadClientParameters();
+    batchParser = subParsers.addParser(BATCH_PARSER_NAME)
+        .help("Batch NER Tagging of many documents in parallel");
+    loadBatchParameters();
+    compileDictParser = subParsers.addParser(COMPILE_DICT_PARSER_NAME)
+        .help("Compile the dictionaries into a binary snapshot");
+    loadCompileDictParameters();
+    loadTestParser = subParsers.addParser(LOADTEST_PARSER_NAME)
+        .help("Replay NAF documents against the TCP socket server concurrently");
+    loadLoadTestParameters();
   }
 
   /**
@@ -156,11 +198,20 @@ public class CLI {
       case CLIENT_PARSER_NAME:
         client(System.in, System.out);
         break;
+      case BATCH_PARSER_NAME:
+        batch();
+        break;
+      case COMPILE_DICT_PARSER_NAME:
+        compileDict();
+        break;
+      case LOADTEST_PARSER_NAME:
+        loadTest();
+        break;
       }
     } catch (ArgumentParserException e) {
       argParser.handleError(e);
       System.out.println("Run java -jar target/ixa-pipe-nerc-" + version
-          + "-exec.jar (tag|server|client) -help for details");
+          + "-exec.jar (tag|server|client|batch|compile-dict|loadtest) -help for details");
       System.exit(1);
     }
   }
@@ -184,8 +235,6 @@ public class CLI {
         new InputStreamReader(inputStream, UTF_8));
     BufferedWriter bwriter = new BufferedWriter(
         new OutputStreamWriter(outputStream, UTF_8));
-    // read KAF document from inputstream
-    KAFDocument kaf = KAFDocument.createFromStream(breader);
     // load parameters into a properties
     String model = parsedArguments.getString(MODEL);
     String outputFormat = parsedArguments.getString("outputFormat");
@@ -193,16 +242,40 @@ public class CLI {
     String dictTag = parsedArguments.getString("dictTag");
     String dictPath = parsedArguments.getString("dictPath");
     String clearFeatures = parsedArguments.getString("clearFeatures");
-    // language parameter
-    String lang = null;
-    if (parsedArguments.getString("language") != null) {
-      lang = parsedArguments.getString("language");
-      if (!kaf.getLang().equalsIgnoreCase(lang)) {
-        System.err.println("Language parameter in NAF and CLI do not match!!");
+    String inputFormat = parsedArguments.getString("inputFormat");
+    if (TokenStreamTagger.isTokenizedFormat(inputFormat)) {
+      // tokenized text is tagged line by line without any NAF document
+      String lang = parsedArguments.getString("language");
+      if (lang == null || !TokenStreamTagger.isOutputFormat(outputFormat)) {
+        System.err.println("-> ERROR: tokenized input requires --language and "
+            + "an output format other than NAF!!");
+        System.exit(1);
       }
-    } else {
-      lang = kaf.getLang();
+      Properties properties = setAnnotateProperties(model, lang, lexer,
+          dictTag, dictPath, clearFeatures);
+      Annotate annotator = new Annotate(properties);
+      new TokenStreamTagger(breader, inputFormat).annotate(annotator,
+          outputFormat, bwriter);
+      bwriter.close();
+      breader.close();
+      return;
     }
+    if (NAFStreamTagger.isStreamingFormat(outputFormat)) {
+      // no NAF document is output, so stream it sentence by sentence
+      NAFStreamTagger nafStream = new NAFStreamTagger(breader);
+      String lang = getLanguage(nafStream.getLang());
+      Properties properties = setAnnotateProperties(model, lang, lexer,
+          dictTag, dictPath, clearFeatures);
+      Annotate annotator = new Annotate(properties);
+      nafStream.annotate(annotator, outputFormat, bwriter);
+      bwriter.close();
+      breader.close();
+      return;
+    }
+    // read KAF document from inputstream
+    KAFDocument kaf = KAFDocument.createFromStream(breader);
+    // language parameter
+    String lang = getLanguage(kaf.getLang());
     Properties properties = setAnnotateProperties(model, lang, lexer, dictTag,
         dictPath, clearFeatures);
     KAFDocument.LinguisticProcessor newLp = kaf.addLinguisticProcessor(
@@ -212,21 +285,40 @@ public class CLI {
     Annotate annotator = new Annotate(properties);
     annotator.annotateNEsToKAF(kaf);
     newLp.setEndTimestamp();
-    String kafToString = null;
     if (outputFormat.equalsIgnoreCase("conll03")) {
-      kafToString = annotator.annotateNEsToCoNLL2003(kaf);
+      annotator.annotateNEsToCoNLL2003(kaf, bwriter);
     } else if (outputFormat.equalsIgnoreCase("conll02")) {
-      kafToString = annotator.annotateNEsToCoNLL2002(kaf);
+      annotator.annotateNEsToCoNLL2002(kaf, bwriter);
     } else if (outputFormat.equalsIgnoreCase("opennlp")) {
-      kafToString = annotator.annotateNEsToOpenNLP(kaf);
+      bwriter.write(annotator.annotateNEsToOpenNLP(kaf));
     } else {
-      kafToString = kaf.toString();
+      bwriter.write(kaf.toString());
     }
-    bwriter.write(kafToString);
     bwriter.close();
     breader.close();
   }
 
+  /**
+   * Get the language of the annotation: the language parameter if given or
+   * otherwise the language of the document.
+   * 
+   * @param docLang
+   *          the language of the document
+   * @return the language
+   */
+  private String getLanguage(final String docLang) {
+    String lang = null;
+    if (parsedArguments.getString("language") != null) {
+      lang = parsedArguments.getString("language");
+      if (docLang == null || !docLang.equalsIgnoreCase(lang)) {
+        System.err.println("Language parameter in NAF and CLI do not match!!");
+      }
+    } else {
+      lang = docLang;
+    }
+    return lang;
+  }
+
   /**
    * Set up the TCP socket for annotation.
    */
@@ -239,11 +331,170 @@ public class CLI {
     String clearFeatures = parsedArguments.getString("clearFeatures");
     String outputFormat = parsedArguments.getString("outputFormat");
     String lang = parsedArguments.getString("language");
+    String threads = parsedArguments.getString("threads");
+    String models = parsedArguments.getString("models");
+    if (models == null && (model == null || lang == null)) {
+      System.err.println(
+          "-> ERROR: the server needs --models or both --model and --language!!");
+      System.exit(1);
+    }
+    String inputFormat = parsedArguments.getString("inputFormat");
+    if (TokenStreamTagger.isTokenizedFormat(inputFormat)
+        && !TokenStreamTagger.isOutputFormat(outputFormat)) {
+      System.err.println(
+          "-> ERROR: tokenized input requires an output format other than NAF!!");
+      System.exit(1);
+    }
     Properties serverproperties = setNameServerProperties(port, model, lang,
-        lexer, dictTag, dictPath, clearFeatures, outputFormat);
+        lexer, dictTag, dictPath, clearFeatures, outputFormat, threads);
+    if (models != null) {
+      serverproperties.setProperty("models", models);
+    }
+    if (parsedArguments.getString("maxModels") != null) {
+      serverproperties.setProperty("maxModels",
+          parsedArguments.getString("maxModels"));
+    }
+    serverproperties.setProperty("sentenceThreads",
+        parsedArguments.getString("sentenceThreads"));
+    serverproperties.setProperty("sentenceCache",
+        parsedArguments.getString("sentenceCache"));
+    serverproperties.setProperty("incremental",
+        String.valueOf(parsedArguments.getBoolean("incremental")));
+    serverproperties.setProperty("responseCache",
+        parsedArguments.getString("responseCache"));
+    serverproperties.setProperty("responseCacheTtl",
+        parsedArguments.getString("responseCacheTtl"));
+    serverproperties.setProperty("inputFormat", inputFormat);
+    if (parsedArguments.getString("httpPort") != null) {
+      serverproperties.setProperty("httpPort",
+          parsedArguments.getString("httpPort"));
+    }
+    serverproperties.setProperty("nio",
+        String.valueOf(parsedArguments.getBoolean("nio")));
+    if (parsedArguments.getString("queueSize") != null) {
+      serverproperties.setProperty("queueSize",
+          parsedArguments.getString("queueSize"));
+    }
+    serverproperties.setProperty("maxRequestMB",
+        parsedArguments.getString("maxRequestMB"));
+    if (parsedArguments.getString("maxBufferedMB") != null) {
+      serverproperties.setProperty("maxBufferedMB",
+          parsedArguments.getString("maxBufferedMB"));
+    }
     new NERTaggerServer(serverproperties);
   }
 
+  /**
+   * Annotate a batch of documents loading the model only once.
+   * 
+   * @throws IOException
+   *           if the model or the documents cannot be read
+   */
+  public final void batch() throws IOException {
+    String model = parsedArguments.getString(MODEL);
+    String lang = parsedArguments.getString("language");
+    String lexer = parsedArguments.getString("lexer");
+    String dictTag = parsedArguments.getString("dictTag");
+    String dictPath = parsedArguments.getString("dictPath");
+    String clearFeatures = parsedArguments.getString("clearFeatures");
+    Properties batchProperties = setAnnotateProperties(model, lang, lexer,
+        dictTag, dictPath, clearFeatures);
+    batchProperties.setProperty("outputFormat",
+        parsedArguments.getString("outputFormat"));
+    batchProperties.setProperty("threads",
+        parsedArguments.getString("threads"));
+    if (parsedArguments.getString("outputDir") != null) {
+      batchProperties.setProperty("outputDir",
+          parsedArguments.getString("outputDir"));
+    }
+    if (parsedArguments.getBoolean("pipeline")) {
+      batchProperties.setProperty("pipeline", "true");
+      batchProperties.setProperty("parseThreads",
+          parsedArguments.getString("parseThreads"));
+      batchProperties.setProperty("serializeThreads",
+          parsedArguments.getString("serializeThreads"));
+      if (parsedArguments.getString("pipelineQueue") != null) {
+        batchProperties.setProperty("pipelineQueue",
+            parsedArguments.getString("pipelineQueue"));
+      }
+    }
+    List<String> inputs = parsedArguments.getList("inputs");
+    Map<Path, Path> documents = NERTaggerBatch.getRelativeDocuments(inputs);
+    System.err.println("-> Annotating " + documents.size() + " documents");
+    NERTaggerBatch batchTagger = new NERTaggerBatch(batchProperties);
+    try {
+      if (batchTagger.annotate(documents) > 0) {
+        System.exit(1);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Compile the gazetteers of a dictionary directory into the binary snapshot
+   * that {@link Annotate} loads instead of them.
+   * 
+   * @throws IOException
+   *           if the dictionaries cannot be read or the snapshot written
+   */
+  public final void compileDict() throws IOException {
+    String dictPath = parsedArguments.getString("dictPath");
+    String output = parsedArguments.getString("output");
+    Path snapshot = output != null ? Paths.get(output)
+        : Paths.get(dictPath, DictionaryTrie.SNAPSHOT_NAME);
+    long start = System.nanoTime();
+    DictionaryTrie dictionaries = DictionaryTrie.compile(dictPath);
+    dictionaries.write(snapshot);
+    System.err.println(String.format(
+        "-> Compiled %d trie nodes of %s into %s in %.1f s",
+        dictionaries.getNodeCount(), dictionaries.getTypes(), snapshot,
+        (System.nanoTime() - start) / 1e9));
+  }
+
+  /**
+   * Replay NAF documents against a running server and report its throughput
+   * and latencies.
+   * 
+   * @throws IOException
+   *           if the documents cannot be read
+   */
+  public final void loadTest() throws IOException {
+    Properties loadTestProperties = new Properties();
+    loadTestProperties.setProperty("host", parsedArguments.getString("host"));
+    loadTestProperties.setProperty("port", parsedArguments.getString("port"));
+    loadTestProperties.setProperty("protocol",
+        parsedArguments.getString("protocol"));
+    loadTestProperties.setProperty("concurrency",
+        parsedArguments.getString("concurrency"));
+    loadTestProperties.setProperty("rate", parsedArguments.getString("rate"));
+    loadTestProperties.setProperty("warmup",
+        parsedArguments.getString("warmup"));
+    if (parsedArguments.getString("requests") != null) {
+      loadTestProperties.setProperty("requests",
+          parsedArguments.getString("requests"));
+    }
+    if (parsedArguments.getString("duration") != null) {
+      loadTestProperties.setProperty("duration",
+          parsedArguments.getString("duration"));
+    }
+    if (parsedArguments.getString("modelKey") != null) {
+      loadTestProperties.setProperty("modelKey",
+          parsedArguments.getString("modelKey"));
+    }
+    List<String> inputs = parsedArguments.getList("inputs");
+    List<Path> documents = NERTaggerBatch.getDocuments(inputs);
+    System.err.println("-> Replaying " + documents.size() + " documents");
+    NERTaggerLoadTest loadTest = new NERTaggerLoadTest(loadTestProperties);
+    try {
+      if (loadTest.run(documents, System.out) > 0) {
+        System.exit(1);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * The client to query the TCP server for annotation.
    * 
@@ -256,34 +507,26 @@ public class CLI {
       final OutputStream outputStream) {
     String host = parsedArguments.getString("host");
     String port = parsedArguments.getString("port");
-    try (Socket socketClient = new Socket(host, Integer.parseInt(port));
-        BufferedReader inFromUser = new BufferedReader(
-            new InputStreamReader(System.in, UTF_8));
-        BufferedWriter outToUser = new BufferedWriter(
-            new OutputStreamWriter(System.out, UTF_8));
-        BufferedWriter outToServer = new BufferedWriter(
-            new OutputStreamWriter(socketClient.getOutputStream(), UTF_8));
-        BufferedReader inFromServer = new BufferedReader(
-            new InputStreamReader(socketClient.getInputStream(), "UTF-8"));) {
-      // send data to server socket
-      StringBuilder inText = new StringBuilder();
-      String line;
-      while ((line = inFromUser.readLine()) != null) {
-        inText.append(line).append("\n");
-      }
-      inText.append("<ENDOFDOCUMENT>").append("\n");
-      outToServer.write(inText.toString());
-      outToServer.flush();
-      // get data from server
-      StringBuilder sb = new StringBuilder();
-      String kafString;
-      while ((kafString = inFromServer.readLine()) != null) {
-        sb.append(kafString).append("\n");
+    if (parsedArguments.getBoolean("framed")) {
+      List<String> files = parsedArguments.getList("files");
+      try {
+        framedClient(host, Integer.parseInt(port),
+            parsedArguments.getString("modelKey"),
+            parsedArguments.getBoolean("stats"), files, inputStream,
+            outputStream);
+      } catch (UnknownHostException e) {
+        System.err.println("ERROR: Unknown hostname or IP address!");
+        System.exit(1);
+      } catch (NumberFormatException e) {
+        System.err.println("Port number not correct!");
+        System.exit(1);
+      } catch (IOException e) {
+        e.printStackTrace();
       }
-      outToUser.write(sb.toString());
-    } catch (UnsupportedEncodingException e) {
-      // this cannot happen but...
-      throw new AssertionError("UTF-8 not supported");
+      return;
+    }
+    try {
+      streamingClient(host, Integer.parseInt(port), inputStream, outputStream);
     } catch (UnknownHostException e) {
       System.err.println("ERROR: Unknown hostname or IP address!");
       System.exit(1);
@@ -295,6 +538,174 @@ public class CLI {
     }
   }
 
+  /**
+   * Client for the line based protocol of the server. The document is streamed
+   * to the server in chunks by a writer thread while the reply is copied to
+   * the output stream as it arrives, so that neither is held in memory.
+   * 
+   * @param host
+   *          the server host
+   * @param port
+   *          the server port
+   * @param inputStream
+   *          the document
+   * @param outputStream
+   *          the output for the reply
+   * @throws IOException
+   *           if io error
+   */
+  private void streamingClient(final String host, final int port,
+      final InputStream inputStream, final OutputStream outputStream)
+      throws IOException {
+    try (Socket socketClient = new Socket(host, port)) {
+      final OutputStream outToServer = socketClient.getOutputStream();
+      final IOException[] writeError = new IOException[1];
+      Thread writer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            byte[] buffer = new byte[CLIENT_CHUNK_SIZE];
+            int last = '\n';
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+              if (read > 0) {
+                outToServer.write(buffer, 0, read);
+                last = buffer[read - 1];
+              }
+            }
+            outToServer.write(((last == '\n' ? "" : "\n")
+                + "<ENDOFDOCUMENT>\n").getBytes(UTF_8));
+            outToServer.flush();
+            socketClient.shutdownOutput();
+          } catch (IOException e) {
+            writeError[0] = e;
+          }
+        }
+      }, "nerc-client-writer");
+      writer.setDaemon(true);
+      writer.start();
+      InputStream inFromServer = socketClient.getInputStream();
+      byte[] buffer = new byte[CLIENT_CHUNK_SIZE];
+      long received = 0;
+      int read;
+      while ((read = inFromServer.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+        outputStream.flush();
+        received += read;
+      }
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // the server replies as soon as it reads </NAF>, so the rest of the
+      // input may find the connection already closed
+      if (writeError[0] != null && received == 0) {
+        throw writeError[0];
+      }
+    }
+  }
+
+  /**
+   * Client for the framed protocol of the server. Every document is sent as a
+   * frame over a single connection while the replies, which come back in the
+   * same order, are written to the output stream.
+   * 
+   * @param host
+   *          the server host
+   * @param port
+   *          the server port
+   * @param modelKey
+   *          the key of the model to use or null to let the server choose it
+   * @param stats
+   *          whether to request the server statistics after the documents
+   * @param files
+   *          the documents to send; if empty the input stream is sent as a
+   *          single document, unless only the statistics are requested
+   * @param inputStream
+   *          the stdin
+   * @param outputStream
+   *          stdout
+   * @throws IOException
+   *           if io error
+   */
+  private void framedClient(final String host, final int port,
+      final String modelKey, final boolean stats, final List<String> files,
+      final InputStream inputStream, final OutputStream outputStream)
+      throws IOException {
+    ExecutorService sender = Executors.newSingleThreadExecutor();
+    try (final Socket socketClient = new Socket(host, port)) {
+      final DataOutputStream outToServer = new DataOutputStream(
+          new BufferedOutputStream(socketClient.getOutputStream()));
+      DataInputStream inFromServer = new DataInputStream(
+          new BufferedInputStream(socketClient.getInputStream()));
+      // send the documents while the replies are being read
+      Future<Integer> sent = sender.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          outToServer.write(FramedProtocol.MAGIC);
+          if (modelKey != null) {
+            FramedProtocol.writeFrame(outToServer, FramedProtocol.MODEL,
+                modelKey);
+          }
+          if (files == null || files.isEmpty()) {
+            if (!stats) {
+              // spooled, as the length of the frame goes before the document
+              Path spool = java.nio.file.Files.createTempFile("nerc-stdin",
+                  ".naf");
+              try {
+                java.nio.file.Files.copy(inputStream, spool,
+                    StandardCopyOption.REPLACE_EXISTING);
+                FramedProtocol.writeFrame(outToServer,
+                    FramedProtocol.DOCUMENT, spool);
+              } finally {
+                java.nio.file.Files.delete(spool);
+              }
+            }
+          } else {
+            for (String file : files) {
+              FramedProtocol.writeFrame(outToServer, FramedProtocol.DOCUMENT,
+                  Paths.get(file));
+            }
+          }
+          if (stats) {
+            FramedProtocol.writeFrame(outToServer, FramedProtocol.STATS, "");
+          }
+          outToServer.flush();
+          socketClient.shutdownOutput();
+          return files == null || files.isEmpty() ? 1 : files.size();
+        }
+      });
+      FramedProtocol.Frame frame;
+      while ((frame = FramedProtocol.readFrame(inFromServer)) != null) {
+        if (frame.getType() == FramedProtocol.RESULT) {
+          byte[] payload = frame.getPayload();
+          outputStream.write(payload);
+          if (payload.length == 0 || payload[payload.length - 1] != '\n') {
+            outputStream.write('\n');
+          }
+        } else if (frame.getType() == FramedProtocol.STATS) {
+          outputStream.write(frame.getPayload());
+        } else {
+          System.err.println(frame.getText());
+        }
+      }
+      outputStream.flush();
+      try {
+        sent.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    } finally {
+      sender.shutdownNow();
+    }
+  }
+
   /**
    * Create the available parameters for NER tagging.
    */
@@ -312,9 +723,14 @@ public class CLI {
         .help(
             "Choose language; it defaults to the language value in incoming NAF file.\n");
     annotateParser.addArgument("-o", "--outputFormat").required(false)
-        .choices("conll03", "conll02", "naf", "opennlp")
+        .choices("conll03", "conll02", "naf", "opennlp", "json")
         .setDefault(Flags.DEFAULT_OUTPUT_FORMAT)
         .help("Choose output format; it defaults to NAF.\n");
+    annotateParser.addArgument("--inputFormat").required(false)
+        .choices("naf", "tokens", "conll").setDefault("naf").help(
+            "Choose input format: NAF, tokenized text with one sentence per line or CoNLL columns "
+                + "with the token first; tokenized text requires --language and an output format "
+                + "other than NAF; it defaults to NAF.\n");
     annotateParser.addArgument("--lexer").choices("numeric")
         .setDefault(Flags.DEFAULT_LEXER).required(false)
         .help("Use lexer rules for NERC tagging; it defaults to false.\n");
@@ -327,6 +743,24 @@ public class CLI {
         .setDefault(Flags.DEFAULT_DICT_PATH).help(
             "Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS if --dictTag "
                 + "option is activated.\n");
+    annotateParser.addArgument("--sentenceCache").required(false)
+        .setDefault("0").help(
+            "Number of sentences whose Named Entities are cached, so that repeated sentences are "
+                + "not tagged again; it only applies if --clearFeatures is 'yes' or --dictTag is "
+                + "'tag', as otherwise the tags depend on the previous sentences; it defaults "
+                + "to 0 (off).\n");
+    annotateParser.addArgument("--incremental").action(Arguments.storeTrue()).help(
+        "Tag only the sentences changed since the previous annotation of each NAF document, "
+            + "keeping the Named Entities of the others, found by the sentence fingerprints "
+            + "recorded in the document; it only applies if --clearFeatures is 'yes' or --dictTag is 'tag'.\n");
+    annotateParser.addArgument("--sentenceThreads").required(false)
+        .setDefault("1").help(
+            "Number of threads tagging the sentences of each document in parallel, each with its "
+                + "own copy of the adaptive features; unless --clearFeatures is 'yes', only the "
+                + "sections between -DOCSTART- marks are tagged in parallel; with --dictTag 'tag' "
+                + "the sentences are split by tokens among the threads; it does not apply to the "
+                + "OpenNLP and JSON outputs and the tokenized input, which are streamed sentence "
+                + "by sentence; it defaults to 1.\n");
   }
 
   /**
@@ -335,21 +769,28 @@ public class CLI {
   private void loadServerParameters() {
     serverParser.addArgument("-p", "--port").required(true)
         .help("Port to be assigned to the server.\n");
-    serverParser.addArgument("-m", "--model").required(true)
-        .help("Pass the model to do the tagging as a parameter.\n");
+    serverParser.addArgument("-m", "--model").required(false)
+        .help("Pass the model to do the tagging as a parameter; it is used for the --language "
+            + "documents and for those in languages without a model in --models.\n");
     serverParser.addArgument("--clearFeatures").required(false)
         .choices("yes", "no", "docstart").setDefault(Flags.DEFAULT_FEATURE_FLAG)
         .help(
             "Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks"
                 + " are present, choose 'docstart'.\n");
     serverParser
-        .addArgument("-l", "--language").required(true).choices("ca", "de",
+        .addArgument("-l", "--language").required(false).choices("ca", "de",
             "en", "es", "eu", "fr", "gl", "it", "nl", "pt", "ru")
-        .help("Choose language.\n");
+        .help("Choose language of the --model.\n");
     serverParser.addArgument("-o", "--outputFormat").required(false)
-        .choices("conll03", "conll02", "naf")
+        .choices("conll03", "conll02", "naf", "opennlp", "json")
         .setDefault(Flags.DEFAULT_OUTPUT_FORMAT)
         .help("Choose output format; it defaults to NAF.\n");
+    serverParser.addArgument("--inputFormat").required(false)
+        .choices("naf", "tokens", "conll").setDefault("naf").help(
+            "Choose input format: NAF, tokenized text with one sentence per line or CoNLL columns "
+                + "with the token first; tokenized text is annotated with the model requested by "
+                + "the client or the --model and needs an output format other than NAF; it "
+                + "defaults to NAF.\n");
     serverParser.addArgument("--lexer").choices("numeric")
         .setDefault(Flags.DEFAULT_LEXER).required(false)
         .help("Use lexer rules for NERC tagging; it defaults to false.\n");
@@ -362,6 +803,60 @@ public class CLI {
         .setDefault(Flags.DEFAULT_DICT_PATH).help(
             "Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS if --dictTag "
                 + "option is activated.\n");
+    serverParser.addArgument("-t", "--threads").required(false)
+        .setDefault("1").help(
+            "Number of worker threads annotating client requests concurrently; they all share "
+                + "the loaded model and dictionaries; it defaults to 1.\n");
+    serverParser.addArgument("--models").required(false).help(
+        "Properties file mapping model keys, a language or language-domain such as 'en' or "
+            + "'en-news', to model paths; the model of every document is chosen by the key sent "
+            + "by the framed client or by the language of the document.\n");
+    serverParser.addArgument("--maxModels").required(false).help(
+        "Maximum number of models kept loaded; the least recently used is unloaded when another "
+            + "one is needed; by default all of them are kept.\n");
+    serverParser.addArgument("--sentenceCache").required(false)
+        .setDefault("0").help(
+            "Number of sentences whose Named Entities are cached, so that repeated sentences are "
+                + "not tagged again; it only applies if --clearFeatures is 'yes' or --dictTag is "
+                + "'tag', as otherwise the tags depend on the previous sentences; it defaults "
+                + "to 0 (off).\n");
+    serverParser.addArgument("--incremental").action(Arguments.storeTrue()).help(
+        "Tag only the sentences changed since the previous annotation of each NAF document, "
+            + "keeping the Named Entities of the others, found by the sentence fingerprints "
+            + "recorded in the document; it only applies if --clearFeatures is 'yes' or --dictTag is 'tag'.\n");
+    serverParser.addArgument("--responseCache").required(false)
+        .setDefault("0").help(
+            "Megabytes of replies cached by the server, so that duplicated documents with the same "
+                + "model and formats are answered without annotating them again; it defaults to "
+                + "0 (off).\n");
+    serverParser.addArgument("--responseCacheTtl").required(false)
+        .setDefault("300").help(
+            "Seconds a reply is kept in the --responseCache; it defaults to 300.\n");
+    serverParser.addArgument("--sentenceThreads").required(false)
+        .setDefault("1").help(
+            "Number of threads tagging the sentences of each document in parallel, each with its "
+                + "own copy of the adaptive features; unless --clearFeatures is 'yes', only the "
+                + "sections between -DOCSTART- marks are tagged in parallel; with --dictTag 'tag' "
+                + "the sentences are split by tokens among the threads; it does not apply to the "
+                + "OpenNLP and JSON outputs and the tokenized input, which are streamed sentence "
+                + "by sentence; it defaults to 1.\n");
+    serverParser.addArgument("--httpPort").required(false).help(
+        "Also serve HTTP requests on this port: POST /annotate with a NAF document or "
+            + "JSON pre-tokenized sentences and GET /health.\n");
+    serverParser.addArgument("--nio").action(Arguments.storeTrue()).help(
+        "Serve the TCP port with a non-blocking front end which answers requests that do not "
+            + "fit in the request queue right away as overloaded instead of letting them wait.\n");
+    serverParser.addArgument("--queueSize").required(false).help(
+        "Capacity of the request queue of the --nio front end; it defaults to 16 requests per "
+            + "worker thread.\n");
+    serverParser.addArgument("--maxRequestMB").required(false).setDefault("64")
+        .help(
+            "Megabytes a connection of the --nio front end may buffer while reading a request; "
+                + "longer requests close the connection; it defaults to 64.\n");
+    serverParser.addArgument("--maxBufferedMB").required(false).help(
+        "Megabytes all the connections of the --nio front end may buffer while reading "
+            + "requests; requests beyond it are answered as overloaded; it defaults to a "
+            + "quarter of the maximum heap.\n");
   }
 
   private void loadClientParameters() {
@@ -370,6 +865,138 @@ public class CLI {
     clientParser.addArgument("--host").required(false)
         .setDefault(Flags.DEFAULT_HOSTNAME)
         .help("Hostname or IP where the TCP server is running.\n");
+    clientParser.addArgument("--framed").action(Arguments.storeTrue())
+        .help(
+            "Use the length-prefixed framed protocol, which sends every document over a single "
+                + "connection and pipelines the replies.\n");
+    clientParser.addArgument("--modelKey").required(false).help(
+        "Key of the server model to annotate the documents with the --framed option; by default "
+            + "the server chooses it by the language of every document.\n");
+    clientParser.addArgument("--stats").action(Arguments.storeTrue()).help(
+        "Print the server statistics after the documents, if any, with the --framed option: "
+            + "stage latencies, sentence, token and entity counts, errors and, with --nio, the "
+            + "request queue.\n");
+    clientParser.addArgument("files").nargs("*").help(
+        "NAF documents to send with the --framed option; if none is given, stdin is sent as "
+            + "a single document.\n");
+  }
+
+  /**
+   * Create the available parameters for batch NER tagging.
+   */
+  private void loadBatchParameters() {
+    batchParser.addArgument("-m", "--model").required(true)
+        .help("Pass the model to do the tagging as a parameter.\n");
+    batchParser.addArgument("--clearFeatures").required(false)
+        .choices("yes", "no", "docstart").setDefault(Flags.DEFAULT_FEATURE_FLAG)
+        .help(
+            "Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks"
+                + " are present, choose 'docstart'.\n");
+    batchParser
+        .addArgument("-l", "--language").required(true).choices("ca", "de",
+            "en", "es", "eu", "fr", "gl", "it", "nl", "pt", "ru")
+        .help("Choose language.\n");
+    batchParser.addArgument("-o", "--outputFormat").required(false)
+        .choices("conll03", "conll02", "naf", "opennlp")
+        .setDefault(Flags.DEFAULT_OUTPUT_FORMAT)
+        .help("Choose output format; it defaults to NAF.\n");
+    batchParser.addArgument("--lexer").choices("numeric")
+        .setDefault(Flags.DEFAULT_LEXER).required(false)
+        .help("Use lexer rules for NERC tagging; it defaults to false.\n");
+    batchParser.addArgument("--dictTag").required(false).choices("tag", "post")
+        .setDefault(Flags.DEFAULT_DICT_OPTION).help(
+            "Choose to directly tag entities by dictionary look-up; if the 'tag' option is chosen, "
+                + "only tags entities found in the dictionary; if 'post' option is chosen, it will "
+                + "post-process the results of the statistical model.\n");
+    batchParser.addArgument("--dictPath").required(false)
+        .setDefault(Flags.DEFAULT_DICT_PATH).help(
+            "Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS if --dictTag "
+                + "option is activated.\n");
+    batchParser.addArgument("--sentenceCache").required(false)
+        .setDefault("0").help(
+            "Number of sentences whose Named Entities are cached, so that repeated sentences are "
+                + "not tagged again; it only applies if --clearFeatures is 'yes' or --dictTag is "
+                + "'tag', as otherwise the tags depend on the previous sentences; it defaults "
+                + "to 0 (off).\n");
+    batchParser.addArgument("--sentenceThreads").required(false)
+        .setDefault("1").help(
+            "Number of threads tagging the sentences of each document in parallel, on top of the "
+                + "--threads documents annotated at once; see the tag command; it defaults to 1.\n");
+    batchParser.addArgument("--incremental").action(Arguments.storeTrue()).help(
+        "Tag only the sentences changed since the previous annotation of each NAF document, "
+            + "keeping the Named Entities of the others, found by the sentence fingerprints "
+            + "recorded in the document; it only applies if --clearFeatures is 'yes' or --dictTag is 'tag'.\n");
+    batchParser.addArgument("-t", "--threads").required(false)
+        .setDefault(
+            String.valueOf(Runtime.getRuntime().availableProcessors()))
+        .help(
+            "Number of documents annotated in parallel; it defaults to the number of cores.\n");
+    batchParser.addArgument("--pipeline").action(Arguments.storeTrue()).help(
+        "Parse, tag and serialize the documents in separate stages joined by bounded "
+            + "queues, with --parseThreads, --threads and --serializeThreads threads each; the "
+            + "mean occupancy of the queues is reported at the end.\n");
+    batchParser.addArgument("--parseThreads").required(false).setDefault("1")
+        .help("Number of threads parsing the documents with --pipeline; it defaults to 1.\n");
+    batchParser.addArgument("--serializeThreads").required(false)
+        .setDefault("1").help(
+            "Number of threads writing the annotated documents with --pipeline; it defaults "
+                + "to 1.\n");
+    batchParser.addArgument("--pipelineQueue").required(false).help(
+        "Maximum number of documents waiting for each --pipeline stage; it defaults to twice "
+            + "--threads.\n");
+    batchParser.addArgument("--outputDir").required(false).help(
+        "Directory for the annotated documents; by default they are written next to the inputs "
+            + "as NAME.ner.FORMAT.\n");
+    batchParser.addArgument("inputs").nargs("+").help(
+        "Documents to annotate: directories, globs such as 'corpus/*.naf', single files or "
+            + "file lists prefixed by '@'.\n");
+  }
+
+  /**
+   * Create the available parameters for dictionary compilation.
+   */
+  private void loadCompileDictParameters() {
+    compileDictParser.addArgument("--dictPath").required(true).help(
+        "Directory containing the dictionaries to compile.\n");
+    compileDictParser.addArgument("-o", "--output").required(false).help(
+        "Snapshot file to write; it defaults to " + DictionaryTrie.SNAPSHOT_NAME
+            + " inside the dictionary directory, where --dictPath finds it.\n");
+  }
+
+  /**
+   * Create the available parameters for the server load test.
+   */
+  private void loadLoadTestParameters() {
+    loadTestParser.addArgument("-p", "--port").required(true)
+        .help("Port of the server.\n");
+    loadTestParser.addArgument("--host").required(false)
+        .setDefault(Flags.DEFAULT_HOSTNAME)
+        .help("Hostname or IP where the server is running.\n");
+    loadTestParser.addArgument("--protocol").required(false)
+        .choices("line", "framed", "http").setDefault("framed").help(
+            "Protocol of the requests: 'line' opens a connection per document, 'framed' keeps "
+                + "one connection per client and 'http' posts the documents to the --http "
+                + "server; it defaults to 'framed'.\n");
+    loadTestParser.addArgument("-c", "--concurrency").required(false)
+        .setDefault("1").help(
+            "Number of concurrent connections, each waiting for its reply before sending the "
+                + "next document; it defaults to 1.\n");
+    loadTestParser.addArgument("--rate").required(false).setDefault("0").help(
+        "Target requests per second over all the connections; latencies are then measured "
+            + "from the time each request was due; it defaults to 0, as fast as possible.\n");
+    loadTestParser.addArgument("--requests").required(false).help(
+        "Number of requests to send, cycling over the documents; by default every document "
+            + "is sent once.\n");
+    loadTestParser.addArgument("--duration").required(false).help(
+        "Stop sending requests after these seconds.\n");
+    loadTestParser.addArgument("--warmup").required(false).setDefault("0")
+        .help("Number of requests sent first and left out of the report.\n");
+    loadTestParser.addArgument("--modelKey").required(false).help(
+        "Key of the server model to annotate the documents with; by default the server "
+            + "chooses it by the language of every document.\n");
+    loadTestParser.addArgument("inputs").nargs("+").help(
+        "Documents to send: directories, globs such as 'corpus/*.naf', single files or "
+            + "file lists prefixed by '@'.\n");
   }
 
   /**
@@ -396,21 +1023,30 @@ public class CLI {
     annotateProperties.setProperty("dictTag", dictTag);
     annotateProperties.setProperty("dictPath", dictPath);
     annotateProperties.setProperty("clearFeatures", clearFeatures);
+    annotateProperties.setProperty("sentenceCache",
+        parsedArguments.getString("sentenceCache"));
+    annotateProperties.setProperty("sentenceThreads",
+        parsedArguments.getString("sentenceThreads"));
+    annotateProperties.setProperty("incremental",
+        String.valueOf(parsedArguments.getBoolean("incremental")));
     return annotateProperties;
   }
 
   private Properties setNameServerProperties(String port, String model,
       String language, String lexer, String dictTag, String dictPath,
-      String clearFeatures, String outputFormat) {
+      String clearFeatures, String outputFormat, String threads) {
     Properties serverProperties = new Properties();
     serverProperties.setProperty("port", port);
-    serverProperties.setProperty(MODEL, model);
-    serverProperties.setProperty("language", language);
+    if (model != null) {
+      serverProperties.setProperty(MODEL, model);
+      serverProperties.setProperty("language", language);
+    }
     serverProperties.setProperty("ruleBasedOption", lexer);
     serverProperties.setProperty("dictTag", dictTag);
     serverProperties.setProperty("dictPath", dictPath);
     serverProperties.setProperty("clearFeatures", clearFeatures);
     serverProperties.setProperty("outputFormat", outputFormat);
+    serverProperties.setProperty("threads", threads);
     return serverProperties;
   }
 
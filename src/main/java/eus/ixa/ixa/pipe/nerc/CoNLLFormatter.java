@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+
+/**
+ * Writes the CoNLL 2002 and CoNLL 2003 formats token by token, shared by the
+ * {@link Annotate} and {@link TokenStreamTagger} outputs. Every token is a
+ * line with its form, lemma and morphofeat, or its input columns, followed by
+ * its BIO tag; sentences are separated by an empty line. In CoNLL 2002 every
+ * entity starts with B-; in CoNLL 2003 it starts with I- unless it follows an
+ * entity of the same class.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class CoNLLFormatter {
+
+  private final Appendable out;
+  private final boolean isCoNLL2003;
+  private String previousType = null;
+  private boolean previousIsEntity = false;
+
+  /**
+   * Construct a formatter.
+   *
+   * @param out
+   *          the output
+   * @param isCoNLL2003
+   *          true for CoNLL 2003, false for CoNLL 2002
+   */
+  CoNLLFormatter(final Appendable out, final boolean isCoNLL2003) {
+    this.out = out;
+    this.isCoNLL2003 = isCoNLL2003;
+  }
+
+  /**
+   * Write a token.
+   *
+   * @param form
+   *          the form
+   * @param lemma
+   *          the lemma
+   * @param morphofeat
+   *          the morphofeat
+   * @param neType
+   *          the CoNLL class of the entity of the token or null if none
+   * @param begin
+   *          whether the token is the first of its entity
+   * @throws IOException
+   *           if io error
+   */
+  void token(final String form, final String lemma, final String morphofeat,
+      final String neType, final boolean begin) throws IOException {
+    this.out.append(form).append('\t');
+    this.out.append(String.valueOf(lemma)).append('\t');
+    this.out.append(String.valueOf(morphofeat)).append('\t');
+    tag(neType, begin);
+  }
+
+  /**
+   * Write a token given by its input columns, such as a line of a CoNLL
+   * input, followed by its tag.
+   *
+   * @param columns
+   *          the tab separated columns of the token
+   * @param neType
+   *          the CoNLL class of the entity of the token or null if none
+   * @param begin
+   *          whether the token is the first of its entity
+   * @throws IOException
+   *           if io error
+   */
+  void token(final String columns, final String neType, final boolean begin)
+      throws IOException {
+    this.out.append(columns).append('\t');
+    tag(neType, begin);
+  }
+
+  private void tag(final String neType, final boolean begin)
+      throws IOException {
+    if (neType == null) {
+      this.out.append("O");
+      this.previousIsEntity = false;
+      this.previousType = "O";
+    } else {
+      if (!begin) {
+        this.out.append("I-");
+      } else if (this.isCoNLL2003) {
+        this.out.append(this.previousIsEntity
+            && this.previousType.equalsIgnoreCase(neType) ? "B-" : "I-");
+      } else {
+        this.out.append("B-");
+      }
+      this.out.append(neType);
+      this.previousIsEntity = true;
+      this.previousType = neType;
+    }
+    this.out.append('\n');
+  }
+
+  /**
+   * End the current sentence.
+   *
+   * @throws IOException
+   *           if io error
+   */
+  void endSentence() throws IOException {
+    this.out.append('\n');
+    this.previousType = null;
+    this.previousIsEntity = false;
+  }
+
+}
@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelerME;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * The tagger of the dictionary only configuration, in which the Named
+ * Entities are looked up in the dictionaries, and optionally found by the
+ * numeric lexer, without any statistical model. As every sentence is tagged
+ * on its own against the read-only {@link DictionaryTrie}, the sentences of a
+ * document, or of many documents, are split into chunks of consecutive
+ * sentences of about the same number of tokens and the chunks are tagged in
+ * parallel. The spans are written at the position of their sentence, so they
+ * come back in document order whatever the order the chunks finish in.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class DictionaryTagger {
+
+  /**
+   * The minimum number of tokens of a chunk, so that a task is worth
+   * scheduling.
+   */
+  private static final int MIN_CHUNK_TOKENS = 1024;
+
+  private final DictionaryTrie dictionary;
+  private final boolean lexerTagger;
+  /**
+   * The spans of the sentences tagged last, null if the sentences are not
+   * cached.
+   */
+  private final SentenceCache sentenceCache;
+  /**
+   * The pool tagging the chunks, null if the sentences are tagged by the
+   * calling thread.
+   */
+  private final ForkJoinPool pool;
+  /**
+   * The idle contexts, with the numeric lexer and buffers, of the chunk
+   * tasks. Every task takes its own and gives it back when done, so that
+   * they are dropped with the tagger rather than kept by the pool threads.
+   */
+  private final ConcurrentLinkedQueue<TaggingContext> contexts = new ConcurrentLinkedQueue<>();
+  private final NERCMetrics metrics = NERCMetrics.getInstance();
+
+  /**
+   * Create the tagger.
+   *
+   * @param dictionary
+   *          the dictionaries
+   * @param lexerTagger
+   *          whether the numeric lexer is used
+   * @param sentenceCache
+   *          the sentence cache or null
+   * @param pool
+   *          the pool tagging the sentences in parallel or null
+   */
+  DictionaryTagger(final DictionaryTrie dictionary, final boolean lexerTagger,
+      final SentenceCache sentenceCache, final ForkJoinPool pool) {
+    this.dictionary = dictionary;
+    this.lexerTagger = lexerTagger;
+    this.sentenceCache = sentenceCache;
+    this.pool = pool;
+  }
+
+  /**
+   * Tag the Named Entities of a sentence.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @param context
+   *          the tagging context of the calling thread
+   * @return the spans of the Named Entities, without overlaps
+   */
+  Span[] tag(final String[] tokens, final TaggingContext context) {
+    if (this.sentenceCache != null) {
+      final Span[] cachedSpans = this.sentenceCache.get(tokens);
+      if (cachedSpans != null) {
+        this.metrics.sentenceCacheHit();
+        this.metrics.sentence(tokens.length, cachedSpans.length);
+        return cachedSpans;
+      }
+      this.metrics.sentenceCacheMiss();
+    }
+    long start = System.nanoTime();
+    Span[] spans = this.dictionary.nercToSpansExact(tokens,
+        context.getTokenIndexes(tokens.length));
+    this.metrics.record(NERCMetrics.Stage.DICTIONARY, start);
+    // the dictionary spans never overlap, only the numeric ones may
+    if (this.lexerTagger) {
+      start = System.nanoTime();
+      final Span[] numericSpans = context.getNumericNerTaggerLexer()
+          .nercToSpans(tokens);
+      this.metrics.record(NERCMetrics.Stage.NUMERIC, start);
+      final List<Span> allSpans = context.getSpans();
+      Collections.addAll(allSpans, spans);
+      Span.concatenateSpans(allSpans, numericSpans);
+      spans = SequenceLabelerME.dropOverlappingSpans(
+          allSpans.toArray(context.getSpanArray(allSpans.size())));
+    }
+    this.metrics.sentence(tokens.length, spans.length);
+    if (this.sentenceCache != null) {
+      this.sentenceCache.put(tokens, spans);
+    }
+    return spans;
+  }
+
+  /**
+   * Tag the Named Entities of many sentences, in parallel if there is a pool
+   * and more than one chunk.
+   *
+   * @param sentences
+   *          the tokens of every sentence
+   * @param context
+   *          the tagging context of the calling thread
+   * @return the spans of every sentence, in the order of the sentences
+   */
+  Span[][] tag(final List<String[]> sentences, final TaggingContext context) {
+    final Span[][] sentenceSpans = new Span[sentences.size()][];
+    final List<int[]> chunks = getChunks(sentences);
+    if (this.pool == null || this.pool.isShutdown() || chunks.size() < 2) {
+      for (int i = 0; i < sentences.size(); i++) {
+        sentenceSpans[i] = tag(sentences.get(i), context);
+      }
+      return sentenceSpans;
+    }
+    final List<Callable<Void>> tasks = new ArrayList<>(chunks.size());
+    for (final int[] chunk : chunks) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          TaggingContext workerContext = contexts.poll();
+          if (workerContext == null) {
+            workerContext = new TaggingContext(null);
+          }
+          try {
+            for (int i = chunk[0]; i < chunk[1]; i++) {
+              sentenceSpans[i] = tag(sentences.get(i), workerContext);
+            }
+          } finally {
+            workerContext.clearBuffers();
+            contexts.add(workerContext);
+          }
+          return null;
+        }
+      });
+    }
+    try {
+      for (final Future<Void> result : this.pool.invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (final RejectedExecutionException e) {
+      // the annotator was closed while tagging
+      for (int i = 0; i < sentences.size(); i++) {
+        sentenceSpans[i] = tag(sentences.get(i), context);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while tagging sentences", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    return sentenceSpans;
+  }
+
+  /**
+   * Drop the idle contexts of the chunk tasks, once the pool is shut down.
+   */
+  void close() {
+    this.contexts.clear();
+  }
+
+  /**
+   * Split the sentences into chunks of consecutive sentences with about the
+   * same number of tokens, four per pool thread unless that makes them
+   * smaller than {@link #MIN_CHUNK_TOKENS}.
+   *
+   * @param sentences
+   *          the tokens of every sentence
+   * @return the chunks as [start, end) sentence ranges in order
+   */
+  private List<int[]> getChunks(final List<String[]> sentences) {
+    final List<int[]> chunks = new ArrayList<>();
+    if (this.pool == null) {
+      chunks.add(new int[] { 0, sentences.size() });
+      return chunks;
+    }
+    long tokens = 0;
+    for (final String[] sentence : sentences) {
+      tokens += sentence.length;
+    }
+    final long chunkTokens = Math.max(MIN_CHUNK_TOKENS,
+        tokens / (this.pool.getParallelism() * 4));
+    int start = 0;
+    long size = 0;
+    for (int i = 0; i < sentences.size(); i++) {
+      size += sentences.get(i).length;
+      if (size >= chunkTokens) {
+        chunks.add(new int[] { start, i + 1 });
+        start = i + 1;
+        size = 0;
+      }
+    }
+    if (start < sentences.size()) {
+      chunks.add(new int[] { start, sentences.size() });
+    }
+    return chunks;
+  }
+
+}
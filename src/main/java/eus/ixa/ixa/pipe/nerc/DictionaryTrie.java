@@ -0,0 +1,656 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.io.ByteStreams;
+
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelerME;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * Exact dictionary matching over a token level trie compiled from the
+ * gazetteers of a dictionary directory, the same files read by
+ * {@code Dictionaries}: every line contains an entry and its class separated
+ * by a tab, and the tokens of an entry are separated by spaces. The lines are
+ * split as {@code Dictionaries} does, without trimming them, so an entry only
+ * matches the tokens it contains joined by single spaces; entries with
+ * leading, trailing or repeated spaces never match and are left out.
+ * <p>
+ * The trie is kept in flat arrays: the vocabulary is a sorted array of the
+ * distinct tokens, so a token is looked up by binary search, and the children
+ * of every node are a sorted range of two parallel int arrays. A sentence is
+ * tagged by mapping its tokens to vocabulary ids once and then walking the
+ * trie once from every position.
+ * <p>
+ * Every node keeps the class of its entry in each gazetteer, so that the
+ * matches are those of {@code DictionariesNERTagger}: each gazetteer keeps
+ * the longest entry starting at a position and resumes after it, a repeated
+ * entry of a gazetteer takes the class of its last line, and the matches of
+ * all the gazetteers are merged dropping the overlapping ones. The instances
+ * are immutable and can be shared by many threads.
+ * <p>
+ * A compiled trie can be saved as a binary snapshot with
+ * {@link #write(Path)}, which {@link #load(String)} reads back instead of
+ * parsing the gazetteers again.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class DictionaryTrie {
+
+  /**
+   * The file name of the snapshot inside a dictionary directory.
+   */
+  public static final String SNAPSHOT_NAME = "nerc-dictionaries.bin";
+  /**
+   * The spans of the sentences without entries, shared as it is empty.
+   */
+  private static final Span[] NO_SPANS = new Span[0];
+  /**
+   * The first bytes of a snapshot, "NERCDICT".
+   */
+  private static final long SNAPSHOT_MAGIC = 0x4E45524344494354L;
+  /**
+   * The version of the snapshot format.
+   */
+  private static final int SNAPSHOT_VERSION = 2;
+
+  /**
+   * The distinct tokens of the entries, sorted.
+   */
+  private final String[] vocabulary;
+  /**
+   * The entity classes.
+   */
+  private final String[] types;
+  /**
+   * The number of gazetteers.
+   */
+  private final int dictionaryCount;
+  /**
+   * For every node and gazetteer, at {@code node * dictionaryCount +
+   * dictionary}, the index of the class in {@link #types} of the entry of the
+   * gazetteer ending at the node or -1.
+   */
+  private final int[] nodeTypes;
+  /**
+   * For every node, the start of its children in {@link #childTokens} and
+   * {@link #childNodes}; the children end where those of the next node start.
+   */
+  private final int[] childStarts;
+  /**
+   * The vocabulary id of the token leading to every child, sorted for each
+   * node.
+   */
+  private final int[] childTokens;
+  /**
+   * The node of every child.
+   */
+  private final int[] childNodes;
+
+  DictionaryTrie(final String[] vocabulary, final String[] types,
+      final int dictionaryCount, final int[] nodeTypes,
+      final int[] childStarts, final int[] childTokens,
+      final int[] childNodes) {
+    this.vocabulary = vocabulary;
+    this.types = types;
+    this.dictionaryCount = dictionaryCount;
+    this.nodeTypes = nodeTypes;
+    this.childStarts = childStarts;
+    this.childTokens = childTokens;
+    this.childNodes = childNodes;
+  }
+
+  /**
+   * Load the dictionaries of a path. The path can be a snapshot or a
+   * dictionary directory; the snapshot of a directory is used if it is not
+   * older than the gazetteers, otherwise they are compiled.
+   *
+   * @param dictPath
+   *          the snapshot or the directory containing the gazetteers
+   * @return the trie
+   * @throws IOException
+   *           if the dictionaries cannot be read
+   */
+  public static DictionaryTrie load(final String dictPath) throws IOException {
+    final Path path = Paths.get(dictPath);
+    if (Files.isRegularFile(path)) {
+      return read(path);
+    }
+    final Path snapshot = path.resolve(SNAPSHOT_NAME);
+    if (Files.isRegularFile(snapshot)) {
+      if (isUpToDate(snapshot, getGazetteers(path))) {
+        return read(snapshot);
+      }
+      System.err.println("-> WARNING: " + snapshot
+          + " is older than the dictionaries, compiling them instead");
+    }
+    return compile(dictPath);
+  }
+
+  /**
+   * Get the last modification time of the files that {@link #load(String)}
+   * reads for a path: the snapshot, or the directory, its gazetteers and its
+   * snapshot, so that a dictionary loaded before can be compared with the
+   * files on disk.
+   *
+   * @param dictPath
+   *          the snapshot or the directory containing the gazetteers
+   * @return the latest modification time in milliseconds
+   * @throws IOException
+   *           if the files cannot be read
+   */
+  public static long getLastModified(final String dictPath)
+      throws IOException {
+    final Path path = Paths.get(dictPath);
+    long lastModified = Files.getLastModifiedTime(path).toMillis();
+    if (Files.isDirectory(path)) {
+      final List<Path> files = getGazetteers(path);
+      final Path snapshot = path.resolve(SNAPSHOT_NAME);
+      if (Files.isRegularFile(snapshot)) {
+        files.add(snapshot);
+      }
+      for (final Path file : files) {
+        lastModified = Math.max(lastModified,
+            Files.getLastModifiedTime(file).toMillis());
+      }
+    }
+    return lastModified;
+  }
+
+  private static boolean isUpToDate(final Path snapshot,
+      final List<Path> gazetteers) throws IOException {
+    final long snapshotTime = Files.getLastModifiedTime(snapshot).toMillis();
+    for (final Path gazetteer : gazetteers) {
+      if (Files.getLastModifiedTime(gazetteer).toMillis() > snapshotTime) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the gazetteers of a dictionary directory in file name order.
+   */
+  private static List<Path> getGazetteers(final Path dictDir)
+      throws IOException {
+    try (Stream<Path> paths = Files.list(dictDir)) {
+      return paths.filter(Files::isRegularFile)
+          .filter(path -> !path.getFileName().toString().startsWith("."))
+          .filter(path -> !path.getFileName().toString().equals(SNAPSHOT_NAME))
+          .sorted().collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Compile the gazetteers of a dictionary directory.
+   *
+   * @param dictPath
+   *          the directory containing the gazetteers
+   * @return the trie
+   * @throws IOException
+   *           if the gazetteers cannot be read
+   */
+  public static DictionaryTrie compile(final String dictPath)
+      throws IOException {
+    final List<Path> dictionaries = getGazetteers(Paths.get(dictPath));
+    // tokens and classes are interned while reading to keep a single copy
+    final Map<String, String> tokens = new HashMap<>();
+    final Map<String, Integer> typeIds = new LinkedHashMap<>();
+    final List<String[]> entries = new ArrayList<>();
+    final IntList entryDictionaries = new IntList();
+    final IntList entryTypes = new IntList();
+    for (int d = 0; d < dictionaries.size(); d++) {
+      final Path dictionary = dictionaries.get(d);
+      try (BufferedReader breader = Files.newBufferedReader(dictionary,
+          StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = breader.readLine()) != null) {
+          final String[] lineArray = line.split("\t");
+          if (lineArray.length != 2) {
+            continue;
+          }
+          final String[] entry = lineArray[0].split(" ", -1);
+          if (Arrays.asList(entry).contains("")) {
+            continue;
+          }
+          for (int i = 0; i < entry.length; i++) {
+            final String token = tokens.putIfAbsent(entry[i], entry[i]);
+            if (token != null) {
+              entry[i] = token;
+            }
+          }
+          Integer typeId = typeIds.get(lineArray[1]);
+          if (typeId == null) {
+            typeId = typeIds.size();
+            typeIds.put(lineArray[1], typeId);
+          }
+          entries.add(entry);
+          entryDictionaries.add(d);
+          entryTypes.add(typeId);
+        }
+      }
+    }
+    final String[] vocabulary = tokens.keySet()
+        .toArray(new String[tokens.size()]);
+    Arrays.sort(vocabulary);
+    return build(vocabulary,
+        typeIds.keySet().toArray(new String[typeIds.size()]),
+        dictionaries.size(), entries, entryDictionaries, entryTypes);
+  }
+
+  /**
+   * Build the trie arrays. The entries are sorted so that the nodes can be
+   * created in a single pass sharing the prefix with the previous entry; the
+   * sort is stable, so the last class of an entry repeated in a gazetteer
+   * overwrites the previous ones.
+   */
+  private static DictionaryTrie build(final String[] vocabulary,
+      final String[] types, final int dictionaryCount,
+      final List<String[]> entries, final IntList entryDictionaries,
+      final IntList entryTypes) {
+    final int[][] entryIds = new int[entries.size()][];
+    final Integer[] order = new Integer[entries.size()];
+    for (int i = 0; i < entryIds.length; i++) {
+      final String[] entry = entries.get(i);
+      entryIds[i] = new int[entry.length];
+      for (int j = 0; j < entry.length; j++) {
+        entryIds[i][j] = Arrays.binarySearch(vocabulary, entry[j]);
+      }
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer a, final Integer b) {
+        return compareIds(entryIds[a], entryIds[b]);
+      }
+    });
+    // edges in creation order, which is increasing token order per parent
+    final IntList edgeParents = new IntList();
+    final IntList edgeTokens = new IntList();
+    final IntList nodeTypes = new IntList();
+    nodeTypes.addAll(-1, dictionaryCount);
+    final IntList path = new IntList();
+    path.add(0);
+    int[] previous = new int[0];
+    for (final Integer index : order) {
+      final int[] entry = entryIds[index];
+      int common = 0;
+      while (common < entry.length && common < previous.length
+          && entry[common] == previous[common]) {
+        common++;
+      }
+      path.size = common + 1;
+      for (int i = common; i < entry.length; i++) {
+        final int node = edgeParents.size + 1;
+        nodeTypes.addAll(-1, dictionaryCount);
+        edgeParents.add(path.get(i));
+        edgeTokens.add(entry[i]);
+        path.add(node);
+      }
+      final int last = path.get(entry.length);
+      nodeTypes.set(last * dictionaryCount + entryDictionaries.get(index),
+          entryTypes.get(index));
+      previous = entry;
+    }
+    // counting sort of the edges by parent; edge e creates node e + 1
+    final int nodes = edgeParents.size + 1;
+    final int[] childStarts = new int[nodes + 1];
+    for (int e = 0; e < edgeParents.size; e++) {
+      childStarts[edgeParents.get(e) + 1]++;
+    }
+    for (int n = 0; n < nodes; n++) {
+      childStarts[n + 1] += childStarts[n];
+    }
+    final int[] next = Arrays.copyOf(childStarts, nodes);
+    final int[] childTokens = new int[edgeParents.size];
+    final int[] childNodes = new int[edgeParents.size];
+    for (int e = 0; e < edgeParents.size; e++) {
+      final int slot = next[edgeParents.get(e)]++;
+      childTokens[slot] = edgeTokens.get(e);
+      childNodes[slot] = e + 1;
+    }
+    return new DictionaryTrie(vocabulary, types, dictionaryCount,
+        nodeTypes.toArray(), childStarts, childTokens, childNodes);
+  }
+
+  private static int compareIds(final int[] a, final int[] b) {
+    final int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return a.length - b.length;
+  }
+
+  /**
+   * Write the trie as a binary snapshot: the magic and version, the
+   * vocabulary and classes as length prefixed UTF-8 strings, the number of
+   * gazetteers and then the node arrays, all of them big endian.
+   *
+   * @param snapshot
+   *          the snapshot file
+   * @throws IOException
+   *           if the snapshot cannot be written
+   */
+  public final void write(final Path snapshot) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(snapshot), 1 << 16))) {
+      write(out);
+    }
+  }
+
+  private void write(final DataOutputStream out) throws IOException {
+    out.writeLong(SNAPSHOT_MAGIC);
+    out.writeInt(SNAPSHOT_VERSION);
+    writeStrings(out, this.vocabulary);
+    writeStrings(out, this.types);
+    out.writeInt(this.dictionaryCount);
+    writeInts(out, this.nodeTypes);
+    writeInts(out, this.childStarts);
+    writeInts(out, this.childTokens);
+    writeInts(out, this.childNodes);
+  }
+
+  /**
+   * Get a digest of the entries of the trie and their classes: the SHA-256
+   * of its snapshot, which changes with any entry or class of the
+   * gazetteers whatever the files it was loaded from.
+   *
+   * @return the hexadecimal digest
+   */
+  public final String getDigest() {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      // every JVM provides SHA-256
+      throw new AssertionError(e);
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new DigestOutputStream(ByteStreams.nullOutputStream(), digest),
+        1 << 16))) {
+      write(out);
+    } catch (final IOException e) {
+      // nothing but the digest is written
+      throw new AssertionError(e);
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (final byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+          .append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  private static void writeStrings(final DataOutputStream out,
+      final String[] strings) throws IOException {
+    out.writeInt(strings.length);
+    for (final String string : strings) {
+      final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static void writeInts(final DataOutputStream out, final int[] ints)
+      throws IOException {
+    out.writeInt(ints.length);
+    for (final int value : ints) {
+      out.writeInt(value);
+    }
+  }
+
+  /**
+   * Read a snapshot written by {@link #write(Path)}. The file is memory
+   * mapped and the node arrays are copied in bulk.
+   *
+   * @param snapshot
+   *          the snapshot file
+   * @return the trie
+   * @throws IOException
+   *           if the snapshot cannot be read or is not valid
+   */
+  public static DictionaryTrie read(final Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot,
+        StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Dictionary snapshot too large: " + snapshot);
+      }
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size());
+      try {
+        if (buffer.getLong() != SNAPSHOT_MAGIC) {
+          throw new IOException("Not a dictionary snapshot: " + snapshot);
+        }
+        final int version = buffer.getInt();
+        if (version != SNAPSHOT_VERSION) {
+          throw new IOException(
+              "Dictionary snapshot version " + version + " not supported: "
+                  + snapshot + "; compile the dictionaries again");
+        }
+        final String[] vocabulary = readStrings(buffer);
+        final String[] types = readStrings(buffer);
+        final int dictionaryCount = buffer.getInt();
+        return new DictionaryTrie(vocabulary, types, dictionaryCount,
+            readInts(buffer),
+            readInts(buffer), readInts(buffer), readInts(buffer));
+      } catch (final RuntimeException e) {
+        // BufferUnderflowException and friends on truncated files
+        throw new IOException("Dictionary snapshot not valid: " + snapshot, e);
+      }
+    }
+  }
+
+  private static String[] readStrings(final ByteBuffer buffer) {
+    final String[] strings = new String[buffer.getInt()];
+    byte[] bytes = new byte[64];
+    for (int i = 0; i < strings.length; i++) {
+      final int length = buffer.getInt();
+      if (length > bytes.length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      buffer.get(bytes, 0, length);
+      strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+    return strings;
+  }
+
+  private static int[] readInts(final ByteBuffer buffer) {
+    final int[] ints = new int[buffer.getInt()];
+    buffer.asIntBuffer().get(ints);
+    buffer.position(buffer.position() + ints.length * 4);
+    return ints;
+  }
+
+  /**
+   * Find the longest dictionary entries of a sentence, from left to right and
+   * without overlaps.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @return the spans of the entries with their classes
+   */
+  public final Span[] nercToSpansExact(final String[] tokens) {
+    return nercToSpansExact(tokens, new int[tokens.length]);
+  }
+
+  /**
+   * Find the longest dictionary entries of a sentence, from left to right and
+   * without overlaps, looking up the tokens into a reused array.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @param ids
+   *          the array for the ids of the tokens, at least as long as the
+   *          sentence
+   * @return the spans of the entries with their classes
+   */
+  public final Span[] nercToSpansExact(final String[] tokens,
+      final int[] ids) {
+    for (int i = 0; i < tokens.length; i++) {
+      ids[i] = Arrays.binarySearch(this.vocabulary, tokens[i]);
+    }
+    final int dictionaries = this.dictionaryCount;
+    // for every gazetteer, the position after its last match
+    final int[] resume = new int[dictionaries];
+    final int[] matchEnds = new int[dictionaries];
+    final int[] matchTypes = new int[dictionaries];
+    List<Span> spans = null;
+    for (int start = 0; start < tokens.length; start++) {
+      boolean active = false;
+      for (int d = 0; d < dictionaries; d++) {
+        matchEnds[d] = -1;
+        active |= resume[d] <= start;
+      }
+      if (!active) {
+        continue;
+      }
+      int node = 0;
+      for (int i = start; i < tokens.length && ids[i] >= 0; i++) {
+        node = getChild(node, ids[i]);
+        if (node < 0) {
+          break;
+        }
+        final int base = node * dictionaries;
+        for (int d = 0; d < dictionaries; d++) {
+          if (this.nodeTypes[base + d] >= 0 && resume[d] <= start) {
+            matchEnds[d] = i + 1;
+            matchTypes[d] = this.nodeTypes[base + d];
+          }
+        }
+      }
+      for (int d = 0; d < dictionaries; d++) {
+        if (matchEnds[d] >= 0) {
+          if (spans == null) {
+            spans = new ArrayList<>();
+          }
+          spans.add(new Span(start, matchEnds[d], this.types[matchTypes[d]]));
+          resume[d] = matchEnds[d];
+        }
+      }
+    }
+    if (spans == null) {
+      return NO_SPANS;
+    }
+    final Span[] spansArray = spans.toArray(new Span[spans.size()]);
+    // the matches of a single gazetteer never overlap
+    return dictionaries == 1 ? spansArray
+        : SequenceLabelerME.dropOverlappingSpans(spansArray);
+  }
+
+  /**
+   * Get a child of a node by binary search over its sorted children.
+   *
+   * @return the child node or -1
+   */
+  private int getChild(final int node, final int token) {
+    int low = this.childStarts[node];
+    int high = this.childStarts[node + 1] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int midToken = this.childTokens[mid];
+      if (midToken < token) {
+        low = mid + 1;
+      } else if (midToken > token) {
+        high = mid - 1;
+      } else {
+        return this.childNodes[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the number of nodes of the trie, the root included.
+   *
+   * @return the number of nodes
+   */
+  public final int getNodeCount() {
+    return this.childStarts.length - 1;
+  }
+
+  /**
+   * Get the entity classes of the dictionaries.
+   *
+   * @return the classes
+   */
+  public final List<String> getTypes() {
+    return Collections.unmodifiableList(Arrays.asList(this.types));
+  }
+
+  /**
+   * A growable int array, to avoid boxing while building the trie.
+   */
+  private static final class IntList {
+
+    private int[] values = new int[1024];
+    private int size;
+
+    void add(final int value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = value;
+    }
+
+    int get(final int index) {
+      return this.values[index];
+    }
+
+    void addAll(final int value, final int count) {
+      for (int i = 0; i < count; i++) {
+        add(value);
+      }
+    }
+
+    void set(final int index, final int value) {
+      this.values[index] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(this.values, this.size);
+    }
+  }
+
+}
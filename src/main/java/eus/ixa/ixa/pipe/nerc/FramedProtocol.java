@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Length-prefixed framing protocol of the {@link NERTaggerServer}. A framed
+ * connection starts with the {@link #MAGIC} bytes sent by the client; after
+ * that both sides exchange frames made of a one byte type, a four byte big
+ * endian payload length and the UTF-8 payload. Clients may send many
+ * {@link #DOCUMENT} frames without waiting for the replies, which come back in
+ * the same order as {@link #RESULT} or {@link #ERROR} frames. A
+ * {@link #MODEL} frame, which has no reply, chooses the model of the documents
+ * following it. The client ends the session by closing its output.
+ * <p>
+ * {@link #STATS} frames are answered with the {@link NERCMetrics} of the
+ * server. The non-blocking front end of the server, {@link NERTaggerNioServer},
+ * may reply to a document with an {@link #OVERLOADED} frame instead, and adds
+ * its queue statistics to the {@link #STATS} replies.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public final class FramedProtocol {
+
+  /**
+   * The bytes opening a framed connection. Connections starting otherwise are
+   * served with the line based protocol.
+   */
+  public static final byte[] MAGIC = { 'N', 'E', 'R', 'C' };
+  /**
+   * A document to annotate.
+   */
+  public static final byte DOCUMENT = 1;
+  /**
+   * The annotation of a document.
+   */
+  public static final byte RESULT = 2;
+  /**
+   * The error message produced by a request.
+   */
+  public static final byte ERROR = 3;
+  /**
+   * The key of the model for the following documents, such as en or en-news.
+   */
+  public static final byte MODEL = 4;
+  /**
+   * The reply to a document rejected because the request queue is full; the
+   * client may send it again later or to another server.
+   */
+  public static final byte OVERLOADED = 5;
+  /**
+   * A request for the server statistics, answered with a frame of the same
+   * type holding one {@code name=value} line per statistic.
+   */
+  public static final byte STATS = 6;
+  /**
+   * The largest payload accepted, to avoid allocating whatever a corrupt
+   * length header asks for.
+   */
+  public static final int MAX_PAYLOAD_LENGTH = 512 * 1024 * 1024;
+
+  private FramedProtocol() {
+  }
+
+  /**
+   * A frame of the protocol.
+   */
+  public static final class Frame {
+
+    private final byte type;
+    private final byte[] payload;
+
+    public Frame(final byte type, final byte[] payload) {
+      this.type = type;
+      this.payload = payload;
+    }
+
+    public byte getType() {
+      return this.type;
+    }
+
+    public byte[] getPayload() {
+      return this.payload;
+    }
+
+    /**
+     * Get the payload as text.
+     *
+     * @return the UTF-8 decoded payload
+     */
+    public String getText() {
+      return new String(this.payload, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Check whether the first bytes of a connection are the framing magic.
+   *
+   * @param header
+   *          the first bytes read from the connection
+   * @param length
+   *          the number of bytes read
+   * @return true if the connection uses the framed protocol
+   */
+  public static boolean isMagic(final byte[] header, final int length) {
+    if (length != MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read the next frame.
+   *
+   * @param in
+   *          the input stream
+   * @return the frame or null if the peer closed the connection between frames
+   * @throws IOException
+   *           if the stream ends inside a frame or the length is not valid
+   */
+  public static Frame readFrame(final DataInputStream in) throws IOException {
+    final int type = in.read();
+    if (type == -1) {
+      return null;
+    }
+    final int length = in.readInt();
+    if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+      throw new IOException("Frame length not valid: " + length);
+    }
+    final byte[] payload = new byte[length];
+    try {
+      in.readFully(payload);
+    } catch (final EOFException e) {
+      throw new IOException("Connection closed inside a frame", e);
+    }
+    return new Frame((byte) type, payload);
+  }
+
+  /**
+   * Write a frame. The stream is not flushed, so that pipelined frames can be
+   * sent together.
+   *
+   * @param out
+   *          the output stream
+   * @param type
+   *          the frame type
+   * @param payload
+   *          the payload
+   * @throws IOException
+   *           if io error
+   */
+  public static void writeFrame(final DataOutputStream out, final byte type,
+      final byte[] payload) throws IOException {
+    out.writeByte(type);
+    out.writeInt(payload.length);
+    out.write(payload);
+  }
+
+  /**
+   * Write a frame whose payload is the content of a file, copied to the
+   * stream rather than read into memory first.
+   *
+   * @param out
+   *          the output stream
+   * @param type
+   *          the frame type
+   * @param file
+   *          the file with the payload
+   * @throws IOException
+   *           if io error or the file is longer than
+   *           {@link #MAX_PAYLOAD_LENGTH}
+   */
+  public static void writeFrame(final DataOutputStream out, final byte type,
+      final Path file) throws IOException {
+    final long length = Files.size(file);
+    if (length > MAX_PAYLOAD_LENGTH) {
+      throw new IOException("File too long for a frame: " + file);
+    }
+    out.writeByte(type);
+    out.writeInt((int) length);
+    if (Files.copy(file, out) != length) {
+      throw new IOException("File changed while sent: " + file);
+    }
+  }
+
+  /**
+   * Encode a frame with a text payload.
+   *
+   * @param type
+   *          the frame type
+   * @param text
+   *          the payload
+   * @return the bytes of the frame
+   */
+  public static byte[] encodeFrame(final byte type, final String text) {
+    final byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+    final byte[] frame = new byte[5 + payload.length];
+    frame[0] = type;
+    frame[1] = (byte) (payload.length >>> 24);
+    frame[2] = (byte) (payload.length >>> 16);
+    frame[3] = (byte) (payload.length >>> 8);
+    frame[4] = (byte) payload.length;
+    System.arraycopy(payload, 0, frame, 5, payload.length);
+    return frame;
+  }
+
+  /**
+   * Write a frame with a text payload.
+   *
+   * @param out
+   *          the output stream
+   * @param type
+   *          the frame type
+   * @param text
+   *          the payload
+   * @throws IOException
+   *           if io error
+   */
+  public static void writeFrame(final DataOutputStream out, final byte type,
+      final String text) throws IOException {
+    writeFrame(out, type, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
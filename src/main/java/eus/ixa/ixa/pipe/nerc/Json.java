@@ -0,0 +1,304 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * Minimal JSON support for the pre-tokenized input and the compact entity
+ * output, to avoid a JSON library dependency. Objects are parsed into
+ * {@code Map}s, arrays into {@code List}s and numbers into {@code Double}s.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class Json {
+
+  private final String text;
+  private int pos;
+
+  private Json(final String text) {
+    this.text = text;
+  }
+
+  /**
+   * Parse a JSON document.
+   *
+   * @param text
+   *          the JSON text
+   * @return the parsed value
+   * @throws IllegalArgumentException
+   *           if the text is not valid JSON
+   */
+  static Object parse(final String text) {
+    final Json parser = new Json(text);
+    final Object value = parser.readValue();
+    parser.skipWhitespace();
+    if (parser.pos != text.length()) {
+      throw parser.error("Unexpected content");
+    }
+    return value;
+  }
+
+  private Object readValue() {
+    skipWhitespace();
+    if (this.pos >= this.text.length()) {
+      throw error("Unexpected end");
+    }
+    final char c = this.text.charAt(this.pos);
+    switch (c) {
+    case '{':
+      return readObject();
+    case '[':
+      return readArray();
+    case '"':
+      return readString();
+    case 't':
+      return readLiteral("true", Boolean.TRUE);
+    case 'f':
+      return readLiteral("false", Boolean.FALSE);
+    case 'n':
+      return readLiteral("null", null);
+    default:
+      return readNumber();
+    }
+  }
+
+  private Map<String, Object> readObject() {
+    final Map<String, Object> object = new LinkedHashMap<>();
+    this.pos++;
+    skipWhitespace();
+    if (peek() == '}') {
+      this.pos++;
+      return object;
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') {
+        throw error("Expected a member name");
+      }
+      final String name = readString();
+      skipWhitespace();
+      expect(':');
+      object.put(name, readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        this.pos++;
+      } else {
+        expect('}');
+        return object;
+      }
+    }
+  }
+
+  private List<Object> readArray() {
+    final List<Object> array = new ArrayList<>();
+    this.pos++;
+    skipWhitespace();
+    if (peek() == ']') {
+      this.pos++;
+      return array;
+    }
+    while (true) {
+      array.add(readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        this.pos++;
+      } else {
+        expect(']');
+        return array;
+      }
+    }
+  }
+
+  private String readString() {
+    this.pos++;
+    final StringBuilder sb = new StringBuilder();
+    while (this.pos < this.text.length()) {
+      final char c = this.text.charAt(this.pos++);
+      if (c == '"') {
+        return sb.toString();
+      } else if (c == '\\') {
+        if (this.pos >= this.text.length()) {
+          break;
+        }
+        final char escaped = this.text.charAt(this.pos++);
+        switch (escaped) {
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'u':
+          if (this.pos + 4 > this.text.length()) {
+            throw error("Bad unicode escape");
+          }
+          try {
+            sb.append((char) Integer
+                .parseInt(this.text.substring(this.pos, this.pos + 4), 16));
+          } catch (final NumberFormatException e) {
+            throw error("Bad unicode escape");
+          }
+          this.pos += 4;
+          break;
+        default:
+          sb.append(escaped);
+        }
+      } else {
+        sb.append(c);
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  private Object readLiteral(final String literal, final Object value) {
+    if (!this.text.startsWith(literal, this.pos)) {
+      throw error("Unexpected token");
+    }
+    this.pos += literal.length();
+    return value;
+  }
+
+  private Double readNumber() {
+    final int start = this.pos;
+    while (this.pos < this.text.length()
+        && "+-0123456789.eE".indexOf(this.text.charAt(this.pos)) != -1) {
+      this.pos++;
+    }
+    try {
+      return Double.valueOf(this.text.substring(start, this.pos));
+    } catch (final NumberFormatException e) {
+      throw error("Unexpected token");
+    }
+  }
+
+  private void skipWhitespace() {
+    while (this.pos < this.text.length()
+        && Character.isWhitespace(this.text.charAt(this.pos))) {
+      this.pos++;
+    }
+  }
+
+  private char peek() {
+    return this.pos < this.text.length() ? this.text.charAt(this.pos) : 0;
+  }
+
+  private void expect(final char c) {
+    if (peek() != c) {
+      throw error("Expected '" + c + "'");
+    }
+    this.pos++;
+  }
+
+  private IllegalArgumentException error(final String message) {
+    return new IllegalArgumentException(
+        message + " at offset " + this.pos + " of the JSON input");
+  }
+
+  /**
+   * Write a string as a JSON string literal.
+   *
+   * @param out
+   *          the output
+   * @param string
+   *          the string
+   * @throws IOException
+   *           if io error
+   */
+  static void quote(final Appendable out, final String string)
+      throws IOException {
+    out.append('"');
+    for (int i = 0; i < string.length(); i++) {
+      final char c = string.charAt(i);
+      switch (c) {
+      case '"':
+        out.append("\\\"");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\t':
+        out.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          out.append(String.format("\\u%04x", (int) c));
+        } else {
+          out.append(c);
+        }
+      }
+    }
+    out.append('"');
+  }
+
+  /**
+   * Write an entity of the compact JSON output: its sentence, its token
+   * offsets within the sentence, its class and its text.
+   *
+   * @param out
+   *          the output
+   * @param sentence
+   *          the sentence number, starting at 0
+   * @param span
+   *          the entity span
+   * @param tokens
+   *          the tokens of the sentence
+   * @throws IOException
+   *           if io error
+   */
+  static void writeEntity(final Appendable out, final int sentence,
+      final Span span, final String[] tokens) throws IOException {
+    out.append("{\"sentence\":").append(String.valueOf(sentence));
+    out.append(",\"start\":").append(String.valueOf(span.getStart()));
+    out.append(",\"end\":").append(String.valueOf(span.getEnd()));
+    out.append(",\"type\":");
+    quote(out, span.getType());
+    out.append(",\"text\":");
+    final StringBuilder text = new StringBuilder();
+    for (int i = span.getStart(); i < span.getEnd(); i++) {
+      if (i > span.getStart()) {
+        text.append(' ');
+      }
+      text.append(tokens[i]);
+    }
+    quote(out, text.toString());
+    out.append('}');
+  }
+
+}
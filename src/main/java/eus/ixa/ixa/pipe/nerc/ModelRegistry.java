@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The models served by the {@link NERTaggerServer}, keyed by language or by
+ * language and domain, such as {@code en} or {@code en-news}. The language of
+ * a model is the part of its key before the first '-'. The registry is read
+ * from the properties file given by the models property, with one
+ * {@code key=modelPath} line per model; the model and language properties add
+ * one more entry, which is also the default for documents in languages
+ * without a model.
+ * <p>
+ * The annotators are created the first time their model is requested. If the
+ * maxModels budget is exceeded, the least recently used annotator is closed,
+ * which frees its model, unless the annotator of another key shares it, once
+ * the requests using it finish, and created again when requested.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class ModelRegistry {
+
+  /**
+   * The annotation properties shared by every model.
+   */
+  private final Properties properties;
+  /**
+   * The model path of every key.
+   */
+  private final Map<String, String> models = new LinkedHashMap<>();
+  /**
+   * The key used for documents whose language has no model, null if none.
+   */
+  private final String defaultKey;
+  /**
+   * The maximum number of annotators kept.
+   */
+  private final int maxModels;
+  /**
+   * The annotators being created or created, in access order.
+   */
+  private final LinkedHashMap<String, FutureTask<Annotate>> annotators;
+
+  /**
+   * Construct the model registry.
+   *
+   * @param properties
+   *          the annotation properties plus the models, model, language and
+   *          maxModels properties
+   * @throws IOException
+   *           if the registry file cannot be read
+   */
+  public ModelRegistry(final Properties properties) throws IOException {
+    this.properties = properties;
+    final String registry = properties.getProperty("models");
+    if (registry != null) {
+      final Properties registryProperties = new Properties();
+      try (Reader reader = Files.newBufferedReader(Paths.get(registry),
+          StandardCharsets.UTF_8)) {
+        registryProperties.load(reader);
+      }
+      final List<String> keys = new ArrayList<>(
+          registryProperties.stringPropertyNames());
+      Collections.sort(keys);
+      for (final String key : keys) {
+        this.models.put(key, registryProperties.getProperty(key).trim());
+      }
+    }
+    final String model = properties.getProperty("model");
+    this.defaultKey = model == null ? null : properties.getProperty("language");
+    if (this.defaultKey != null) {
+      this.models.put(this.defaultKey, model);
+    }
+    this.maxModels = Integer.parseInt(properties.getProperty("maxModels",
+        String.valueOf(Integer.MAX_VALUE)));
+    this.annotators = new LinkedHashMap<String, FutureTask<Annotate>>(16,
+        0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(
+          final Map.Entry<String, FutureTask<Annotate>> eldest) {
+        if (size() > ModelRegistry.this.maxModels) {
+          System.err.println("-> Unloading model " + eldest.getKey());
+          if (eldest.getValue().isDone()) {
+            close(eldest.getValue());
+          }
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Get the keys of the registry.
+   *
+   * @return the keys
+   */
+  public final Set<String> getKeys() {
+    return Collections.unmodifiableSet(this.models.keySet());
+  }
+
+  /**
+   * Choose the model of a request: the key requested by the client if any,
+   * otherwise the language of the document if it has a model, otherwise the
+   * default model.
+   *
+   * @param requestedKey
+   *          the key requested by the client or null
+   * @param lang
+   *          the language of the document or null
+   * @return the key or null if no model applies
+   */
+  public final String resolve(final String requestedKey, final String lang) {
+    if (requestedKey != null) {
+      return this.models.containsKey(requestedKey) ? requestedKey : null;
+    }
+    if (lang != null && this.models.containsKey(lang)) {
+      return lang;
+    }
+    return this.defaultKey;
+  }
+
+  /**
+   * Get the model path of a key.
+   *
+   * @param key
+   *          the key
+   * @return the model path or null
+   */
+  public final String getModel(final String key) {
+    return this.models.get(key);
+  }
+
+  /**
+   * Get the annotator of a key, creating it if it is not loaded. Requests for
+   * a model being loaded wait for it instead of loading it again.
+   *
+   * @param key
+   *          a key of the registry
+   * @return the annotator
+   * @throws IOException
+   *           if the model or the dictionaries cannot be loaded
+   */
+  public final Annotate getAnnotator(final String key) throws IOException {
+    final String model = this.models.get(key);
+    if (model == null) {
+      throw new IllegalArgumentException("No model for " + key);
+    }
+    FutureTask<Annotate> annotator;
+    boolean load = false;
+    synchronized (this.annotators) {
+      annotator = this.annotators.get(key);
+      if (annotator == null) {
+        annotator = new FutureTask<>(new Callable<Annotate>() {
+          @Override
+          public Annotate call() throws IOException {
+            System.err.println("-> Loading model " + key + ": " + model);
+            return new Annotate(getProperties(key, model));
+          }
+        });
+        this.annotators.put(key, annotator);
+        load = true;
+      }
+    }
+    if (load) {
+      annotator.run();
+      synchronized (this.annotators) {
+        // unloaded while loading, so nobody else will close it
+        if (this.annotators.get(key) != annotator) {
+          close(annotator);
+        }
+      }
+    }
+    try {
+      return annotator.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted loading model " + key);
+    } catch (final ExecutionException e) {
+      // forget the failure so that the next request tries again
+      synchronized (this.annotators) {
+        this.annotators.remove(key, annotator);
+      }
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static void close(final FutureTask<Annotate> annotator) {
+    try {
+      annotator.get().close();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final ExecutionException e) {
+      // not loaded, nothing to free
+    }
+  }
+
+  private Properties getProperties(final String key, final String model) {
+    final Properties modelProperties = new Properties();
+    modelProperties.putAll(this.properties);
+    modelProperties.setProperty("model", model);
+    final int dash = key.indexOf('-');
+    modelProperties.setProperty("language",
+        dash == -1 ? key : key.substring(0, dash));
+    return modelProperties;
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom2.JDOMException;
+
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelSample;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * Streaming Named Entity tagging of NAF documents for the output formats which
+ * need neither the NAF document back nor any layer but the text, namely
+ * OpenNLP and the compact JSON entities. The document is read with StAX
+ * instead of building the JDOM tree and the kaflib objects: every sentence of
+ * the text layer is tagged and written as soon as it has been read, so memory
+ * is bounded by the sentence size. The CoNLL formats are not streamed, as
+ * they print the lemma and morphofeat of the terms layer, which NAF places
+ * after the text layer, so that the whole text would have to be kept until
+ * the terms are read.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class NAFStreamTagger {
+
+  private static final String WF = "wf";
+  private static final String TEXT = "text";
+  private static final String SENT = "sent";
+
+  /**
+   * The NAF reader, positioned after the root element once constructed.
+   */
+  private final XMLStreamReader xmlReader;
+  /**
+   * The language of the document.
+   */
+  private final String lang;
+
+  /**
+   * Start reading a NAF document.
+   *
+   * @param naf
+   *          the NAF document
+   * @throws JDOMException
+   *           if the document is not well formed XML
+   */
+  public NAFStreamTagger(final Reader naf) throws JDOMException {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+        false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    try {
+      this.xmlReader = factory.createXMLStreamReader(naf);
+      this.xmlReader.nextTag();
+      this.lang = this.xmlReader.getAttributeValue(XMLConstants.XML_NS_URI,
+          "lang");
+    } catch (final XMLStreamException e) {
+      throw new JDOMException("Badly formatted NAF document", e);
+    }
+  }
+
+  /**
+   * Check whether an output format can be produced by streaming.
+   *
+   * @param outputFormat
+   *          the output format
+   * @return true for the OpenNLP and JSON formats
+   */
+  public static boolean isStreamingFormat(final String outputFormat) {
+    return outputFormat.equalsIgnoreCase("opennlp")
+        || outputFormat.equalsIgnoreCase("json");
+  }
+
+  /**
+   * Get the language of the document.
+   *
+   * @return the value of the xml:lang attribute of the root element
+   */
+  public final String getLang() {
+    return this.lang;
+  }
+
+  /**
+   * Tag the Named Entities of the document and write them in the output
+   * format.
+   *
+   * @param annotator
+   *          the annotator
+   * @param outputFormat
+   *          opennlp or json
+   * @param writer
+   *          the writer for the annotated sentences
+   * @throws IOException
+   *           if io error
+   * @throws JDOMException
+   *           if the document is not well formed XML
+   */
+  public final void annotate(final Annotate annotator,
+      final String outputFormat, final Writer writer)
+      throws IOException, JDOMException {
+    final TaggingContext context = annotator.getTaggingContext();
+    try {
+      if (outputFormat.equalsIgnoreCase("opennlp")) {
+        annotateToOpenNLP(annotator, context, writer);
+      } else if (outputFormat.equalsIgnoreCase("json")) {
+        annotateToJSON(annotator, context, writer);
+      } else {
+        throw new IllegalArgumentException("NAF cannot be streamed as "
+            + outputFormat);
+      }
+      this.xmlReader.close();
+    } catch (final XMLStreamException e) {
+      throw new JDOMException("Badly formatted NAF document", e);
+    } finally {
+      annotator.releaseTaggingContext(context);
+    }
+  }
+
+  /**
+   * Receives the sentences of the text layer.
+   */
+  private interface SentenceHandler {
+    void sentence(List<String> tokens) throws IOException;
+  }
+
+  /**
+   * Read the text layer calling the handler for every sentence.
+   *
+   * @param handler
+   *          the sentence handler
+   * @throws XMLStreamException
+   *           if xml error
+   * @throws IOException
+   *           if the handler fails
+   */
+  private void readSentences(final SentenceHandler handler)
+      throws XMLStreamException, IOException {
+    final List<String> tokens = new ArrayList<>();
+    String currentSent = null;
+    while (this.xmlReader.hasNext()) {
+      final int event = this.xmlReader.next();
+      if (event == XMLStreamConstants.START_ELEMENT
+          && this.xmlReader.getLocalName().equals(WF)) {
+        final String sent = this.xmlReader.getAttributeValue(null, SENT);
+        final String form = this.xmlReader.getElementText();
+        if (currentSent != null && !currentSent.equals(sent)) {
+          handler.sentence(tokens);
+          tokens.clear();
+        }
+        currentSent = sent;
+        tokens.add(form);
+      } else if (event == XMLStreamConstants.END_ELEMENT
+          && this.xmlReader.getLocalName().equals(TEXT)) {
+        break;
+      }
+    }
+    if (!tokens.isEmpty()) {
+      handler.sentence(tokens);
+    }
+  }
+
+  private void annotateToOpenNLP(final Annotate annotator,
+      final TaggingContext context, final Writer writer)
+      throws XMLStreamException, IOException {
+    final boolean isClearAdaptiveData = annotator.getClearFeatures()
+        .equalsIgnoreCase("yes");
+    readSentences(new SentenceHandler() {
+      private boolean first = true;
+
+      @Override
+      public void sentence(final List<String> tokens) throws IOException {
+        final String[] tokensArray = tokens.toArray(new String[tokens.size()]);
+        final Span[] allSpans = annotator.nercToSpans(context,
+            tokensArray);
+        if (!this.first) {
+          writer.write('\n');
+        }
+        this.first = false;
+        writer.write(new SequenceLabelSample(tokensArray, allSpans,
+            isClearAdaptiveData).toString());
+      }
+    });
+  }
+
+  private void annotateToJSON(final Annotate annotator,
+      final TaggingContext context, final Writer writer)
+      throws XMLStreamException, IOException {
+    writer.write("{\"entities\":[");
+    readSentences(new SentenceHandler() {
+      private int sentNumber = 0;
+      private boolean first = true;
+
+      @Override
+      public void sentence(final List<String> tokens) throws IOException {
+        final String[] tokensArray = tokens.toArray(new String[tokens.size()]);
+        for (final Span span : annotator.nercToSpans(context, tokensArray)) {
+          if (!this.first) {
+            writer.write(',');
+          }
+          this.first = false;
+          Json.writeEntity(writer, this.sentNumber, span, tokensArray);
+        }
+        this.sentNumber++;
+      }
+    });
+    writer.write("]}");
+  }
+
+}
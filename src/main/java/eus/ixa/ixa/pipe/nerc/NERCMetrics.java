@@ -0,0 +1,550 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Counters and latency histograms of the annotation stages, shared by every
+ * annotator in the JVM and published through JMX as {@value #OBJECT_NAME}.
+ * The servers also answer them to stats requests, one {@code name=value} line
+ * per statistic.
+ * <p>
+ * Recording is cheap enough to be always on: the counters are
+ * {@link LongAdder}s, which threads update without contention, and each
+ * latency falls into one of 64 power of two buckets, so that recording a
+ * stage takes a {@link System#nanoTime()} call and a few additions. The
+ * percentiles are therefore approximate, the upper bound of their bucket.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public final class NERCMetrics implements NERCMetricsMXBean {
+
+  /**
+   * The JMX name of the metrics.
+   */
+  public static final String OBJECT_NAME = "eus.ixa.ixa.pipe.nerc:type=NERCMetrics";
+
+  /**
+   * The timed stages of the annotation.
+   */
+  public enum Stage {
+    /**
+     * Reading the NAF document of a request.
+     */
+    PARSE("parse"),
+    /**
+     * Tagging a sentence with the statistical sequence labeler.
+     */
+    STATISTICAL("statistical"),
+    /**
+     * Matching the dictionaries in a sentence.
+     */
+    DICTIONARY("dictionary"),
+    /**
+     * Tagging a sentence with the numeric lexer.
+     */
+    NUMERIC("numeric"),
+    /**
+     * Adding the entities layer to a document.
+     */
+    ENTITIES("entities"),
+    /**
+     * Writing the annotated document in the output format.
+     */
+    SERIALIZE("serialize"),
+    /**
+     * A whole server request.
+     */
+    REQUEST("request");
+
+    private final String name;
+
+    Stage(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return the name of the stage in the statistics
+     */
+    public String getName() {
+      return this.name;
+    }
+  }
+
+  private static final NERCMetrics INSTANCE = new NERCMetrics();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+          new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      System.err.println("-> Metrics not published through JMX: " + e);
+    }
+  }
+
+  private final LongAdder sentences = new LongAdder();
+  private final LongAdder tokens = new LongAdder();
+  private final LongAdder entities = new LongAdder();
+  private final LongAdder sentenceCacheHits = new LongAdder();
+  private final LongAdder sentenceCacheMisses = new LongAdder();
+  private final LongAdder responseCacheHits = new LongAdder();
+  private final LongAdder responseCacheMisses = new LongAdder();
+  private final LongAdder incrementalHits = new LongAdder();
+  private final LongAdder incrementalMisses = new LongAdder();
+  private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private final EnumMap<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+  private NERCMetrics() {
+    for (Stage stage : Stage.values()) {
+      timers.put(stage, new Timer());
+    }
+  }
+
+  /**
+   * Get the metrics of the JVM, registering them in JMX on first use.
+   *
+   * @return the metrics
+   */
+  public static NERCMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Record the latency of a stage.
+   *
+   * @param stage
+   *          the stage
+   * @param startNanos
+   *          the {@link System#nanoTime()} when the stage started
+   */
+  public void record(final Stage stage, final long startNanos) {
+    timers.get(stage).add(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Record the latency of a stage measured by the caller, such as the sum of
+   * the times spent in the stage for every sentence of a document.
+   *
+   * @param stage
+   *          the stage
+   * @param nanos
+   *          the nanoseconds spent in the stage
+   */
+  public void add(final Stage stage, final long nanos) {
+    timers.get(stage).add(nanos);
+  }
+
+  /**
+   * Count a tagged sentence.
+   *
+   * @param sentenceTokens
+   *          the tokens of the sentence
+   * @param sentenceEntities
+   *          the Named Entities found in it
+   */
+  public void sentence(final int sentenceTokens, final int sentenceEntities) {
+    sentences.increment();
+    tokens.add(sentenceTokens);
+    entities.add(sentenceEntities);
+  }
+
+  /**
+   * Count a sentence found in the sentence cache.
+   */
+  public void sentenceCacheHit() {
+    sentenceCacheHits.increment();
+  }
+
+  /**
+   * Count a sentence not found in the sentence cache.
+   */
+  public void sentenceCacheMiss() {
+    sentenceCacheMisses.increment();
+  }
+
+  /**
+   * Count the sentences of a document annotated in incremental mode.
+   *
+   * @param reused
+   *          the sentences whose spans were taken from the previous annotation
+   * @param tagged
+   *          the sentences tagged again
+   */
+  public void incremental(final int reused, final int tagged) {
+    incrementalHits.add(reused);
+    incrementalMisses.add(tagged);
+  }
+
+  /**
+   * Count a request answered from the server response cache.
+   */
+  public void responseCacheHit() {
+    responseCacheHits.increment();
+  }
+
+  /**
+   * Count a request not found in the server response cache.
+   */
+  public void responseCacheMiss() {
+    responseCacheMisses.increment();
+  }
+
+  /**
+   * Count a failed request by the class of its error.
+   *
+   * @param error
+   *          the error
+   */
+  public void error(final Throwable error) {
+    error(error.getClass().getSimpleName());
+  }
+
+  /**
+   * Count a failed request.
+   *
+   * @param type
+   *          the error type
+   */
+  public void error(final String type) {
+    LongAdder count = errors.get(type);
+    if (count == null) {
+      count = errors.computeIfAbsent(type, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  @Override
+  public long getSentences() {
+    return sentences.sum();
+  }
+
+  @Override
+  public long getTokens() {
+    return tokens.sum();
+  }
+
+  @Override
+  public long getEntities() {
+    return entities.sum();
+  }
+
+  @Override
+  public long getSentenceCacheHits() {
+    return sentenceCacheHits.sum();
+  }
+
+  @Override
+  public long getSentenceCacheMisses() {
+    return sentenceCacheMisses.sum();
+  }
+
+  @Override
+  public double getSentenceCacheHitRate() {
+    return getHitRate(getSentenceCacheHits(), getSentenceCacheMisses());
+  }
+
+  @Override
+  public long getResponseCacheHits() {
+    return responseCacheHits.sum();
+  }
+
+  @Override
+  public long getResponseCacheMisses() {
+    return responseCacheMisses.sum();
+  }
+
+  @Override
+  public double getResponseCacheHitRate() {
+    return getHitRate(getResponseCacheHits(), getResponseCacheMisses());
+  }
+
+  @Override
+  public long getIncrementalHits() {
+    return incrementalHits.sum();
+  }
+
+  @Override
+  public long getIncrementalMisses() {
+    return incrementalMisses.sum();
+  }
+
+  @Override
+  public double getIncrementalHitRate() {
+    return getHitRate(getIncrementalHits(), getIncrementalMisses());
+  }
+
+  private static double getHitRate(final long hits, final long misses) {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  @Override
+  public Map<String, Long> getErrors() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+      counts.put(error.getKey(), error.getValue().sum());
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, StageStatistics> getStages() {
+    Map<String, StageStatistics> stages = new LinkedHashMap<>();
+    for (Map.Entry<Stage, Timer> timer : timers.entrySet()) {
+      stages.put(timer.getKey().getName(), timer.getValue().snapshot());
+    }
+    return stages;
+  }
+
+  /**
+   * Get the statistics of a stage.
+   *
+   * @param stage
+   *          the stage
+   * @return the statistics
+   */
+  public StageStatistics getStage(final Stage stage) {
+    return timers.get(stage).snapshot();
+  }
+
+  @Override
+  public void reset() {
+    sentences.reset();
+    tokens.reset();
+    entities.reset();
+    sentenceCacheHits.reset();
+    sentenceCacheMisses.reset();
+    responseCacheHits.reset();
+    responseCacheMisses.reset();
+    incrementalHits.reset();
+    incrementalMisses.reset();
+    errors.clear();
+    for (Timer timer : timers.values()) {
+      timer.reset();
+    }
+  }
+
+  /**
+   * Format the metrics as one {@code name=value} line per statistic, leaving
+   * out the stages which have not run.
+   *
+   * @return the statistics
+   */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("sentences=").append(getSentences()).append('\n');
+    sb.append("tokens=").append(getTokens()).append('\n');
+    sb.append("entities=").append(getEntities()).append('\n');
+    appendCache(sb, "sentenceCache", getSentenceCacheHits(),
+        getSentenceCacheMisses());
+    appendCache(sb, "responseCache", getResponseCacheHits(),
+        getResponseCacheMisses());
+    appendCache(sb, "incremental", getIncrementalHits(),
+        getIncrementalMisses());
+    for (Map.Entry<String, StageStatistics> stage : getStages().entrySet()) {
+      StageStatistics statistics = stage.getValue();
+      if (statistics.getCount() == 0) {
+        continue;
+      }
+      String name = stage.getKey();
+      sb.append(name).append(".count=").append(statistics.getCount())
+          .append('\n');
+      sb.append(name).append(".meanMicros=")
+          .append(statistics.getMeanMicros()).append('\n');
+      sb.append(name).append(".p50Micros=").append(statistics.getP50Micros())
+          .append('\n');
+      sb.append(name).append(".p95Micros=").append(statistics.getP95Micros())
+          .append('\n');
+      sb.append(name).append(".p99Micros=").append(statistics.getP99Micros())
+          .append('\n');
+      sb.append(name).append(".maxMicros=").append(statistics.getMaxMicros())
+          .append('\n');
+    }
+    for (Map.Entry<String, Long> error : getErrors().entrySet()) {
+      sb.append("errors.").append(error.getKey()).append('=')
+          .append(error.getValue()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Report the hits, misses and hit rate of a cache which has been used.
+   */
+  private static void appendCache(final StringBuilder sb, final String name,
+      final long hits, final long misses) {
+    if (hits + misses == 0) {
+      return;
+    }
+    sb.append(name).append(".hits=").append(hits).append('\n');
+    sb.append(name).append(".misses=").append(misses).append('\n');
+    sb.append(name).append(".hitRate=")
+        .append(String.format(Locale.ROOT, "%.3f", getHitRate(hits, misses)))
+        .append('\n');
+  }
+
+  /**
+   * The latencies of a stage in a log2 histogram.
+   */
+  private static final class Timer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    /**
+     * Bucket i counts the latencies in [2^i, 2^(i+1)) nanoseconds.
+     */
+    private final LongAdder[] buckets = new LongAdder[64];
+
+    Timer() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void add(final long nanos) {
+      long latency = Math.max(1, nanos);
+      count.increment();
+      totalNanos.add(latency);
+      maxNanos.accumulate(latency);
+      buckets[63 - Long.numberOfLeadingZeros(latency)].increment();
+    }
+
+    void reset() {
+      count.reset();
+      totalNanos.reset();
+      maxNanos.reset();
+      for (LongAdder bucket : buckets) {
+        bucket.reset();
+      }
+    }
+
+    StageStatistics snapshot() {
+      long[] counts = new long[buckets.length];
+      long total = 0;
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = buckets[i].sum();
+        total += counts[i];
+      }
+      long max = maxNanos.get();
+      long calls = count.sum();
+      return new StageStatistics(calls,
+          calls == 0 ? 0 : toMicros(totalNanos.sum() / calls),
+          toMicros(percentile(counts, total, 0.5, max)),
+          toMicros(percentile(counts, total, 0.95, max)),
+          toMicros(percentile(counts, total, 0.99, max)), toMicros(max));
+    }
+
+    private static long toMicros(final long nanos) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Get the upper bound of the bucket holding a percentile, or the maximum
+     * if lower.
+     */
+    private static long percentile(final long[] counts, final long total,
+        final double quantile, final long max) {
+      long rank = (long) Math.ceil(total * quantile);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && seen > 0) {
+          return i == 62 ? max : Math.min(max, (1L << (i + 1)) - 1);
+        }
+      }
+      return max;
+    }
+  }
+
+  /**
+   * The latency statistics of a stage, in microseconds.
+   */
+  public static final class StageStatistics {
+
+    private final long count;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p95Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    StageStatistics(final long count, final long meanMicros,
+        final long p50Micros, final long p95Micros, final long p99Micros,
+        final long maxMicros) {
+      this.count = count;
+      this.meanMicros = meanMicros;
+      this.p50Micros = p50Micros;
+      this.p95Micros = p95Micros;
+      this.p99Micros = p99Micros;
+      this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Rebuild the statistics read through JMX, as needed by the MXBean
+     * proxies.
+     *
+     * @param data
+     *          the JMX view of the statistics
+     * @return the statistics
+     */
+    public static StageStatistics from(final CompositeData data) {
+      return new StageStatistics((Long) data.get("count"),
+          (Long) data.get("meanMicros"), (Long) data.get("p50Micros"),
+          (Long) data.get("p95Micros"), (Long) data.get("p99Micros"),
+          (Long) data.get("maxMicros"));
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMeanMicros() {
+      return meanMicros;
+    }
+
+    public long getP50Micros() {
+      return p50Micros;
+    }
+
+    public long getP95Micros() {
+      return p95Micros;
+    }
+
+    public long getP99Micros() {
+      return p99Micros;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+  }
+
+}
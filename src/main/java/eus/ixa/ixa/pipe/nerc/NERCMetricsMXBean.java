@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link NERCMetrics}, registered as
+ * {@value NERCMetrics#OBJECT_NAME}.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public interface NERCMetricsMXBean {
+
+  /**
+   * @return the sentences tagged
+   */
+  long getSentences();
+
+  /**
+   * @return the tokens of the sentences tagged
+   */
+  long getTokens();
+
+  /**
+   * @return the Named Entities found
+   */
+  long getEntities();
+
+  /**
+   * @return the sentences found in the sentence cache
+   */
+  long getSentenceCacheHits();
+
+  /**
+   * @return the sentences looked up in the sentence cache and not found
+   */
+  long getSentenceCacheMisses();
+
+  /**
+   * @return the ratio of sentence cache lookups found, 0 if none
+   */
+  double getSentenceCacheHitRate();
+
+  /**
+   * @return the server requests answered from the response cache
+   */
+  long getResponseCacheHits();
+
+  /**
+   * @return the server requests looked up in the response cache and not
+   *         found
+   */
+  long getResponseCacheMisses();
+
+  /**
+   * @return the ratio of response cache lookups found, 0 if none
+   */
+  double getResponseCacheHitRate();
+
+  /**
+   * @return the sentences whose spans were taken from the previous annotation
+   *         of their document in incremental mode
+   */
+  long getIncrementalHits();
+
+  /**
+   * @return the sentences tagged again in incremental mode
+   */
+  long getIncrementalMisses();
+
+  /**
+   * @return the ratio of sentences reused in incremental mode, 0 if none
+   */
+  double getIncrementalHitRate();
+
+  /**
+   * @return the failed requests by error type
+   */
+  Map<String, Long> getErrors();
+
+  /**
+   * @return the latency statistics of every stage, keyed by stage name
+   */
+  Map<String, NERCMetrics.StageStatistics> getStages();
+
+  /**
+   * Set every counter and histogram back to zero.
+   */
+  void reset();
+
+}
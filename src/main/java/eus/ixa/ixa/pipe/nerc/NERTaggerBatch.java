@@ -0,0 +1,806 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jdom2.JDOMException;
+
+/**
+ * Batch annotation of many NAF documents in a single JVM. The model and
+ * dictionaries are loaded once and the documents are annotated in parallel by
+ * a pool of workers sharing a single {@link Annotate}.
+ * <p>
+ * In the pipelined mode, which does not apply to the OpenNLP and JSON outputs
+ * as they are streamed, the parsing, the tagging and the serialization of the
+ * documents are separate stages, each with its own threads, joined by bounded
+ * queues, so that the throughput is that of the slowest stage rather than
+ * that of the three steps in sequence. The mean occupancy of the queues shows
+ * which stage limits it: the queue in front of it stays full while the
+ * following ones stay empty. The tagging threads take the documents waiting
+ * together, so that with --dictTag 'tag' the sentences of many short
+ * documents are tagged in parallel by the sentence threads. If tagging them
+ * together fails, they are parsed and tagged again one by one, so that only
+ * the documents failing on their own are reported as errors.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class NERTaggerBatch {
+
+  /**
+   * Seconds between progress reports.
+   */
+  private static final int PROGRESS_INTERVAL = 10;
+  /**
+   * Milliseconds between samples of the queue occupancy in the pipelined
+   * mode.
+   */
+  private static final int OCCUPANCY_INTERVAL = 100;
+  /**
+   * The mark ending the documents of a stage queue.
+   */
+  private static final Work END = new Work(null, null);
+  /**
+   * The suffix of the names of the annotated documents, between the input
+   * name and the output format.
+   */
+  private static final String OUTPUT_SUFFIX = ".ner";
+
+  /**
+   * Get dynamically the version of ixa-pipe-nerc by looking at the MANIFEST
+   * file.
+   */
+  private final String version = CLI.class.getPackage()
+      .getImplementationVersion();
+  /**
+   * Get the git commit of the ixa-pipe-nerc compiled by looking at the MANIFEST
+   * file.
+   */
+  private final String commit = CLI.class.getPackage()
+      .getSpecificationVersion();
+  /**
+   * The model.
+   */
+  private final String model;
+  /**
+   * The annotation output format, one of NAF (default), CoNLL 2002, CoNLL 2003
+   * or OpenNLP.
+   */
+  private final String outputFormat;
+  /**
+   * The directory for the annotated documents; if null they are written next
+   * to the input documents.
+   */
+  private final Path outputDir;
+  /**
+   * The number of workers.
+   */
+  private final int threads;
+  /**
+   * The annotator shared by the workers.
+   */
+  private final Annotate annotator;
+  /**
+   * Whether the documents go through the parse, tag and serialize stages.
+   */
+  private final boolean pipeline;
+  /**
+   * The threads parsing the documents in the pipelined mode.
+   */
+  private final int parseThreads;
+  /**
+   * The threads serializing the documents in the pipelined mode.
+   */
+  private final int serializeThreads;
+  /**
+   * The capacity of the queue in front of every stage.
+   */
+  private final int pipelineQueue;
+
+  /**
+   * Construct a batch annotator loading the model and dictionaries.
+   *
+   * @param properties
+   *          the annotation properties plus the outputFormat, outputDir and
+   *          threads and, for the pipelined mode, pipeline, parseThreads,
+   *          serializeThreads and pipelineQueue; threads is then the number
+   *          of tagging threads
+   * @throws IOException
+   *           if the model or dictionaries cannot be loaded
+   */
+  public NERTaggerBatch(final Properties properties) throws IOException {
+    this.model = properties.getProperty("model");
+    this.outputFormat = properties.getProperty("outputFormat");
+    final String outputDirectory = properties.getProperty("outputDir");
+    this.outputDir = outputDirectory == null ? null : Paths.get(outputDirectory);
+    this.threads = Integer.parseInt(properties.getProperty("threads", "1"));
+    // the other formats are streamed without building the whole document
+    this.pipeline = Boolean
+        .parseBoolean(properties.getProperty("pipeline", "false"))
+        && !NAFStreamTagger.isStreamingFormat(this.outputFormat);
+    this.parseThreads = Integer
+        .parseInt(properties.getProperty("parseThreads", "1"));
+    this.serializeThreads = Integer
+        .parseInt(properties.getProperty("serializeThreads", "1"));
+    this.pipelineQueue = Integer.parseInt(properties.getProperty(
+        "pipelineQueue", String.valueOf(2 * this.threads)));
+    this.annotator = new Annotate(properties);
+  }
+
+  /**
+   * Annotate every document, reporting the progress to stderr.
+   *
+   * @param documents
+   *          the documents to annotate, mapped to their paths relative to the
+   *          input they were found in, as given by
+   *          {@link #getRelativeDocuments(List)}
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the output directory cannot be created
+   * @throws InterruptedException
+   *           if interrupted while waiting for the workers
+   */
+  public final long annotate(final Map<Path, Path> documents)
+      throws IOException, InterruptedException {
+    if (this.outputDir != null) {
+      Files.createDirectories(this.outputDir);
+    }
+    if (this.pipeline) {
+      return annotatePipelined(documents);
+    }
+    final AtomicLong done = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final long start = System.nanoTime();
+    final ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+    final ScheduledExecutorService reporter = Executors
+        .newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        reportProgress(done.get(), errors.get(), documents.size(), start);
+      }
+    }, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+    try {
+      for (final Map.Entry<Path, Path> entry : documents.entrySet()) {
+        final Path document = entry.getKey();
+        final Path output = getOutputPath(document, entry.getValue());
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              annotateDocument(document, output);
+            } catch (IOException | JDOMException | RuntimeException e) {
+              errors.incrementAndGet();
+              System.err.println("-> ERROR: " + document + ": " + e);
+            } finally {
+              done.incrementAndGet();
+            }
+          }
+        });
+      }
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    } finally {
+      workers.shutdownNow();
+      reporter.shutdownNow();
+    }
+    reportProgress(done.get(), errors.get(), documents.size(), start);
+    return errors.get();
+  }
+
+  /**
+   * Annotate one document.
+   *
+   * @param document
+   *          the document path
+   * @param output
+   *          the path of the annotated document
+   * @throws IOException
+   *           if io error
+   * @throws JDOMException
+   *           if the document is not valid NAF
+   */
+  private void annotateDocument(final Path document, final Path output)
+      throws IOException, JDOMException {
+    if (NAFStreamTagger.isStreamingFormat(this.outputFormat)) {
+      // no NAF document is output, so stream it sentence by sentence
+      try (BufferedReader breader = Files.newBufferedReader(document,
+          StandardCharsets.UTF_8);
+          BufferedWriter bwriter = Files.newBufferedWriter(output,
+              StandardCharsets.UTF_8)) {
+        new NAFStreamTagger(breader).annotate(this.annotator,
+            this.outputFormat, bwriter);
+      }
+      return;
+    }
+    final KAFDocument kaf = parseDocument(document);
+    tagDocument(kaf);
+    writeAnnotations(output, kaf);
+  }
+
+  private static KAFDocument parseDocument(final Path document)
+      throws IOException, JDOMException {
+    try (BufferedReader breader = Files.newBufferedReader(document,
+        StandardCharsets.UTF_8)) {
+      return KAFDocument.createFromStream(breader);
+    }
+  }
+
+  /**
+   * Named Entity annotation of a document.
+   *
+   * @param kaf
+   *          the document
+   * @throws IOException
+   *           if io error
+   */
+  private void tagDocument(final KAFDocument kaf) throws IOException {
+    final KAFDocument.LinguisticProcessor newLp = addLinguisticProcessor(kaf);
+    newLp.setBeginTimestamp();
+    this.annotator.annotateNEsToKAF(kaf);
+    newLp.setEndTimestamp();
+  }
+
+  /**
+   * Named Entity annotation of many documents at once, so that with --dictTag
+   * 'tag' the sentences of all of them are spread over the sentence threads.
+   *
+   * @param works
+   *          the parsed documents
+   * @throws IOException
+   *           if io error
+   */
+  private void tagDocuments(final List<Work> works) throws IOException {
+    final List<KAFDocument> kafs = new ArrayList<>(works.size());
+    final List<KAFDocument.LinguisticProcessor> newLps = new ArrayList<>(
+        works.size());
+    for (final Work work : works) {
+      kafs.add(work.kaf);
+      newLps.add(addLinguisticProcessor(work.kaf));
+    }
+    for (final KAFDocument.LinguisticProcessor newLp : newLps) {
+      newLp.setBeginTimestamp();
+    }
+    this.annotator.annotateNEsToKAF(kafs);
+    for (final KAFDocument.LinguisticProcessor newLp : newLps) {
+      newLp.setEndTimestamp();
+    }
+  }
+
+  private KAFDocument.LinguisticProcessor addLinguisticProcessor(
+      final KAFDocument kaf) {
+    return kaf.addLinguisticProcessor("entities", "ixa-pipe-nerc-"
+        + com.google.common.io.Files.getNameWithoutExtension(this.model),
+        this.version + "-" + this.commit);
+  }
+
+  /**
+   * Write an annotated document in the chosen output format. The CoNLL
+   * formats are written sentence by sentence.
+   *
+   * @param output
+   *          the path of the annotated document
+   * @param kaf
+   *          the annotated document
+   * @throws IOException
+   *           if io error
+   */
+  private void writeAnnotations(final Path output, final KAFDocument kaf)
+      throws IOException {
+    try (BufferedWriter bwriter = Files.newBufferedWriter(output,
+        StandardCharsets.UTF_8)) {
+      if (this.outputFormat.equalsIgnoreCase("conll03")) {
+        this.annotator.annotateNEsToCoNLL2003(kaf, bwriter);
+      } else if (this.outputFormat.equalsIgnoreCase("conll02")) {
+        this.annotator.annotateNEsToCoNLL2002(kaf, bwriter);
+      } else if (this.outputFormat.equalsIgnoreCase("opennlp")) {
+        bwriter.write(this.annotator.annotateNEsToOpenNLP(kaf));
+      } else {
+        bwriter.write(kaf.toString());
+      }
+    }
+  }
+
+  /**
+   * Annotate every document through the parse, tag and serialize stages.
+   * Every stage takes the documents from its bounded queue and hands them to
+   * the next one, blocking while the next queue is full; the documents
+   * failing at any stage are reported and dropped.
+   *
+   * @param documents
+   *          the documents to annotate
+   * @return the number of documents which could not be annotated
+   * @throws InterruptedException
+   *           if interrupted while waiting for the stages
+   */
+  private long annotatePipelined(final Map<Path, Path> documents)
+      throws IOException, InterruptedException {
+    final AtomicLong done = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final long start = System.nanoTime();
+    final Stage serialize = new Stage("serialize", this.serializeThreads, 1,
+        null, done, errors) {
+      @Override
+      void process(final Work work) throws IOException {
+        writeAnnotations(work.output, work.kaf);
+        done.incrementAndGet();
+      }
+    };
+    // every tag thread takes its share of the documents waiting
+    final Stage tag = new Stage("tag", this.threads,
+        Math.max(1, this.pipelineQueue / this.threads), serialize, done,
+        errors) {
+      @Override
+      void process(final Work work) throws IOException {
+        tagDocument(work.kaf);
+      }
+
+      @Override
+      void process(final List<Work> works) throws IOException {
+        tagDocuments(works);
+      }
+
+      /**
+       * Parse the document again, as the failed batch may have left it
+       * partly annotated.
+       */
+      @Override
+      void retry(final Work work) throws IOException, JDOMException {
+        work.kaf = parseDocument(work.document);
+        tagDocument(work.kaf);
+      }
+    };
+    final Stage parse = new Stage("parse", this.parseThreads, 1, tag, done,
+        errors) {
+      @Override
+      void process(final Work work) throws IOException, JDOMException {
+        work.kaf = parseDocument(work.document);
+      }
+    };
+    final Stage[] stages = { parse, tag, serialize };
+    final ScheduledExecutorService reporter = Executors
+        .newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        for (final Stage stage : stages) {
+          stage.sample();
+        }
+      }
+    }, OCCUPANCY_INTERVAL, OCCUPANCY_INTERVAL, TimeUnit.MILLISECONDS);
+    reporter.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        reportProgress(done.get(), errors.get(), documents.size(), start);
+        reportOccupancy(stages, false);
+      }
+    }, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+    try {
+      for (final Stage stage : stages) {
+        stage.start();
+      }
+      for (final Map.Entry<Path, Path> entry : documents.entrySet()) {
+        parse.queue.put(new Work(entry.getKey(),
+            getOutputPath(entry.getKey(), entry.getValue())));
+      }
+      parse.finish();
+      for (final Stage stage : stages) {
+        stage.join();
+      }
+    } finally {
+      for (final Stage stage : stages) {
+        stage.interrupt();
+      }
+      reporter.shutdownNow();
+    }
+    reportProgress(done.get(), errors.get(), documents.size(), start);
+    reportOccupancy(stages, true);
+    return errors.get();
+  }
+
+  /**
+   * Report the occupancy of the stage queues, the current one or the mean of
+   * the samples taken so far.
+   */
+  private void reportOccupancy(final Stage[] stages, final boolean mean) {
+    final StringBuilder sb = new StringBuilder(
+        mean ? "-> Mean queue occupancy:" : "-> Queue occupancy:");
+    for (final Stage stage : stages) {
+      sb.append(' ').append(stage.name).append(' ');
+      if (mean) {
+        sb.append(String.format("%.1f", stage.getMeanOccupancy()));
+      } else {
+        sb.append(stage.queue.size());
+      }
+      sb.append('/').append(this.pipelineQueue);
+    }
+    System.err.println(sb);
+  }
+
+  /**
+   * A document going through the stages.
+   */
+  private static final class Work {
+
+    private final Path document;
+    private final Path output;
+    private KAFDocument kaf;
+
+    Work(final Path document, final Path output) {
+      this.document = document;
+      this.output = output;
+    }
+  }
+
+  /**
+   * A stage of the pipelined mode: a bounded queue and the threads taking the
+   * documents from it, one at a time or, up to a maximum, all those waiting.
+   */
+  private abstract class Stage {
+
+    private final String name;
+    private final BlockingQueue<Work> queue;
+    private final Stage next;
+    private final AtomicLong done;
+    private final AtomicLong errors;
+    private final Thread[] workers;
+    private final int maxBatch;
+    private final AtomicInteger running;
+    private final LongAdder occupancy = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+
+    Stage(final String name, final int threads, final int maxBatch,
+        final Stage next, final AtomicLong done, final AtomicLong errors) {
+      this.name = name;
+      this.maxBatch = maxBatch;
+      this.queue = new ArrayBlockingQueue<>(
+          NERTaggerBatch.this.pipelineQueue);
+      this.next = next;
+      this.done = done;
+      this.errors = errors;
+      this.workers = new Thread[threads];
+      this.running = new AtomicInteger(threads);
+      for (int i = 0; i < threads; i++) {
+        this.workers[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            work();
+          }
+        }, "nerc-" + name + "-" + i);
+        this.workers[i].setDaemon(true);
+      }
+    }
+
+    abstract void process(Work work) throws IOException, JDOMException;
+
+    /**
+     * Process the documents taken together, by default one after the other.
+     */
+    void process(final List<Work> works) throws IOException, JDOMException {
+      for (final Work work : works) {
+        process(work);
+      }
+    }
+
+    /**
+     * Process on its own a document of a batch that failed, by default as any
+     * other document.
+     */
+    void retry(final Work work) throws IOException, JDOMException {
+      process(work);
+    }
+
+    private void work() {
+      final List<Work> batch = new ArrayList<>(this.maxBatch);
+      try {
+        Work work;
+        while ((work = this.queue.take()) != END) {
+          batch.clear();
+          batch.add(work);
+          this.queue.drainTo(batch, this.maxBatch - 1);
+          final int end = batch.indexOf(END);
+          if (end >= 0) {
+            // left for the threads of the stage to stop at
+            for (int i = end; i < batch.size(); i++) {
+              this.queue.put(END);
+            }
+            batch.subList(end, batch.size()).clear();
+          }
+          if (batch.size() == 1) {
+            processAndForward(work);
+            continue;
+          }
+          try {
+            process(batch);
+          } catch (IOException | JDOMException | RuntimeException e) {
+            // one by one, so that only the documents failing on their own
+            // are reported
+            for (final Work retried : batch) {
+              retryAndForward(retried);
+            }
+            continue;
+          }
+          for (final Work processed : batch) {
+            forward(processed);
+          }
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        if (this.running.decrementAndGet() == 0 && this.next != null) {
+          this.next.finish();
+        }
+      }
+    }
+
+    private void processAndForward(final Work work)
+        throws InterruptedException {
+      try {
+        process(work);
+      } catch (IOException | JDOMException | RuntimeException e) {
+        fail(work, e);
+        return;
+      }
+      forward(work);
+    }
+
+    private void retryAndForward(final Work work)
+        throws InterruptedException {
+      try {
+        retry(work);
+      } catch (IOException | JDOMException | RuntimeException e) {
+        fail(work, e);
+        return;
+      }
+      forward(work);
+    }
+
+    private void forward(final Work work) throws InterruptedException {
+      if (this.next != null) {
+        this.next.queue.put(work);
+      }
+    }
+
+    private void fail(final Work work, final Exception e) {
+      this.errors.incrementAndGet();
+      this.done.incrementAndGet();
+      System.err.println("-> ERROR: " + work.document + ": " + e);
+    }
+
+    /**
+     * Tell the threads of the stage that no more documents will come.
+     */
+    void finish() {
+      try {
+        for (int i = 0; i < this.workers.length; i++) {
+          this.queue.put(END);
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void start() {
+      for (final Thread worker : this.workers) {
+        worker.start();
+      }
+    }
+
+    void join() throws InterruptedException {
+      for (final Thread worker : this.workers) {
+        worker.join();
+      }
+    }
+
+    void interrupt() {
+      for (final Thread worker : this.workers) {
+        worker.interrupt();
+      }
+    }
+
+    void sample() {
+      this.occupancy.add(this.queue.size());
+      this.samples.increment();
+    }
+
+    double getMeanOccupancy() {
+      final long count = this.samples.sum();
+      return count == 0 ? 0 : (double) this.occupancy.sum() / count;
+    }
+  }
+
+  /**
+   * Get the path of the annotated document: the input name without its
+   * extension followed by ".ner." and the output format, next to the input
+   * or, keeping the path of the input relative to the input it was found in,
+   * under the output directory, whose subdirectories are created as needed.
+   *
+   * @param document
+   *          the input document
+   * @param relativePath
+   *          the path of the document relative to its input
+   * @return the output path
+   * @throws IOException
+   *           if the subdirectory of the output cannot be created
+   */
+  private Path getOutputPath(final Path document, final Path relativePath)
+      throws IOException {
+    final String outputName = com.google.common.io.Files
+        .getNameWithoutExtension(document.getFileName().toString())
+        + OUTPUT_SUFFIX + "." + this.outputFormat.toLowerCase();
+    if (this.outputDir == null) {
+      return document.resolveSibling(outputName);
+    }
+    final Path output = this.outputDir.resolve(relativePath)
+        .resolveSibling(outputName);
+    Files.createDirectories(output.getParent());
+    return output;
+  }
+
+  private static void reportProgress(final long done, final long errors,
+      final long total, final long start) {
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    System.err.println(String.format(
+        "-> Annotated %d/%d files (%d errors) in %.1f s: %.1f files/sec",
+        done, total, errors, seconds, seconds > 0 ? done / seconds : 0.0));
+  }
+
+  /**
+   * Resolve the inputs of the batch into document paths, see
+   * {@link #getRelativeDocuments(List)}.
+   *
+   * @param inputs
+   *          the inputs
+   * @return the document paths
+   * @throws IOException
+   *           if a directory or file list cannot be read
+   */
+  public static List<Path> getDocuments(final List<String> inputs)
+      throws IOException {
+    return new ArrayList<>(getRelativeDocuments(inputs).keySet());
+  }
+
+  /**
+   * Resolve the inputs of the batch into document paths. Every input can be a
+   * directory, whose regular files are annotated recursively, a glob such as
+   * {@code corpus/*.naf}, a file list if prefixed with '@', with one path per
+   * line, or a single document. The documents annotated by a previous run,
+   * named NAME.ner.FORMAT, are left out of directories and globs.
+   *
+   * @param inputs
+   *          the inputs
+   * @return the document paths, sorted within every input, mapped to their
+   *         paths relative to the directory or to the directory part of the
+   *         glob they were found in; for single documents and file lists,
+   *         to the path as given if relative or to the file name otherwise
+   * @throws IOException
+   *           if a directory or file list cannot be read
+   */
+  public static Map<Path, Path> getRelativeDocuments(
+      final List<String> inputs) throws IOException {
+    final Map<Path, Path> documents = new LinkedHashMap<>();
+    for (final String input : inputs) {
+      if (input.startsWith("@")) {
+        for (final String line : Files.readAllLines(
+            Paths.get(input.substring(1)), StandardCharsets.UTF_8)) {
+          if (!line.trim().isEmpty()) {
+            addDocument(Paths.get(line.trim()), documents);
+          }
+        }
+      } else if (isGlob(input)) {
+        addGlobDocuments(input, documents);
+      } else if (Files.isDirectory(Paths.get(input))) {
+        addDirectoryDocuments(Paths.get(input), null, documents);
+      } else {
+        addDocument(Paths.get(input), documents);
+      }
+    }
+    return documents;
+  }
+
+  private static void addDocument(final Path document,
+      final Map<Path, Path> documents) {
+    final Path relativePath = document.normalize();
+    if (relativePath.isAbsolute() || relativePath.startsWith("..")) {
+      documents.put(document, document.getFileName());
+    } else {
+      documents.put(document, relativePath);
+    }
+  }
+
+  private static boolean isGlob(final String input) {
+    for (final char c : input.toCharArray()) {
+      if (c == '*' || c == '?' || c == '[' || c == '{') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addGlobDocuments(final String glob,
+      final Map<Path, Path> documents) throws IOException {
+    // walk from the deepest directory without glob characters
+    final Path globPath = Paths.get(glob);
+    Path baseDir = globPath.isAbsolute() ? globPath.getRoot() : Paths.get("");
+    for (final Path element : globPath) {
+      if (isGlob(element.toString())) {
+        break;
+      }
+      baseDir = baseDir.resolve(element);
+    }
+    final PathMatcher matcher = FileSystems.getDefault()
+        .getPathMatcher("glob:" + glob);
+    if (Files.isDirectory(baseDir)) {
+      addDirectoryDocuments(baseDir.toString().isEmpty() ? Paths.get(".")
+          : baseDir, matcher, documents);
+    }
+  }
+
+  private static void addDirectoryDocuments(final Path dir,
+      final PathMatcher matcher, final Map<Path, Path> documents)
+      throws IOException {
+    final List<Path> paths;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      paths = walk.filter(Files::isRegularFile)
+          .filter(path -> matcher == null
+              || matcher.matches(path.normalize()))
+          .filter(path -> !isOutput(path)).sorted()
+          .collect(Collectors.toList());
+    }
+    for (final Path path : paths) {
+      documents.put(path, dir.relativize(path));
+    }
+  }
+
+  /**
+   * Check whether a file is a document annotated by the batch, named
+   * NAME.ner.FORMAT.
+   */
+  private static boolean isOutput(final Path path) {
+    return com.google.common.io.Files
+        .getNameWithoutExtension(path.getFileName().toString())
+        .endsWith(OUTPUT_SUFFIX);
+  }
+
+}
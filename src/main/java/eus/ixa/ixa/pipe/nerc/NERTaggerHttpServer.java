@@ -0,0 +1,417 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdom2.JDOMException;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * HTTP front end of the {@link NERTaggerServer}, built on the JDK HTTP server,
+ * which keeps connections alive between requests. It shares the model
+ * registry with the TCP server and serves three endpoints:
+ * <ul>
+ * <li>{@code POST /annotate} annotates a NAF document, or pre-tokenized
+ * sentences if the content type is JSON. The optional query parameters are
+ * {@code format}, one of naf (default for NAF), conll02, conll03, opennlp or
+ * json (default and only format for JSON input), {@code inputFormat}, naf or
+ * the tokens and conll tokenized text of the {@link TokenStreamTagger}, and
+ * {@code model}, the model key; otherwise the model is chosen by the language
+ * of the document.</li>
+ * <li>{@code GET /health} reports the status and the served models.</li>
+ * <li>{@code GET /stats} reports the queue of annotation requests, the
+ * requests rejected as overloaded and the {@link NERCMetrics}, one
+ * {@code name=value} line per statistic.</li>
+ * </ul>
+ * The JSON input is an object with a {@code sentences} array of token arrays
+ * and optional {@code lang} and {@code model} members. The JSON output is an
+ * object with an {@code entities} array; every entity has its sentence number,
+ * its start and end token offsets within the sentence, its type and its
+ * text.
+ * <p>
+ * The annotation requests are handled by a bounded pool of threads; when its
+ * queue is full they are answered at once with 503 Service Unavailable. The
+ * health and statistics requests are answered by the thread dispatching the
+ * requests, so they are served even if the pool is saturated.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class NERTaggerHttpServer {
+
+  private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+  /**
+   * The TCP server, which does the NAF annotation.
+   */
+  private final NERTaggerServer tcpServer;
+  /**
+   * The models.
+   */
+  private final ModelRegistry registry;
+  /**
+   * The HTTP server.
+   */
+  private final HttpServer httpServer;
+  /**
+   * The workers handling the annotation requests.
+   */
+  private final ThreadPoolExecutor workers;
+  /**
+   * The annotation requests rejected because the queue was full.
+   */
+  private final AtomicLong rejected = new AtomicLong();
+  /**
+   * The default input format of the non JSON requests.
+   */
+  private final String inputFormat;
+
+  /**
+   * Construct the HTTP server.
+   *
+   * @param tcpServer
+   *          the TCP server
+   * @param registry
+   *          the models
+   * @param properties
+   *          the server properties with the httpPort and threads
+   * @throws IOException
+   *           if the port cannot be bound
+   */
+  public NERTaggerHttpServer(final NERTaggerServer tcpServer,
+      final ModelRegistry registry, final Properties properties)
+      throws IOException {
+    this.tcpServer = tcpServer;
+    this.registry = registry;
+    this.inputFormat = properties.getProperty("inputFormat", "naf");
+    final int port = Integer.parseInt(properties.getProperty("httpPort"));
+    final int threads = Integer
+        .parseInt(properties.getProperty("threads", "1"));
+    this.workers = new ThreadPoolExecutor(threads, threads, 0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(threads * 16));
+    // without an executor the handlers run in the dispatcher thread
+    this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+    this.httpServer.createContext("/annotate", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        submit(exchange);
+      }
+    });
+    this.httpServer.createContext("/health", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        health(exchange);
+      }
+    });
+    this.httpServer.createContext("/stats", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        send(exchange, 200, "text/plain; charset=utf-8", getStats());
+      }
+    });
+  }
+
+  /**
+   * Get the number of annotation requests rejected because the queue was
+   * full.
+   *
+   * @return the rejections
+   */
+  public final long getRejected() {
+    return this.rejected.get();
+  }
+
+  /**
+   * Get the statistics answered to {@code GET /stats}: the queue statistics
+   * followed by the {@link NERCMetrics}.
+   *
+   * @return the statistics
+   */
+  public final String getStats() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("queueDepth=").append(this.workers.getQueue().size())
+        .append('\n');
+    sb.append("activeWorkers=").append(this.workers.getActiveCount())
+        .append('\n');
+    sb.append("rejected=").append(getRejected()).append('\n');
+    sb.append(NERCMetrics.getInstance().report());
+    return sb.toString();
+  }
+
+  /**
+   * Start serving requests in the background.
+   */
+  public final void start() {
+    this.httpServer.start();
+    System.out.println("-> Listening to HTTP port "
+        + this.httpServer.getAddress().getPort() + " with "
+        + this.workers.getMaximumPoolSize() + " worker(s)");
+  }
+
+  /**
+   * Stop the server, waiting at most the given seconds for the requests being
+   * handled.
+   *
+   * @param seconds
+   *          the seconds to wait
+   */
+  public final void stop(final int seconds) {
+    this.httpServer.stop(seconds);
+    this.workers.shutdown();
+  }
+
+  private void health(final HttpExchange exchange) throws IOException {
+    final StringBuilder sb = new StringBuilder("{\"status\":\"ok\",\"models\":[");
+    boolean first = true;
+    for (final String key : this.registry.getKeys()) {
+      if (!first) {
+        sb.append(',');
+      }
+      first = false;
+      Json.quote(sb, key);
+    }
+    sb.append("]}");
+    send(exchange, 200, JSON_TYPE, sb.toString());
+  }
+
+  /**
+   * Queue an annotation request, or answer it as overloaded if the queue is
+   * full. The body is read by the worker, so the dispatcher never waits for
+   * the client.
+   */
+  private void submit(final HttpExchange exchange) throws IOException {
+    try {
+      this.workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            annotate(exchange);
+          } catch (final IOException e) {
+            // the client went away
+          } finally {
+            exchange.close();
+          }
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      this.rejected.incrementAndGet();
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      sendError(exchange, 503, "Server overloaded, try again later");
+    }
+  }
+
+  private void annotate(final HttpExchange exchange) throws IOException {
+    if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+      exchange.getResponseHeaders().set("Allow", "POST");
+      sendError(exchange, 405, "Only POST is supported");
+      return;
+    }
+    final String body = new String(
+        ByteStreams.toByteArray(exchange.getRequestBody()),
+        StandardCharsets.UTF_8);
+    final Map<String, String> parameters = getQueryParameters(exchange);
+    final String contentType = exchange.getRequestHeaders()
+        .getFirst("Content-Type");
+    try {
+      if (contentType != null
+          && contentType.toLowerCase().startsWith("application/json")) {
+        final String format = parameters.getOrDefault("format", "json");
+        if (!format.equalsIgnoreCase("json")) {
+          sendError(exchange, 400,
+              "Pre-tokenized input can only be annotated to json");
+          return;
+        }
+        final NERCMetrics metrics = NERCMetrics.getInstance();
+        final long start = System.nanoTime();
+        final String result;
+        try {
+          result = annotateTokens(body, parameters.get("model"));
+        } catch (final IOException | RuntimeException e) {
+          metrics.error(e);
+          throw e;
+        } finally {
+          metrics.record(NERCMetrics.Stage.REQUEST, start);
+        }
+        send(exchange, 200, JSON_TYPE, result);
+      } else {
+        final String input = parameters.getOrDefault("inputFormat",
+            this.inputFormat);
+        final String format = parameters.getOrDefault("format",
+            TokenStreamTagger.isTokenizedFormat(input) ? "conll02" : "naf");
+        if (!format.equalsIgnoreCase("naf")
+            && !TokenStreamTagger.isOutputFormat(format)) {
+          sendError(exchange, 400, "Unknown format " + format);
+          return;
+        }
+        final String result = this.tcpServer.getAnnotations(this.registry,
+            parameters.get("model"), input, format, body);
+        send(exchange, 200, getContentType(format), result);
+      }
+    } catch (final IllegalArgumentException e) {
+      sendError(exchange, 400, e.getMessage());
+    } catch (final JDOMException e) {
+      sendError(exchange, 400, "Badly formatted NAF document");
+    } catch (final IOException | RuntimeException e) {
+      e.printStackTrace();
+      sendError(exchange, 500, "Annotation failed: " + e);
+    }
+  }
+
+  /**
+   * Annotate pre-tokenized sentences into the JSON entities.
+   *
+   * @param body
+   *          the JSON input
+   * @param requestedKey
+   *          the model requested in the query or null
+   * @return the JSON entities
+   * @throws IOException
+   *           if the model cannot be loaded
+   */
+  private String annotateTokens(final String body, final String requestedKey)
+      throws IOException {
+    final Object input = Json.parse(body);
+    if (!(input instanceof Map)) {
+      throw new IllegalArgumentException("Expected a JSON object");
+    }
+    final Map<?, ?> request = (Map<?, ?>) input;
+    final String[][] sentences = getSentences(request.get("sentences"));
+    String modelKey = requestedKey;
+    if (modelKey == null && request.get("model") instanceof String) {
+      modelKey = (String) request.get("model");
+    }
+    final String lang = request.get("lang") instanceof String
+        ? (String) request.get("lang") : null;
+    final String key = this.registry.resolve(modelKey, lang);
+    if (key == null) {
+      throw new IllegalArgumentException("No model for "
+          + (modelKey != null ? modelKey : "language " + lang));
+    }
+    final Annotate annotator = this.registry.getAnnotator(key);
+    final StringBuilder sb = new StringBuilder("{\"entities\":[");
+    boolean first = true;
+    final TaggingContext context = annotator.getTaggingContext();
+    try {
+      for (int i = 0; i < sentences.length; i++) {
+        if (sentences[i].length == 0) {
+          continue;
+        }
+        for (final Span span : annotator.nercToSpans(context, sentences[i])) {
+          if (!first) {
+            sb.append(',');
+          }
+          first = false;
+          Json.writeEntity(sb, i, span, sentences[i]);
+        }
+      }
+    } finally {
+      annotator.releaseTaggingContext(context);
+    }
+    return sb.append("]}").toString();
+  }
+
+  private static String[][] getSentences(final Object sentences) {
+    if (!(sentences instanceof List)) {
+      throw new IllegalArgumentException(
+          "Expected a sentences array of token arrays");
+    }
+    final List<?> sentenceList = (List<?>) sentences;
+    final String[][] tokens = new String[sentenceList.size()][];
+    for (int i = 0; i < tokens.length; i++) {
+      if (!(sentenceList.get(i) instanceof List)) {
+        throw new IllegalArgumentException("Sentence " + i
+            + " is not an array of tokens");
+      }
+      final List<?> sentence = (List<?>) sentenceList.get(i);
+      tokens[i] = new String[sentence.size()];
+      for (int j = 0; j < tokens[i].length; j++) {
+        if (!(sentence.get(j) instanceof String)) {
+          throw new IllegalArgumentException("Token " + j + " of sentence "
+              + i + " is not a string");
+        }
+        tokens[i][j] = (String) sentence.get(j);
+      }
+    }
+    return tokens;
+  }
+
+  private static String getContentType(final String format) {
+    if (format.equalsIgnoreCase("naf")) {
+      return "application/xml; charset=utf-8";
+    } else if (format.equalsIgnoreCase("json")) {
+      return JSON_TYPE;
+    }
+    return "text/plain; charset=utf-8";
+  }
+
+  private static Map<String, String> getQueryParameters(
+      final HttpExchange exchange) throws UnsupportedEncodingException {
+    final Map<String, String> parameters = new HashMap<>();
+    final String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return parameters;
+    }
+    for (final String parameter : query.split("&")) {
+      final int equals = parameter.indexOf('=');
+      if (equals > 0) {
+        parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+      }
+    }
+    return parameters;
+  }
+
+  private static void sendError(final HttpExchange exchange, final int status,
+      final String message) throws IOException {
+    final StringBuilder sb = new StringBuilder("{\"error\":");
+    Json.quote(sb, message);
+    send(exchange, status, JSON_TYPE, sb.append('}').toString());
+  }
+
+  private static void send(final HttpExchange exchange, final int status,
+      final String contentType, final String body) throws IOException {
+    final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+}
@@ -0,0 +1,397 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Load generator for the {@link NERTaggerServer}: it replays a set of NAF
+ * documents over a number of concurrent connections and reports the
+ * throughput, the latency percentiles and the errors. The requests are sent
+ * with the line based protocol, one connection per document, the
+ * {@link FramedProtocol}, one persistent connection per client, or to the
+ * HTTP endpoint of the {@link NERTaggerHttpServer}.
+ * <p>
+ * Every connection waits for a reply before sending its next document. By
+ * default the documents are sent as fast as the server answers them; with a
+ * target rate the requests are scheduled at fixed intervals instead and their
+ * latency is measured from their scheduled time, so that the time spent
+ * waiting for a busy connection counts as latency rather than silently
+ * lowering the rate.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class NERTaggerLoadTest {
+
+  /**
+   * The outcomes of a request.
+   */
+  private enum Outcome {
+    OK, ERROR, OVERLOADED
+  }
+
+  private final String host;
+  private final int port;
+  /**
+   * The protocol, one of line, framed or http.
+   */
+  private final String protocol;
+  /**
+   * The model requested or null to let the server choose it.
+   */
+  private final String modelKey;
+  private final int concurrency;
+  /**
+   * The target requests per second, 0 to send them as fast as possible.
+   */
+  private final double rate;
+  /**
+   * The requests to send, 0 to send them until the duration elapses.
+   */
+  private final long requests;
+  private final long durationNanos;
+  /**
+   * The first requests, which are not measured.
+   */
+  private final long warmup;
+
+  private final AtomicLong next = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong overloaded = new AtomicLong();
+  private final AtomicLong ioErrors = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+
+  /**
+   * Construct a load test.
+   *
+   * @param properties
+   *          the host, port, protocol, modelKey, concurrency, rate, requests,
+   *          duration (seconds) and warmup properties
+   */
+  public NERTaggerLoadTest(final Properties properties) {
+    this.host = properties.getProperty("host", "localhost");
+    this.port = Integer.parseInt(properties.getProperty("port"));
+    this.protocol = properties.getProperty("protocol", "framed");
+    this.modelKey = properties.getProperty("modelKey");
+    this.concurrency = Integer
+        .parseInt(properties.getProperty("concurrency", "1"));
+    this.rate = Double.parseDouble(properties.getProperty("rate", "0"));
+    this.requests = Long.parseLong(properties.getProperty("requests", "0"));
+    this.durationNanos = TimeUnit.SECONDS
+        .toNanos(Long.parseLong(properties.getProperty("duration", "0")));
+    this.warmup = Long.parseLong(properties.getProperty("warmup", "0"));
+  }
+
+  /**
+   * Replay the documents against the server and print the report. Without
+   * the requests and duration properties every document is sent once.
+   *
+   * @param documents
+   *          the NAF documents
+   * @param out
+   *          the stream for the report
+   * @return the number of failed requests
+   * @throws IOException
+   *           if a document cannot be read
+   * @throws InterruptedException
+   *           if interrupted while waiting for the connections
+   */
+  public final long run(final List<Path> documents, final PrintStream out)
+      throws IOException, InterruptedException {
+    final List<byte[]> payloads = new ArrayList<>(documents.size());
+    for (final Path document : documents) {
+      payloads.add(Files.readAllBytes(document));
+    }
+    if (payloads.isEmpty()) {
+      throw new IllegalArgumentException("No documents to send");
+    }
+    final long total = this.requests == 0 && this.durationNanos == 0
+        ? payloads.size() + this.warmup
+        : this.requests == 0 ? Long.MAX_VALUE : this.requests + this.warmup;
+    final long start = System.nanoTime();
+    final long deadline = this.durationNanos == 0 ? Long.MAX_VALUE
+        : start + this.durationNanos;
+    final Client[] clients = new Client[this.concurrency];
+    final Thread[] threads = new Thread[this.concurrency];
+    for (int i = 0; i < this.concurrency; i++) {
+      final Client client = new Client(payloads, total, start, deadline);
+      clients[i] = client;
+      threads[i] = new Thread(client, "nerc-loadtest-" + i);
+      threads[i].start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    report(clients, seconds, out);
+    return this.errors.get() + this.overloaded.get() + this.ioErrors.get();
+  }
+
+  private void report(final Client[] clients, final double seconds,
+      final PrintStream out) {
+    int count = 0;
+    for (final Client client : clients) {
+      count += client.count;
+    }
+    final long[] latencies = new long[count];
+    int offset = 0;
+    for (final Client client : clients) {
+      System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+      offset += client.count;
+    }
+    Arrays.sort(latencies);
+    long sum = 0;
+    for (final long latency : latencies) {
+      sum += latency;
+    }
+    final long failed = this.errors.get() + this.overloaded.get()
+        + this.ioErrors.get();
+    out.println(String.format(
+        "-> Sent %d requests (%d warmup) over %d %s connection(s) in %.1f s",
+        count + failed, Math.min(this.warmup, this.next.get()),
+        this.concurrency, this.protocol, seconds));
+    out.println(String.format(
+        "-> Throughput: %.1f requests/sec, %.2f MB/sec sent, %.2f MB/sec received",
+        count / seconds, this.bytesSent.get() / seconds / 1e6,
+        this.bytesReceived.get() / seconds / 1e6));
+    out.println(String.format(
+        "-> Latency (ms): mean %.2f p50 %.2f p95 %.2f p99 %.2f max %.2f",
+        count == 0 ? 0 : sum / (double) count / 1e6,
+        percentile(latencies, 0.5), percentile(latencies, 0.95),
+        percentile(latencies, 0.99),
+        count == 0 ? 0 : latencies[count - 1] / 1e6));
+    out.println(String.format(
+        "-> Errors: %d (error replies %d, overloaded %d, connection %d)",
+        failed, this.errors.get(), this.overloaded.get(),
+        this.ioErrors.get()));
+  }
+
+  private static double percentile(final long[] sorted, final double quantile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+    return sorted[Math.max(0, rank)] / 1e6;
+  }
+
+  /**
+   * A connection sending requests until there are no more to send.
+   */
+  private final class Client implements Runnable {
+
+    private final List<byte[]> payloads;
+    private final long total;
+    private final long start;
+    private final long deadline;
+    private long[] latencies = new long[1024];
+    private int count = 0;
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    Client(final List<byte[]> payloads, final long total, final long start,
+        final long deadline) {
+      this.payloads = payloads;
+      this.total = total;
+      this.start = start;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      try {
+        long index;
+        while ((index = NERTaggerLoadTest.this.next
+            .getAndIncrement()) < this.total) {
+          long sendTime = System.nanoTime();
+          if (NERTaggerLoadTest.this.rate > 0) {
+            final long scheduled = this.start
+                + (long) (index * 1e9 / NERTaggerLoadTest.this.rate);
+            while (sendTime < scheduled) {
+              LockSupport.parkNanos(scheduled - sendTime);
+              sendTime = System.nanoTime();
+            }
+            sendTime = scheduled;
+          }
+          if (System.nanoTime() >= this.deadline) {
+            break;
+          }
+          final byte[] payload = this.payloads
+              .get((int) (index % this.payloads.size()));
+          Outcome outcome;
+          try {
+            outcome = send(payload);
+          } catch (final IOException e) {
+            NERTaggerLoadTest.this.ioErrors.incrementAndGet();
+            System.err.println("-> ERROR: " + e);
+            close();
+            continue;
+          }
+          if (index < NERTaggerLoadTest.this.warmup) {
+            continue;
+          }
+          if (outcome == Outcome.OK) {
+            record(System.nanoTime() - sendTime);
+          } else if (outcome == Outcome.OVERLOADED) {
+            NERTaggerLoadTest.this.overloaded.incrementAndGet();
+          } else {
+            NERTaggerLoadTest.this.errors.incrementAndGet();
+          }
+        }
+      } finally {
+        close();
+      }
+    }
+
+    private void record(final long latency) {
+      if (this.count == this.latencies.length) {
+        this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+      }
+      this.latencies[this.count++] = latency;
+    }
+
+    private Outcome send(final byte[] payload) throws IOException {
+      NERTaggerLoadTest.this.bytesSent.addAndGet(payload.length);
+      if (NERTaggerLoadTest.this.protocol.equalsIgnoreCase("line")) {
+        return sendLine(payload);
+      } else if (NERTaggerLoadTest.this.protocol.equalsIgnoreCase("http")) {
+        return sendHttp(payload);
+      }
+      return sendFrame(payload);
+    }
+
+    private Outcome sendLine(final byte[] payload) throws IOException {
+      try (Socket lineSocket = new Socket(NERTaggerLoadTest.this.host,
+          NERTaggerLoadTest.this.port)) {
+        final OutputStream lineOut = new BufferedOutputStream(
+            lineSocket.getOutputStream());
+        lineOut.write(payload);
+        lineOut.write("\n<ENDOFDOCUMENT>\n".getBytes(StandardCharsets.UTF_8));
+        lineOut.flush();
+        final byte[] reply = ByteStreams
+            .toByteArray(lineSocket.getInputStream());
+        NERTaggerLoadTest.this.bytesReceived.addAndGet(reply.length);
+        final String head = new String(reply, 0, Math.min(reply.length, 64),
+            StandardCharsets.UTF_8).trim();
+        if (head.startsWith(NERTaggerNioServer.LINE_OVERLOADED)) {
+          return Outcome.OVERLOADED;
+        }
+        return head.startsWith("-> ERROR") ? Outcome.ERROR : Outcome.OK;
+      }
+    }
+
+    private Outcome sendFrame(final byte[] payload) throws IOException {
+      if (this.socket == null) {
+        this.socket = new Socket(NERTaggerLoadTest.this.host,
+            NERTaggerLoadTest.this.port);
+        this.socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(
+            new BufferedOutputStream(this.socket.getOutputStream()));
+        this.in = new DataInputStream(
+            new BufferedInputStream(this.socket.getInputStream()));
+        this.out.write(FramedProtocol.MAGIC);
+        if (NERTaggerLoadTest.this.modelKey != null) {
+          FramedProtocol.writeFrame(this.out, FramedProtocol.MODEL,
+              NERTaggerLoadTest.this.modelKey);
+        }
+      }
+      FramedProtocol.writeFrame(this.out, FramedProtocol.DOCUMENT, payload);
+      this.out.flush();
+      final FramedProtocol.Frame frame = FramedProtocol.readFrame(this.in);
+      if (frame == null) {
+        throw new IOException("Connection closed by the server");
+      }
+      NERTaggerLoadTest.this.bytesReceived
+          .addAndGet(frame.getPayload().length);
+      if (frame.getType() == FramedProtocol.RESULT) {
+        return Outcome.OK;
+      }
+      return frame.getType() == FramedProtocol.OVERLOADED ? Outcome.OVERLOADED
+          : Outcome.ERROR;
+    }
+
+    private Outcome sendHttp(final byte[] payload) throws IOException {
+      String url = "http://" + NERTaggerLoadTest.this.host + ":"
+          + NERTaggerLoadTest.this.port + "/annotate";
+      if (NERTaggerLoadTest.this.modelKey != null) {
+        url += "?model="
+            + URLEncoder.encode(NERTaggerLoadTest.this.modelKey, "UTF-8");
+      }
+      final HttpURLConnection connection = (HttpURLConnection) new URL(url)
+          .openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(payload.length);
+      connection.setRequestProperty("Content-Type",
+          "application/xml; charset=utf-8");
+      try (OutputStream httpOut = connection.getOutputStream()) {
+        httpOut.write(payload);
+      }
+      final int status = connection.getResponseCode();
+      // read the whole body so that the connection is kept alive
+      try (InputStream httpIn = status < 400 ? connection.getInputStream()
+          : connection.getErrorStream()) {
+        if (httpIn != null) {
+          NERTaggerLoadTest.this.bytesReceived
+              .addAndGet(ByteStreams.toByteArray(httpIn).length);
+        }
+      }
+      if (status == HttpURLConnection.HTTP_OK) {
+        return Outcome.OK;
+      }
+      return status == HttpURLConnection.HTTP_UNAVAILABLE ? Outcome.OVERLOADED
+          : Outcome.ERROR;
+    }
+
+    private void close() {
+      if (this.socket != null) {
+        try {
+          this.socket.close();
+        } catch (final IOException e) {
+          e.printStackTrace();
+        }
+        this.socket = null;
+      }
+    }
+  }
+
+}
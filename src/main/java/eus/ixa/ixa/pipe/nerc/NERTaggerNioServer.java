@@ -0,0 +1,650 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking front end of the {@link NERTaggerServer}. A single selector
+ * thread accepts the connections and reads the requests of both protocols
+ * without blocking, and hands every document to the annotation workers
+ * through a bounded queue. When the queue is full the document is not queued:
+ * it is answered at once with a {@link FramedProtocol#OVERLOADED} frame, or a
+ * {@link #LINE_OVERLOADED} line followed by an error line for the line based
+ * protocol, so that under bursts the clients get an immediate answer they can
+ * retry elsewhere instead of waiting in the accept backlog. The queue depth
+ * and the rejections are answered to {@link FramedProtocol#STATS} frames.
+ * <p>
+ * The requests being read are buffered in memory: a connection buffering
+ * more than maxRequestMB megabytes is closed, and a request that would take
+ * the bytes buffered by all the connections over maxBufferedMB megabytes is
+ * answered as overloaded. Connections closed without sending anything are
+ * not annotated.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class NERTaggerNioServer {
+
+  /**
+   * The first line of the reply to a document of the line based protocol
+   * rejected because the request queue is full.
+   */
+  public static final String LINE_OVERLOADED = "<OVERLOADED>";
+  private static final String OVERLOADED_MESSAGE = "-> ERROR: Server overloaded, try again later!!";
+  /**
+   * The initial size of the input buffer of a connection.
+   */
+  private static final int INPUT_SIZE = 8192;
+
+  /**
+   * The server doing the annotation.
+   */
+  private final NERTaggerServer server;
+  /**
+   * The models.
+   */
+  private final ModelRegistry registry;
+  /**
+   * The port to listen to.
+   */
+  private final int port;
+  /**
+   * The capacity of the request queue.
+   */
+  private final int queueSize;
+  /**
+   * The annotation workers, fed by the bounded request queue.
+   */
+  private final ThreadPoolExecutor workers;
+  /**
+   * The connections with replies ready to be written.
+   */
+  private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+  /**
+   * The documents accepted in the queue.
+   */
+  private final AtomicLong accepted = new AtomicLong();
+  /**
+   * The documents rejected because the queue was full.
+   */
+  private final AtomicLong rejected = new AtomicLong();
+  /**
+   * The maximum number of bytes buffered by a connection.
+   */
+  private final int maxRequestBytes;
+  /**
+   * The maximum number of bytes buffered by all the connections.
+   */
+  private final long maxBufferedBytes;
+  /**
+   * The open connections.
+   */
+  private int connections = 0;
+  /**
+   * The size of the input buffers of the open connections.
+   */
+  private long bufferedBytes = 0;
+  private Selector selector;
+
+  /**
+   * Construct the non-blocking server.
+   *
+   * @param server
+   *          the server doing the annotation
+   * @param registry
+   *          the models
+   * @param properties
+   *          the server properties with the port, threads, queueSize,
+   *          maxRequestMB and maxBufferedMB
+   */
+  public NERTaggerNioServer(final NERTaggerServer server,
+      final ModelRegistry registry, final Properties properties) {
+    this.server = server;
+    this.registry = registry;
+    this.port = Integer.parseInt(properties.getProperty("port"));
+    final int threads = Integer
+        .parseInt(properties.getProperty("threads", "1"));
+    this.queueSize = Integer.parseInt(properties.getProperty("queueSize",
+        String.valueOf(threads * 16)));
+    this.workers = new ThreadPoolExecutor(threads, threads, 0L,
+        TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(this.queueSize),
+        new ThreadPoolExecutor.AbortPolicy());
+    this.maxRequestBytes = (int) Math.min(
+        FramedProtocol.MAX_PAYLOAD_LENGTH + 5L,
+        Long.parseLong(properties.getProperty("maxRequestMB", "64")) * 1024
+            * 1024);
+    final String maxBufferedMB = properties.getProperty("maxBufferedMB");
+    this.maxBufferedBytes = maxBufferedMB != null
+        ? Long.parseLong(maxBufferedMB) * 1024 * 1024
+        : Runtime.getRuntime().maxMemory() / 4;
+  }
+
+  /**
+   * Get the number of documents waiting in the queue.
+   *
+   * @return the queue depth
+   */
+  public final int getQueueDepth() {
+    return this.workers.getQueue().size();
+  }
+
+  /**
+   * Get the number of documents rejected because the queue was full.
+   *
+   * @return the rejections
+   */
+  public final long getRejected() {
+    return this.rejected.get();
+  }
+
+  /**
+   * Get the statistics answered to the {@link FramedProtocol#STATS} frames,
+   * one {@code name=value} line each: the queue statistics followed by the
+   * {@link NERCMetrics}.
+   *
+   * @return the statistics
+   */
+  public final String getStats() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("queueDepth=").append(getQueueDepth()).append('\n');
+    sb.append("queueSize=").append(this.queueSize).append('\n');
+    sb.append("activeWorkers=").append(this.workers.getActiveCount())
+        .append('\n');
+    sb.append("accepted=").append(this.accepted.get()).append('\n');
+    sb.append("rejected=").append(getRejected()).append('\n');
+    sb.append("completed=").append(this.workers.getCompletedTaskCount())
+        .append('\n');
+    sb.append("connections=").append(this.connections).append('\n');
+    sb.append("bufferedBytes=").append(this.bufferedBytes).append('\n');
+    sb.append(NERCMetrics.getInstance().report());
+    return sb.toString();
+  }
+
+  /**
+   * Serve the connections in the calling thread until an io error stops the
+   * server.
+   *
+   * @throws IOException
+   *           if the port cannot be bound or the selector fails
+   */
+  public final void serve() throws IOException {
+    System.out.println("-> Trying to listen port... " + this.port);
+    this.selector = Selector.open();
+    try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+      serverChannel.bind(new InetSocketAddress(this.port));
+      serverChannel.configureBlocking(false);
+      serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+      System.out.println("-> Connected and listening to port " + this.port
+          + " with " + this.workers.getMaximumPoolSize()
+          + " worker(s) and a queue of " + this.queueSize + " requests");
+      while (true) {
+        this.selector.select();
+        Connection connection;
+        while ((connection = this.ready.poll()) != null) {
+          connection.flushReplies();
+        }
+        final Iterator<SelectionKey> keys = this.selector.selectedKeys()
+            .iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              accept(serverChannel);
+              continue;
+            }
+            connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.write();
+            }
+          } catch (final IOException e) {
+            // the client went away or sent a malformed request
+            System.err.println("-> ERROR: " + e.getMessage() + "!!");
+            if (key.attachment() instanceof Connection) {
+              ((Connection) key.attachment()).close();
+            }
+          }
+        }
+      }
+    } finally {
+      this.workers.shutdown();
+      this.selector.close();
+    }
+  }
+
+  private void accept(final ServerSocketChannel serverChannel)
+      throws IOException {
+    final SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    final Connection connection = new Connection(channel);
+    connection.key = channel.register(this.selector, SelectionKey.OP_READ,
+        connection);
+    this.connections++;
+  }
+
+  /**
+   * Queue the annotation of a document, or answer it as overloaded if the
+   * queue is full.
+   *
+   * @param connection
+   *          the connection of the request
+   * @param reply
+   *          the slot of the reply
+   * @param annotation
+   *          the annotation producing the reply bytes
+   * @param overloaded
+   *          the reply if the queue is full
+   */
+  private void submit(final Connection connection, final Reply reply,
+      final Annotation annotation, final byte[] overloaded) {
+    try {
+      this.workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          byte[] bytes;
+          try {
+            bytes = annotation.annotate();
+          } catch (final RuntimeException e) {
+            e.printStackTrace();
+            bytes = annotation.failure(e);
+          }
+          reply.bytes = bytes;
+          NERTaggerNioServer.this.ready.add(connection);
+          NERTaggerNioServer.this.selector.wakeup();
+        }
+      });
+      this.accepted.incrementAndGet();
+    } catch (final RejectedExecutionException e) {
+      reject(reply, overloaded);
+    }
+  }
+
+  private void reject(final Reply reply, final byte[] overloaded) {
+    this.rejected.incrementAndGet();
+    NERCMetrics.getInstance().error("Overloaded");
+    reply.bytes = overloaded;
+  }
+
+  private static byte[] getOverloadedFrame() {
+    return FramedProtocol.encodeFrame(FramedProtocol.OVERLOADED,
+        OVERLOADED_MESSAGE);
+  }
+
+  private static byte[] getOverloadedLines() {
+    return (LINE_OVERLOADED + "\n" + OVERLOADED_MESSAGE + "\n")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The annotation of a request, run by a worker.
+   */
+  private interface Annotation {
+
+    byte[] annotate();
+
+    byte[] failure(RuntimeException e);
+  }
+
+  /**
+   * The slot of a reply, filled by a worker and written in request order by
+   * the selector thread.
+   */
+  private static final class Reply {
+    private volatile byte[] bytes;
+  }
+
+  /**
+   * The state of a client connection, only accessed by the selector thread.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+    /**
+     * Whether the connection is framed, null until the first bytes arrive.
+     */
+    private Boolean framed = null;
+    /**
+     * The start of the line being scanned by the line based protocol.
+     */
+    private int lineStart = 0;
+    /**
+     * The first byte not scanned yet by the line based protocol.
+     */
+    private int scanned = 0;
+    /**
+     * The bytes of a request answered as overloaded still to be dropped,
+     * {@code Long.MAX_VALUE} to drop the rest of the input.
+     */
+    private long skip = 0;
+    private String requestedKey = null;
+    private boolean inputClosed = false;
+    private final ArrayDeque<Reply> replies = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+    private Connection(final SocketChannel channel) {
+      this.channel = channel;
+      NERTaggerNioServer.this.bufferedBytes += INPUT_SIZE;
+    }
+
+    private void read() throws IOException {
+      if (!this.input.hasRemaining()) {
+        if (this.input.capacity() >= NERTaggerNioServer.this.maxRequestBytes) {
+          throw new IOException("Request longer than "
+              + NERTaggerNioServer.this.maxRequestBytes + " bytes");
+        }
+        if (!grow((int) Math.min(this.input.capacity() * 2L,
+            NERTaggerNioServer.this.maxRequestBytes))) {
+          // only the document of the line based protocol fills the buffer
+          overload(getOverloadedLines(), Long.MAX_VALUE);
+        }
+      }
+      final int read = this.channel.read(this.input);
+      if (read == -1) {
+        this.inputClosed = true;
+        this.key.interestOps(
+            this.key.interestOps() & ~SelectionKey.OP_READ);
+      }
+      if (this.skip > 0) {
+        // keep reading the request so that the client gets the reply
+        final int dropped = (int) Math.min(this.skip, this.input.position());
+        removeInput(dropped);
+        this.skip -= dropped;
+        if (this.skip > 0) {
+          flushReplies();
+          return;
+        }
+      }
+      if (this.framed == null) {
+        if (this.inputClosed && this.input.position() == 0) {
+          // closed without a request
+          close();
+          return;
+        }
+        if (this.input.position() < FramedProtocol.MAGIC.length
+            && !this.inputClosed) {
+          return;
+        }
+        final byte[] header = new byte[FramedProtocol.MAGIC.length];
+        final int length = Math.min(header.length, this.input.position());
+        for (int i = 0; i < length; i++) {
+          header[i] = this.input.get(i);
+        }
+        this.framed = FramedProtocol.isMagic(header, length);
+        if (this.framed) {
+          removeInput(header.length);
+        }
+      }
+      if (this.framed) {
+        readFrames();
+      } else {
+        readLines();
+      }
+      flushReplies();
+    }
+
+    private void readFrames() throws IOException {
+      while (this.input.position() >= 5) {
+        final int length = this.input.getInt(1);
+        if (length < 0 || length > FramedProtocol.MAX_PAYLOAD_LENGTH) {
+          throw new IOException("Frame length not valid: " + length);
+        }
+        if (5 + length > NERTaggerNioServer.this.maxRequestBytes) {
+          throw new IOException("Frame longer than "
+              + NERTaggerNioServer.this.maxRequestBytes + " bytes");
+        }
+        if (this.input.position() < 5 + length) {
+          if (this.input.capacity() < 5 + length && !grow(5 + length)) {
+            overload(getOverloadedFrame(), 5L + length);
+            return;
+          }
+          break;
+        }
+        final byte type = this.input.get(0);
+        final String text = new String(this.input.array(), 5, length,
+            StandardCharsets.UTF_8);
+        removeInput(5 + length);
+        request(type, text);
+      }
+      if (this.inputClosed && this.input.position() > 0) {
+        throw new IOException("Connection closed inside a frame");
+      }
+      if (this.input.capacity() > INPUT_SIZE
+          && this.input.position() <= INPUT_SIZE) {
+        // give back the buffer of a long frame once it is read
+        resize(INPUT_SIZE);
+      }
+    }
+
+    private void request(final byte type, final String text) {
+      if (type == FramedProtocol.MODEL) {
+        this.requestedKey = text.trim();
+        return;
+      }
+      final Reply reply = new Reply();
+      this.replies.add(reply);
+      if (type == FramedProtocol.DOCUMENT) {
+        final String key = this.requestedKey;
+        submit(this, reply, new Annotation() {
+          @Override
+          public byte[] annotate() {
+            return NERTaggerNioServer.this.server.annotateFrame(
+                NERTaggerNioServer.this.registry, key, text);
+          }
+
+          @Override
+          public byte[] failure(final RuntimeException e) {
+            return FramedProtocol.encodeFrame(FramedProtocol.ERROR,
+                "-> ERROR: " + e + "!!");
+          }
+        }, getOverloadedFrame());
+      } else if (type == FramedProtocol.STATS) {
+        reply.bytes = FramedProtocol.encodeFrame(FramedProtocol.STATS,
+            getStats());
+      } else {
+        reply.bytes = FramedProtocol.encodeFrame(FramedProtocol.ERROR,
+            "-> ERROR: Unknown frame type " + type + "!!");
+      }
+    }
+
+    /**
+     * Scan the line based protocol for the end of the document: a
+     * {@code </NAF>} line, which belongs to it, an {@code <ENDOFDOCUMENT>}
+     * line, which does not, or the end of the input.
+     */
+    private void readLines() throws IOException {
+      int end = -1;
+      final byte[] bytes = this.input.array();
+      for (; this.scanned < this.input.position() && end == -1;
+          this.scanned++) {
+        if (bytes[this.scanned] != '\n') {
+          continue;
+        }
+        final String line = new String(bytes, this.lineStart,
+            this.scanned - this.lineStart, StandardCharsets.UTF_8).trim();
+        if (line.equals("</NAF>")) {
+          end = this.scanned + 1;
+        } else if (line.equals("<ENDOFDOCUMENT>")) {
+          end = this.lineStart;
+        }
+        this.lineStart = this.scanned + 1;
+      }
+      if (end == -1 && this.inputClosed) {
+        end = this.input.position();
+      }
+      if (end == -1) {
+        return;
+      }
+      // one document per connection: stop reading and reply
+      this.inputClosed = true;
+      this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+      final String document = new String(bytes, 0, end,
+          StandardCharsets.UTF_8);
+      resize(0);
+      if (document.trim().isEmpty()) {
+        return;
+      }
+      final Reply reply = new Reply();
+      this.replies.add(reply);
+      submit(this, reply, new Annotation() {
+        @Override
+        public byte[] annotate() {
+          return NERTaggerNioServer.this.server
+              .annotateLine(NERTaggerNioServer.this.registry, document)
+              .getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public byte[] failure(final RuntimeException e) {
+          return ("\n-> ERROR: " + e + "!!\n")
+              .getBytes(StandardCharsets.UTF_8);
+        }
+      }, getOverloadedLines());
+    }
+
+    /**
+     * Move the replies ready at the head of the request order to the output.
+     */
+    private void flushReplies() {
+      if (!this.key.isValid()) {
+        return;
+      }
+      while (!this.replies.isEmpty() && this.replies.peek().bytes != null) {
+        this.output.add(ByteBuffer.wrap(this.replies.poll().bytes));
+      }
+      if (!this.output.isEmpty()) {
+        this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+      } else {
+        closeIfDone();
+      }
+    }
+
+    private void write() throws IOException {
+      while (!this.output.isEmpty()) {
+        final ByteBuffer buffer = this.output.peek();
+        this.channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          return;
+        }
+        this.output.poll();
+      }
+      this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+      closeIfDone();
+    }
+
+    private void closeIfDone() {
+      if (this.inputClosed && this.replies.isEmpty()
+          && this.output.isEmpty()) {
+        close();
+      }
+    }
+
+    private void close() {
+      if (this.key.isValid()) {
+        NERTaggerNioServer.this.connections--;
+      }
+      resize(0);
+      this.key.cancel();
+      try {
+        this.channel.close();
+      } catch (final IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    private void removeInput(final int length) {
+      this.input.flip();
+      this.input.position(length);
+      this.input.compact();
+    }
+
+    /**
+     * Grow the input buffer unless the connections would buffer too many
+     * bytes.
+     *
+     * @return true if the buffer was grown
+     */
+    private boolean grow(final int capacity) {
+      if (NERTaggerNioServer.this.bufferedBytes + capacity
+          - this.input.capacity() > NERTaggerNioServer.this.maxBufferedBytes) {
+        return false;
+      }
+      resize(capacity);
+      return true;
+    }
+
+    /**
+     * Answer the request at the start of the input as overloaded and drop it.
+     *
+     * @param overloaded
+     *          the reply
+     * @param length
+     *          the length of the request
+     */
+    private void overload(final byte[] overloaded, final long length) {
+      final Reply reply = new Reply();
+      this.replies.add(reply);
+      reject(reply, overloaded);
+      this.skip = length - this.input.position();
+      this.input.clear();
+      resize(INPUT_SIZE);
+    }
+
+    private void resize(final int capacity) {
+      if (this.input.capacity() == capacity) {
+        return;
+      }
+      final ByteBuffer resized = ByteBuffer.allocate(capacity);
+      this.input.flip();
+      if (capacity > 0) {
+        resized.put(this.input);
+      }
+      NERTaggerNioServer.this.bufferedBytes += capacity
+          - this.input.capacity();
+      this.input = resized;
+    }
+  }
+
+}
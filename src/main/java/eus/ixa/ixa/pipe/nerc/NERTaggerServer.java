@@ -18,23 +18,35 @@ package eus.ixa.ixa.pipe.nerc;
 
 import ixa.kaflib.KAFDocument;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
+import java.io.StringWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.jdom2.JDOMException;
 
 import com.google.common.io.Files;
 
 /**
- * TCP server class for the Named Entity Tagger.
+ * TCP server class for the Named Entity Tagger. It serves both the line based
+ * protocol, one document per connection, and the {@link FramedProtocol}, many
+ * pipelined documents per connection. The model of every document is chosen
+ * from a {@link ModelRegistry} by the language of the document or by the key
+ * requested with a {@link FramedProtocol#MODEL} frame.
  * 
  * @author ragerri
  * @version 2016-04-22
@@ -53,17 +65,26 @@ public class NERTaggerServer {
    */
   private final String commit = CLI.class.getPackage()
       .getSpecificationVersion();
-  /**
-   * The model.
-   */
-  private String model = null;
   /**
    * The annotation output format, one of NAF (default), CoNLL 2002, CoNLL 2003.
    */
   private String outputFormat = null;
+  /**
+   * The input format, NAF (default) or tokenized text, one of tokens or conll.
+   */
+  private String inputFormat = null;
+  /**
+   * The replies to the documents received last, null if they are not cached.
+   */
+  private ResponseCache responseCache = null;
 
   /**
-   * Construct a Named Entity Tagger server.
+   * Construct a Named Entity Tagger server. Connections are accepted in this
+   * thread and annotated by a pool of workers sharing the annotators of the
+   * model registry, so every model and dictionary is loaded only once. If the
+   * responseCache property gives a size in megabytes, the replies are cached
+   * for responseCacheTtl seconds, 300 by default, and duplicated documents
+   * are answered from the cache.
    * 
    * @param properties
    *          the properties
@@ -71,49 +92,53 @@ public class NERTaggerServer {
   public NERTaggerServer(Properties properties) {
 
     Integer port = Integer.parseInt(properties.getProperty("port"));
-    model = properties.getProperty("model");
     outputFormat = properties.getProperty("outputFormat");
+    inputFormat = properties.getProperty("inputFormat", "naf");
+    int threads = Integer.parseInt(properties.getProperty("threads", "1"));
+    long responseCacheMB = Long
+        .parseLong(properties.getProperty("responseCache", "0"));
+    if (responseCacheMB > 0) {
+      responseCache = new ResponseCache(responseCacheMB * 1024 * 1024,
+          TimeUnit.SECONDS.toNanos(Long.parseLong(
+              properties.getProperty("responseCacheTtl", "300"))));
+    }
 
-    String kafToString;
     ServerSocket socketServer = null;
-    Socket activeSocket;
-    BufferedReader inFromClient = null;
-    BufferedWriter outToClient = null;
+    ExecutorService workers = null;
 
     try {
-      Annotate annotator = new Annotate(properties);
+      final ModelRegistry registry = new ModelRegistry(properties);
+      if (properties.getProperty("model") != null) {
+        // load the default model before accepting connections
+        registry.getAnnotator(properties.getProperty("language"));
+      }
+      System.out.println("-> Serving models " + registry.getKeys());
+      if (properties.getProperty("httpPort") != null) {
+        new NERTaggerHttpServer(this, registry, properties).start();
+      }
+      if (Boolean.parseBoolean(properties.getProperty("nio", "false"))) {
+        new NERTaggerNioServer(this, registry, properties).serve();
+        return;
+      }
+      workers = Executors.newFixedThreadPool(threads);
       System.out.println("-> Trying to listen port... " + port);
       socketServer = new ServerSocket(port);
-      System.out.println("-> Connected and listening to port " + port);
+      System.out.println("-> Connected and listening to port " + port
+          + " with " + threads + " worker(s)");
       while (true) {
-        try {
-          activeSocket = socketServer.accept();
-          inFromClient = new BufferedReader(
-              new InputStreamReader(activeSocket.getInputStream(), "UTF-8"));
-          outToClient = new BufferedWriter(
-              new OutputStreamWriter(activeSocket.getOutputStream(), "UTF-8"));
-          // get data from client
-          String stringFromClient = getClientData(inFromClient);
-          // annotate
-          kafToString = getAnnotations(annotator, stringFromClient);
-        } catch (JDOMException e) {
-          kafToString = "\n-> ERROR: Badly formatted NAF document!!\n";
-          sendDataToClient(outToClient, kafToString);
-          continue;
-        } catch (UnsupportedEncodingException e) {
-          kafToString = "\n-> ERROR: UTF-8 not supported!!\n";
-          sendDataToClient(outToClient, kafToString);
-          continue;
-        } catch (IOException e) {
-          kafToString = "\n -> ERROR: Input data not correct!!\n";
-          sendDataToClient(outToClient, kafToString);
-          continue;
-        }
-        // send data to server after all exceptions and close the outToClient
-        sendDataToClient(outToClient, kafToString);
-        // close the resources
-        inFromClient.close();
-        activeSocket.close();
+        final Socket activeSocket = socketServer.accept();
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              processClient(activeSocket, registry);
+            } catch (IOException e) {
+              e.printStackTrace();
+            } finally {
+              closeQuietly(activeSocket);
+            }
+          }
+        });
       } // end of processing block
     } catch (IOException e) {
       e.printStackTrace();
@@ -121,14 +146,190 @@ public class NERTaggerServer {
           "-> IOException due to failing to create the TCP socket or to wrongly provided model path.");
     } finally {
       System.out.println("closing tcp socket...");
+      if (workers != null) {
+        workers.shutdown();
+      }
       try {
-        socketServer.close();
+        if (socketServer != null) {
+          socketServer.close();
+        }
       } catch (IOException e) {
         e.printStackTrace();
       }
     }
   }
 
+  /**
+   * Serve a client connection. Connections opened with the
+   * {@link FramedProtocol#MAGIC} bytes are served with the framed protocol;
+   * otherwise a single document is read with the line based protocol.
+   * 
+   * @param activeSocket
+   *          the client socket
+   * @param registry
+   *          the models
+   * @throws IOException
+   *           if io error
+   */
+  private void processClient(Socket activeSocket,
+      ModelRegistry registry) throws IOException {
+    BufferedInputStream clientStream = new BufferedInputStream(
+        activeSocket.getInputStream());
+    byte[] header = new byte[FramedProtocol.MAGIC.length];
+    clientStream.mark(header.length);
+    int headerLength = 0;
+    int read;
+    while (headerLength < header.length && (read = clientStream.read(header,
+        headerLength, header.length - headerLength)) != -1) {
+      headerLength += read;
+    }
+    if (FramedProtocol.isMagic(header, headerLength)) {
+      processFramedClient(activeSocket, clientStream, registry);
+    } else {
+      clientStream.reset();
+      processLineClient(activeSocket, clientStream, registry);
+    }
+  }
+
+  /**
+   * Read a document with the line based protocol, annotate it and send the
+   * result back before closing the connection.
+   * 
+   * @param activeSocket
+   *          the client socket
+   * @param clientStream
+   *          the client input stream
+   * @param registry
+   *          the models
+   * @throws IOException
+   *           if io error
+   */
+  private void processLineClient(Socket activeSocket, InputStream clientStream,
+      ModelRegistry registry) throws IOException {
+    BufferedReader inFromClient = new BufferedReader(
+        new InputStreamReader(clientStream, "UTF-8"));
+    BufferedWriter outToClient = new BufferedWriter(
+        new OutputStreamWriter(activeSocket.getOutputStream(), "UTF-8"));
+    // get data from client and annotate it
+    String kafToString = annotateLine(registry, getClientData(inFromClient));
+    // send data to server after all exceptions and close the outToClient
+    sendDataToClient(outToClient, kafToString);
+    // close the resources
+    inFromClient.close();
+    activeSocket.close();
+  }
+
+  /**
+   * Annotate every document frame sent by a client until it closes its side
+   * of the connection. Replies are written in the order of the requests and
+   * flushed only once the client has no more pipelined frames in flight. A
+   * model frame selects the model of the following documents and has no
+   * reply.
+   * 
+   * @param activeSocket
+   *          the client socket
+   * @param clientStream
+   *          the client input stream, positioned after the magic bytes
+   * @param registry
+   *          the models
+   * @throws IOException
+   *           if io error
+   */
+  private void processFramedClient(Socket activeSocket,
+      InputStream clientStream, ModelRegistry registry) throws IOException {
+    DataInputStream inFromClient = new DataInputStream(clientStream);
+    DataOutputStream outToClient = new DataOutputStream(
+        new BufferedOutputStream(activeSocket.getOutputStream()));
+    FramedProtocol.Frame frame;
+    String requestedKey = null;
+    while ((frame = FramedProtocol.readFrame(inFromClient)) != null) {
+      if (frame.getType() == FramedProtocol.MODEL) {
+        requestedKey = frame.getText().trim();
+        continue;
+      } else if (frame.getType() == FramedProtocol.DOCUMENT) {
+        outToClient.write(
+            annotateFrame(registry, requestedKey, frame.getText()));
+      } else if (frame.getType() == FramedProtocol.STATS) {
+        FramedProtocol.writeFrame(outToClient, FramedProtocol.STATS,
+            NERCMetrics.getInstance().report());
+      } else {
+        FramedProtocol.writeFrame(outToClient, FramedProtocol.ERROR,
+            "-> ERROR: Unknown frame type " + frame.getType() + "!!");
+      }
+      if (inFromClient.available() == 0) {
+        outToClient.flush();
+      }
+    }
+    outToClient.flush();
+    activeSocket.close();
+  }
+
+  /**
+   * Annotate a document of the line based protocol into its reply, the
+   * annotation or the error message.
+   * 
+   * @param registry
+   *          the models
+   * @param stringFromClient
+   *          the document
+   * @return the reply
+   */
+  String annotateLine(ModelRegistry registry, String stringFromClient) {
+    try {
+      return getAnnotations(registry, null, stringFromClient);
+    } catch (IllegalArgumentException e) {
+      return "\n-> ERROR: " + e.getMessage() + "!!\n";
+    } catch (JDOMException e) {
+      return "\n-> ERROR: Badly formatted NAF document!!\n";
+    } catch (IOException e) {
+      return "\n -> ERROR: Input data not correct!!\n";
+    }
+  }
+
+  /**
+   * Annotate a document frame into its encoded reply frame, a
+   * {@link FramedProtocol#RESULT} or an {@link FramedProtocol#ERROR} with the
+   * error message.
+   * 
+   * @param registry
+   *          the models
+   * @param requestedKey
+   *          the model requested by the client or null
+   * @param document
+   *          the document
+   * @return the bytes of the reply frame
+   */
+  byte[] annotateFrame(ModelRegistry registry, String requestedKey,
+      String document) {
+    try {
+      return FramedProtocol.encodeFrame(FramedProtocol.RESULT,
+          getAnnotations(registry, requestedKey, document));
+    } catch (IllegalArgumentException e) {
+      return FramedProtocol.encodeFrame(FramedProtocol.ERROR,
+          "-> ERROR: " + e.getMessage() + "!!");
+    } catch (JDOMException e) {
+      return FramedProtocol.encodeFrame(FramedProtocol.ERROR,
+          "-> ERROR: Badly formatted NAF document!!");
+    } catch (IOException e) {
+      return FramedProtocol.encodeFrame(FramedProtocol.ERROR,
+          "-> ERROR: Input data not correct!!");
+    }
+  }
+
+  /**
+   * Close a client socket which may be already closed.
+   * 
+   * @param activeSocket
+   *          the client socket
+   */
+  private static void closeQuietly(Socket activeSocket) {
+    try {
+      activeSocket.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
   /**
    * Read data from the client and output to a String.
    * 
@@ -141,11 +342,11 @@ public class NERTaggerServer {
     try {
       String line;
       while ((line = inFromClient.readLine()) != null) {
-        if (line.matches("<ENDOFDOCUMENT>")) {
+        if (line.equals("<ENDOFDOCUMENT>")) {
           break;
         }
         stringFromClient.append(line).append("\n");
-        if (line.matches("</NAF>")) {
+        if (line.equals("</NAF>")) {
           break;
         }
       }
@@ -171,11 +372,37 @@ public class NERTaggerServer {
     outToClient.close();
   }
 
+  /**
+   * Get the annotator of a document.
+   * 
+   * @param registry
+   *          the models
+   * @param requestedKey
+   *          the model requested by the client or null
+   * @param lang
+   *          the language of the document
+   * @return the key of the model
+   * @throws IllegalArgumentException
+   *           if no model applies to the document
+   */
+  private String getModelKey(ModelRegistry registry, String requestedKey,
+      String lang) {
+    String key = registry.resolve(requestedKey, lang);
+    if (key == null) {
+      throw new IllegalArgumentException("No model for "
+          + (requestedKey != null ? requestedKey : "language " + lang));
+    }
+    return key;
+  }
+
   /**
    * Named Entity annotator.
    * 
-   * @param annotator
-   *          the annotator
+   * @param registry
+   *          the models
+   * @param requestedKey
+   *          the model requested by the client or null to choose it by the
+   *          language of the document
    * @param stringFromClient
    *          the string to be annotated
    * @return the annotation result
@@ -184,18 +411,103 @@ public class NERTaggerServer {
    * @throws JDOMException
    *           if xml error
    */
-  private String getAnnotations(Annotate annotator, String stringFromClient)
+  private String getAnnotations(ModelRegistry registry, String requestedKey,
+      String stringFromClient) throws JDOMException, IOException {
+    return getAnnotations(registry, requestedKey, inputFormat, outputFormat,
+        stringFromClient);
+  }
+
+  /**
+   * Named Entity annotator in a given output format, also used by the
+   * {@link NERTaggerHttpServer}.
+   * 
+   * @param registry
+   *          the models
+   * @param requestedKey
+   *          the model requested by the client or null to choose it by the
+   *          language of the document
+   * @param inputFormat
+   *          the input format, naf or the tokens and conll tokenized text
+   *          formats, which are annotated with the requested or default model
+   * @param outputFormat
+   *          the output format
+   * @param stringFromClient
+   *          the string to be annotated
+   * @return the annotation result
+   * @throws IOException
+   *           if io error
+   * @throws JDOMException
+   *           if xml error
+   */
+  String getAnnotations(ModelRegistry registry, String requestedKey,
+      String inputFormat, String outputFormat, String stringFromClient)
       throws JDOMException, IOException {
+    NERCMetrics metrics = NERCMetrics.getInstance();
+    long start = System.nanoTime();
+    try {
+      if (responseCache == null) {
+        return annotate(registry, requestedKey, inputFormat, outputFormat,
+            stringFromClient, metrics);
+      }
+      String cacheKey = ResponseCache.getKey(requestedKey, inputFormat,
+          outputFormat, stringFromClient);
+      String reply = responseCache.get(cacheKey);
+      if (reply != null) {
+        metrics.responseCacheHit();
+        return reply;
+      }
+      metrics.responseCacheMiss();
+      reply = annotate(registry, requestedKey, inputFormat, outputFormat,
+          stringFromClient, metrics);
+      responseCache.put(cacheKey, reply);
+      return reply;
+    } catch (JDOMException | IOException | RuntimeException e) {
+      metrics.error(e);
+      throw e;
+    } finally {
+      metrics.record(NERCMetrics.Stage.REQUEST, start);
+    }
+  }
+
+  /**
+   * Annotate a request, timing the parsing and serialization of the NAF
+   * documents.
+   */
+  private String annotate(ModelRegistry registry, String requestedKey,
+      String inputFormat, String outputFormat, String stringFromClient,
+      NERCMetrics metrics) throws JDOMException, IOException {
     // get a breader from the string coming from the client
     BufferedReader clientReader = new BufferedReader(
         new StringReader(stringFromClient));
+    if (TokenStreamTagger.isTokenizedFormat(inputFormat)) {
+      Annotate annotator = registry.getAnnotator(
+          getModelKey(registry, requestedKey, null));
+      StringWriter conllWriter = new StringWriter();
+      new TokenStreamTagger(clientReader, inputFormat).annotate(annotator,
+          outputFormat, conllWriter);
+      return conllWriter.toString();
+    }
+    if (NAFStreamTagger.isStreamingFormat(outputFormat)) {
+      NAFStreamTagger nafStream = new NAFStreamTagger(clientReader);
+      Annotate annotator = registry.getAnnotator(
+          getModelKey(registry, requestedKey, nafStream.getLang()));
+      StringWriter conllWriter = new StringWriter();
+      nafStream.annotate(annotator, outputFormat, conllWriter);
+      return conllWriter.toString();
+    }
+    long start = System.nanoTime();
     KAFDocument kaf = KAFDocument.createFromStream(clientReader);
+    metrics.record(NERCMetrics.Stage.PARSE, start);
+    String key = getModelKey(registry, requestedKey, kaf.getLang());
+    Annotate annotator = registry.getAnnotator(key);
+    String model = registry.getModel(key);
     KAFDocument.LinguisticProcessor newLp = kaf.addLinguisticProcessor(
         "entities", "ixa-pipe-nerc-" + Files.getNameWithoutExtension(model),
         version + "-" + commit);
     newLp.setBeginTimestamp();
     annotator.annotateNEsToKAF(kaf);
     // get outputFormat
+    start = System.nanoTime();
     String kafToString = null;
     if (outputFormat.equalsIgnoreCase("conll03")) {
       kafToString = annotator.annotateNEsToCoNLL2003(kaf);
@@ -205,6 +517,7 @@ public class NERTaggerServer {
       newLp.setEndTimestamp();
       kafToString = kaf.toString();
     }
+    metrics.record(NERCMetrics.Stage.SERIALIZE, start);
     return kafToString;
   }
 
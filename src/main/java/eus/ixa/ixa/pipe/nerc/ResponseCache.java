@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The replies of the {@link NERTaggerServer} to the documents received last,
+ * so that retried and duplicated documents are answered without annotating
+ * them again. A reply is keyed by the SHA-256 hash of the normalized document,
+ * its line endings converted to '\n' and its trailing whitespace removed,
+ * together with the requested model and the input and output formats.
+ * <p>
+ * The cache is bounded by the approximate memory of the replies, evicting the
+ * least recently used ones first, and the replies expire after the given
+ * time.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class ResponseCache {
+
+  /**
+   * The approximate memory of an entry besides its reply.
+   */
+  private static final int ENTRY_OVERHEAD = 160;
+
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16,
+      0.75f, true);
+  private long bytes = 0;
+
+  /**
+   * Create the cache.
+   *
+   * @param maxBytes
+   *          the maximum memory of the cached replies
+   * @param ttlNanos
+   *          the nanoseconds a reply is kept
+   */
+  ResponseCache(final long maxBytes, final long ttlNanos) {
+    this.maxBytes = maxBytes;
+    this.ttlNanos = ttlNanos;
+  }
+
+  /**
+   * Get the key of a request.
+   *
+   * @param requestedKey
+   *          the model requested by the client or null
+   * @param inputFormat
+   *          the input format
+   * @param outputFormat
+   *          the output format
+   * @param document
+   *          the document
+   * @return the key
+   */
+  static String getKey(final String requestedKey, final String inputFormat,
+      final String outputFormat, final String document) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      // every JVM provides SHA-256
+      throw new AssertionError(e);
+    }
+    final String options = (requestedKey == null ? "" : requestedKey) + '\0'
+        + inputFormat.toLowerCase() + '\0' + outputFormat.toLowerCase() + '\0';
+    digest.update(options.getBytes(StandardCharsets.UTF_8));
+    digest.update(normalize(document).getBytes(StandardCharsets.UTF_8));
+    return Base64.getEncoder().encodeToString(digest.digest());
+  }
+
+  private static String normalize(final String document) {
+    String text = document;
+    if (text.indexOf('\r') >= 0) {
+      text = text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+    int end = text.length();
+    while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    return end == text.length() ? text : text.substring(0, end);
+  }
+
+  /**
+   * Get a cached reply.
+   *
+   * @param key
+   *          the key of the request
+   * @return the reply or null if it is not cached or expired
+   */
+  synchronized String get(final String key) {
+    final Entry entry = this.entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.created > this.ttlNanos) {
+      remove(key, entry);
+      return null;
+    }
+    return entry.reply;
+  }
+
+  /**
+   * Cache a reply, unless it alone exceeds the memory of the cache.
+   *
+   * @param key
+   *          the key of the request
+   * @param reply
+   *          the reply
+   */
+  synchronized void put(final String key, final String reply) {
+    final Entry entry = new Entry(reply, System.nanoTime());
+    if (entry.bytes > this.maxBytes) {
+      return;
+    }
+    final Entry previous = this.entries.put(key, entry);
+    if (previous != null) {
+      this.bytes -= previous.bytes;
+    }
+    this.bytes += entry.bytes;
+    final Iterator<Map.Entry<String, Entry>> eldest = this.entries.entrySet()
+        .iterator();
+    while (this.bytes > this.maxBytes && eldest.hasNext()) {
+      this.bytes -= eldest.next().getValue().bytes;
+      eldest.remove();
+    }
+  }
+
+  private void remove(final String key, final Entry entry) {
+    this.entries.remove(key);
+    this.bytes -= entry.bytes;
+  }
+
+  /**
+   * Get the memory of the cached replies.
+   *
+   * @return the approximate bytes
+   */
+  synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Get the number of cached replies.
+   *
+   * @return the replies
+   */
+  synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * A cached reply.
+   */
+  private static final class Entry {
+
+    private final String reply;
+    private final long created;
+    private final long bytes;
+
+    Entry(final String reply, final long created) {
+      this.reply = reply;
+      this.created = created;
+      this.bytes = ENTRY_OVERHEAD + 2L * reply.length();
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import eus.ixa.ixa.pipe.ml.nerc.NumericNERTagger;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * Numeric Named Entity tagging component which feeds the tokens of each
+ * sentence to the {@link NumericNERTagger} lexer directly, so no sentence
+ * string, {@code StringReader} or {@code BufferedReader} buffer is allocated
+ * per sentence. A tagger is still built for every sentence, as the tagger
+ * gives no way to reset its lexer onto the next one. Instances are not thread
+ * safe; every {@link TaggingContext} has its own.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class ReusableNumericTagger {
+
+  /**
+   * The reader the lexer consumes, reset onto every new sentence.
+   */
+  private final TokensReader tokensReader = new TokensReader();
+
+  /**
+   * Tag the numeric entities of a sentence.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @return the numeric entity spans
+   */
+  public final Span[] nercToSpans(final String[] tokens) {
+    this.tokensReader.reset(tokens);
+    return new NumericNERTagger(this.tokensReader).nercToSpans(tokens);
+  }
+
+  /**
+   * Reader over the tokens of a sentence joined by a single space, which is
+   * the text {@code StringUtils.getStringFromTokens} builds for the lexer.
+   * It extends {@code BufferedReader} because that is what the lexer takes,
+   * but it does not use the inherited buffer.
+   */
+  private static final class TokensReader extends BufferedReader {
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private String[] tokens = NO_TOKENS;
+    /**
+     * The token being read.
+     */
+    private int token;
+    /**
+     * The offset within the current token; when it reaches the token length
+     * the separator is pending.
+     */
+    private int offset;
+
+    TokensReader() {
+      super(new StringReader(""), 1);
+    }
+
+    void reset(final String[] sentence) {
+      this.tokens = sentence;
+      this.token = 0;
+      this.offset = 0;
+    }
+
+    @Override
+    public int read() {
+      while (this.token < this.tokens.length) {
+        final String current = this.tokens[this.token];
+        if (this.offset < current.length()) {
+          return current.charAt(this.offset++);
+        }
+        this.token++;
+        this.offset = 0;
+        if (this.token < this.tokens.length) {
+          return ' ';
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) {
+      if (len == 0) {
+        return 0;
+      }
+      int read = 0;
+      while (read < len && this.token < this.tokens.length) {
+        final String current = this.tokens[this.token];
+        if (this.offset < current.length()) {
+          final int count = Math.min(len - read,
+              current.length() - this.offset);
+          current.getChars(this.offset, this.offset + count, cbuf,
+              off + read);
+          this.offset += count;
+          read += count;
+        } else {
+          this.token++;
+          this.offset = 0;
+          if (this.token < this.tokens.length) {
+            cbuf[off + read++] = ' ';
+          }
+        }
+      }
+      return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public String readLine() {
+      final StringBuilder line = new StringBuilder();
+      int c;
+      while ((c = read()) != -1) {
+        line.append((char) c);
+      }
+      return line.length() == 0 ? null : line.toString();
+    }
+
+    @Override
+    public long skip(final long n) {
+      long skipped = 0;
+      while (skipped < n && read() != -1) {
+        skipped++;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean ready() {
+      return this.token < this.tokens.length;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      // nothing to release, the reader is reused for the next sentence
+    }
+  }
+
+}
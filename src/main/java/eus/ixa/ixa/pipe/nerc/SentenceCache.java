@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * The Named Entity spans of the sentences tagged last, keyed by their tokens,
+ * for the configurations in which the spans of a sentence depend on its tokens
+ * only. Repeated sentences, such as bylines, disclaimers or navigation text,
+ * are then tagged once.
+ * <p>
+ * The cache holds at most the given number of sentences and evicts the least
+ * recently used ones. It is split into segments, each an access ordered
+ * {@link LinkedHashMap} with its own lock, so that the threads tagging
+ * different sentences seldom wait for each other.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class SentenceCache {
+
+  private static final int SEGMENTS = 16;
+
+  private final List<Map<Key, Span[]>> segments = new ArrayList<>(SEGMENTS);
+
+  /**
+   * Create the cache.
+   *
+   * @param maxSentences
+   *          the maximum number of sentences kept
+   */
+  SentenceCache(final int maxSentences) {
+    final int segmentSize = Math.max(1,
+        (maxSentences + SEGMENTS - 1) / SEGMENTS);
+    for (int i = 0; i < SEGMENTS; i++) {
+      this.segments.add(new LinkedHashMap<Key, Span[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<Key, Span[]> eldest) {
+          return size() > segmentSize;
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the spans of a sentence.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @return a copy of the cached spans or null if the sentence is not cached
+   */
+  Span[] get(final String[] tokens) {
+    final Key key = new Key(tokens);
+    final Map<Key, Span[]> segment = getSegment(key);
+    final Span[] spans;
+    synchronized (segment) {
+      spans = segment.get(key);
+    }
+    return spans == null ? null : spans.clone();
+  }
+
+  /**
+   * Cache the spans of a sentence.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @param spans
+   *          its spans
+   */
+  void put(final String[] tokens, final Span[] spans) {
+    // the callers may reuse their arrays
+    final Key key = new Key(tokens.clone());
+    final Map<Key, Span[]> segment = getSegment(key);
+    synchronized (segment) {
+      segment.put(key, spans.clone());
+    }
+  }
+
+  private Map<Key, Span[]> getSegment(final Key key) {
+    final int hash = key.hash ^ (key.hash >>> 16);
+    return this.segments.get(hash & (SEGMENTS - 1));
+  }
+
+  /**
+   * The tokens of a sentence with their hash code computed once.
+   */
+  private static final class Key {
+
+    private final String[] tokens;
+    private final int hash;
+
+    Key(final String[] tokens) {
+      this.tokens = tokens;
+      this.hash = Arrays.hashCode(tokens);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof Key && ((Key) other).hash == this.hash
+          && Arrays.equals(((Key) other).tokens, this.tokens);
+    }
+  }
+
+}
@@ -0,0 +1,360 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jdom2.Element;
+
+import ixa.kaflib.Annotation;
+import ixa.kaflib.Entity;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+
+/**
+ * The record of the sentences of a document tagged in incremental mode. It is
+ * kept in the document as a {@value #LAYER_NAME} layer, which kaflib, and so
+ * the other ixa pipes, carry over unchanged, with one element per sentence:
+ *
+ * <pre>
+ * &lt;nercFingerprints&gt;
+ *   &lt;sentence fingerprint="3k9f2a7x1c0q" entities="e1:0,2 e2:5,6"/&gt;
+ * &lt;/nercFingerprints&gt;
+ * </pre>
+ *
+ * the fingerprint of the tokens of the sentence and the ids of the entities
+ * found in it, with their token span in the sentence. When the document is
+ * annotated again, a sentence whose fingerprint is in the record and whose
+ * entities are still in the entities layer, over the same tokens, keeps them
+ * as they are instead of being tagged; the entities of the other recorded
+ * sentences are removed. The sentences are matched by fingerprint rather
+ * than by position, as inserting or removing a sentence moves the sentences
+ * after it, and the entities not listed in the record, such as those of
+ * other tools, are never touched.
+ * <p>
+ * The fingerprints are seeded with the annotation options, the size and
+ * modification time of the model file and the digest of the dictionary
+ * entries, so a record written with another model, dictionary or lexer does
+ * not match any sentence.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class SentenceFingerprints {
+
+  /**
+   * The name of the layer holding the record.
+   */
+  static final String LAYER_NAME = "nercFingerprints";
+  private static final String SENTENCE = "sentence";
+  private static final String FINGERPRINT = "fingerprint";
+  private static final String ENTITIES = "entities";
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  /**
+   * The annotation container of the documents, its annotations by layer, by
+   * type and by referenced annotation and its method removing an annotation,
+   * which kaflib does not expose, null if they cannot be found. They are
+   * those of the kaflib version the pom pins, which IncrementalAnnotationTest
+   * checks.
+   */
+  private static final Field ANNOTATION_CONTAINER = getField(
+      KAFDocument.class, "annotationContainer");
+  private static final Field LAYERS = getContainerField("layers");
+  private static final Field ANNOTATIONS = getContainerField("annotations");
+  private static final Field INVERSE_REFERENCES = getContainerField(
+      "invRefIndex");
+  private static final Method REMOVE_ANNOTATION = getRemoveAnnotation();
+
+  private final long seed;
+
+  /**
+   * Create the fingerprints of an annotation configuration.
+   *
+   * @param options
+   *          the options the spans depend on
+   */
+  SentenceFingerprints(final String... options) {
+    long hash = FNV_OFFSET;
+    for (final String option : options) {
+      hash = update(hash, option == null ? "" : option);
+    }
+    this.seed = hash;
+  }
+
+  /**
+   * Get the fingerprint of the tokens of a sentence.
+   *
+   * @param tokens
+   *          the tokens
+   * @return the 64 bit FNV-1a hash of the tokens
+   */
+  long fingerprint(final String[] tokens) {
+    long hash = this.seed;
+    for (final String token : tokens) {
+      hash = update(hash, token);
+    }
+    return hash;
+  }
+
+  private static long update(long hash, final String text) {
+    for (final byte b : text.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+    // a separator byte, so that the token boundaries count
+    return (hash ^ 0xff) * FNV_PRIME;
+  }
+
+  /**
+   * A sentence of the record.
+   */
+  static final class Sentence {
+
+    private final long fingerprint;
+    private final String[] entityIds;
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * Create a sentence of the record.
+     *
+     * @param fingerprint
+     *          the fingerprint of the tokens
+     * @param entityIds
+     *          the ids of the entities of the sentence
+     * @param starts
+     *          the first token of every entity
+     * @param ends
+     *          the token after the last one of every entity
+     */
+    Sentence(final long fingerprint, final String[] entityIds,
+        final int[] starts, final int[] ends) {
+      this.fingerprint = fingerprint;
+      this.entityIds = entityIds;
+      this.starts = starts;
+      this.ends = ends;
+    }
+
+    long getFingerprint() {
+      return this.fingerprint;
+    }
+
+    int getEntityCount() {
+      return this.entityIds.length;
+    }
+
+    String getEntityId(final int entity) {
+      return this.entityIds[entity];
+    }
+
+    int getStart(final int entity) {
+      return this.starts[entity];
+    }
+
+    int getEnd(final int entity) {
+      return this.ends[entity];
+    }
+  }
+
+  /**
+   * Read the record of a document and remove it from the document.
+   *
+   * @param kaf
+   *          the document
+   * @return the recorded sentences, empty if there is no record
+   */
+  static List<Sentence> read(final KAFDocument kaf) {
+    final List<Sentence> sentences = new ArrayList<>();
+    final Iterator<Element> layers = kaf.getUnknownLayers().iterator();
+    while (layers.hasNext()) {
+      final Element layer = layers.next();
+      if (!LAYER_NAME.equals(layer.getName())) {
+        continue;
+      }
+      layers.remove();
+      for (final Element sentence : layer.getChildren(SENTENCE)) {
+        parseSentence(sentence, sentences);
+      }
+    }
+    return sentences;
+  }
+
+  /**
+   * Parse a sentence of the record, ignoring it if it is malformed.
+   */
+  private static void parseSentence(final Element sentence,
+      final List<Sentence> sentences) {
+    final String entities = sentence.getAttributeValue(ENTITIES, "").trim();
+    final String[] items = entities.isEmpty() ? new String[0]
+        : entities.split(" +");
+    final String[] entityIds = new String[items.length];
+    final int[] starts = new int[items.length];
+    final int[] ends = new int[items.length];
+    try {
+      final long fingerprint = Long.parseUnsignedLong(
+          sentence.getAttributeValue(FINGERPRINT), 36);
+      for (int i = 0; i < items.length; i++) {
+        final int colon = items[i].lastIndexOf(':');
+        final int comma = items[i].indexOf(',', colon);
+        entityIds[i] = items[i].substring(0, colon);
+        starts[i] = Integer.parseInt(items[i].substring(colon + 1, comma));
+        ends[i] = Integer.parseInt(items[i].substring(comma + 1));
+      }
+      sentences.add(new Sentence(fingerprint, entityIds, starts, ends));
+    } catch (final NumberFormatException | StringIndexOutOfBoundsException e) {
+      // the sentence is tagged again
+    }
+  }
+
+  /**
+   * Write the record of the sentences of a document.
+   *
+   * @param kaf
+   *          the document
+   * @param sentences
+   *          the record of every sentence
+   */
+  static void write(final KAFDocument kaf, final Sentence[] sentences) {
+    final Element layer = new Element(LAYER_NAME);
+    final StringBuilder entities = new StringBuilder();
+    for (final Sentence sentence : sentences) {
+      final Element element = new Element(SENTENCE);
+      element.setAttribute(FINGERPRINT,
+          Long.toUnsignedString(sentence.fingerprint, 36));
+      if (sentence.entityIds.length > 0) {
+        entities.setLength(0);
+        for (int i = 0; i < sentence.entityIds.length; i++) {
+          if (i > 0) {
+            entities.append(' ');
+          }
+          entities.append(sentence.entityIds[i]).append(':')
+              .append(sentence.starts[i]).append(',')
+              .append(sentence.ends[i]);
+        }
+        element.setAttribute(ENTITIES, entities.toString());
+      }
+      layer.addContent(element);
+    }
+    kaf.getUnknownLayers().add(layer);
+  }
+
+  /**
+   * Check whether the entities of the changed sentences can be removed from
+   * the documents, which incremental mode requires.
+   *
+   * @return true if they can
+   */
+  static boolean canRemoveEntities() {
+    return ANNOTATION_CONTAINER != null && LAYERS != null
+        && ANNOTATIONS != null && INVERSE_REFERENCES != null
+        && REMOVE_ANNOTATION != null;
+  }
+
+  /**
+   * Remove an entity from a document, see {@link #canRemoveEntities()}. The
+   * remove method of kaflib takes the entity out of the sentence and
+   * paragraph indexes only, as it looks the entity up as a key of the map of
+   * the annotation lists, so it is removed from those lists and from the
+   * entities referencing its terms here.
+   *
+   * @param kaf
+   *          the document
+   * @param entity
+   *          the entity
+   */
+  static void removeEntity(final KAFDocument kaf, final Entity entity) {
+    try {
+      final Object container = ANNOTATION_CONTAINER.get(kaf);
+      REMOVE_ANNOTATION.invoke(container, entity, KAFDocument.Layer.ENTITIES,
+          KAFDocument.AnnotationType.ENTITY);
+      removeFromGroups(entity, ((Map<?, ?>) LAYERS.get(container))
+          .get(KAFDocument.Layer.ENTITIES));
+      removeFromGroups(entity, ((Map<?, ?>) ANNOTATIONS.get(container))
+          .get(KAFDocument.AnnotationType.ENTITY));
+      final Map<?, ?> inverseReferences = (Map<?, ?>) INVERSE_REFERENCES
+          .get(container);
+      for (final Term term : entity.getTerms()) {
+        final Map<?, ?> referencing = (Map<?, ?>) inverseReferences.get(term);
+        if (referencing != null) {
+          final List<?> entities = (List<?>) referencing
+              .get(KAFDocument.AnnotationType.ENTITY);
+          if (entities != null) {
+            entities.remove(entity);
+          }
+        }
+      }
+    } catch (final IllegalAccessException | InvocationTargetException
+        | ClassCastException e) {
+      throw new IllegalStateException("Cannot remove the entity "
+          + entity.getId(), e);
+    }
+  }
+
+  /**
+   * Remove an annotation from the lists of a map of annotations by group.
+   */
+  private static void removeFromGroups(final Annotation annotation,
+      final Object groups) {
+    if (groups != null) {
+      for (final Object annotations : ((Map<?, ?>) groups).values()) {
+        ((List<?>) annotations).remove(annotation);
+      }
+    }
+  }
+
+  private static Field getContainerField(final String name) {
+    if (ANNOTATION_CONTAINER == null) {
+      return null;
+    }
+    final Field field = getField(ANNOTATION_CONTAINER.getType(), name);
+    return field == null || !Map.class.isAssignableFrom(field.getType())
+        ? null : field;
+  }
+
+  private static Field getField(final Class<?> type, final String name) {
+    try {
+      final Field field = type.getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (final NoSuchFieldException | SecurityException e) {
+      return null;
+    }
+  }
+
+  private static Method getRemoveAnnotation() {
+    if (ANNOTATION_CONTAINER == null) {
+      return null;
+    }
+    try {
+      final Method method = ANNOTATION_CONTAINER.getType().getDeclaredMethod(
+          "remove", Annotation.class, KAFDocument.Layer.class,
+          KAFDocument.AnnotationType.class);
+      method.setAccessible(true);
+      return method;
+    } catch (final NoSuchMethodException | SecurityException e) {
+      return null;
+    }
+  }
+
+}
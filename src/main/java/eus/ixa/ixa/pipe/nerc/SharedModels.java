@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import eus.ixa.ixa.pipe.ml.StatisticalSequenceLabeler;
+
+/**
+ * The statistical models and dictionaries shared by the annotators of the
+ * JVM, keyed by their paths and counted by annotator, so that they are freed
+ * together with the last annotator using them.
+ * <p>
+ * ixa-pipe-ml keeps every model it loads in a static cache, with no method to
+ * remove one. The entries added to that cache while the labelers of a model
+ * are created here are recorded as they are, rather than rebuilt from the
+ * model path, and removed once the model has no annotators left; the labelers
+ * still tagging keep their model until they are dropped. If the cache cannot
+ * be found the models stay loaded for the life of the JVM, as they did
+ * before.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+final class SharedModels {
+
+  /**
+   * The model cache of ixa-pipe-ml, null if it cannot be found.
+   */
+  private static final Map<?, ?> LABELER_CACHE = getLabelerCache();
+  /**
+   * The models in use, keyed by model path.
+   */
+  private static final Map<String, SharedModel> models = new HashMap<>();
+  /**
+   * The dictionaries in use, keyed by dictionary path.
+   */
+  private static final Map<String, SharedDictionary> dictionaries = new HashMap<>();
+
+  private SharedModels() {
+  }
+
+  /**
+   * Count one more annotator using a model.
+   *
+   * @param model
+   *          the model path
+   */
+  static synchronized void acquireModel(final String model) {
+    SharedModel shared = models.get(model);
+    if (shared == null) {
+      shared = new SharedModel();
+      models.put(model, shared);
+    }
+    shared.users++;
+  }
+
+  /**
+   * Create a labeler, loading its model if no other labeler did. The labelers
+   * are created one at a time, so that the cache entries added belong to the
+   * model of the labeler.
+   *
+   * @param properties
+   *          the labeler properties, with the model path in the model
+   *          property
+   * @return the labeler
+   */
+  static synchronized StatisticalSequenceLabeler newLabeler(
+      final Properties properties) {
+    if (LABELER_CACHE == null) {
+      return new StatisticalSequenceLabeler(properties);
+    }
+    final Set<Object> cached = new HashSet<Object>(LABELER_CACHE.keySet());
+    final StatisticalSequenceLabeler labeler = new StatisticalSequenceLabeler(
+        properties);
+    final SharedModel shared = models.get(properties.getProperty("model"));
+    for (final Object key : new ArrayList<Object>(LABELER_CACHE.keySet())) {
+      if (!cached.contains(key)) {
+        if (shared == null) {
+          // created for a call still running on a closed annotator
+          LABELER_CACHE.remove(key);
+        } else {
+          shared.cacheKeys.add(key);
+        }
+      }
+    }
+    return labeler;
+  }
+
+  /**
+   * Count one annotator less using a model, removing the model from the
+   * ixa-pipe-ml cache if it was the last one.
+   *
+   * @param model
+   *          the model path
+   */
+  static synchronized void releaseModel(final String model) {
+    final SharedModel shared = models.get(model);
+    if (shared != null && --shared.users == 0) {
+      models.remove(model);
+      for (final Object key : shared.cacheKeys) {
+        LABELER_CACHE.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Count one more annotator using the dictionaries of a path, loading them
+   * if no annotator uses them or if their files changed since they were
+   * loaded. A snapshot written by the compile-dict command is read instead of
+   * the gazetteers when present.
+   *
+   * @param dictPath
+   *          the directory containing the dictionaries or a snapshot
+   * @return the dictionaries
+   * @throws IOException
+   *           if the dictionaries cannot be read
+   */
+  static synchronized DictionaryTrie acquireDictionary(final String dictPath)
+      throws IOException {
+    final long lastModified = DictionaryTrie.getLastModified(dictPath);
+    SharedDictionary shared = dictionaries.get(dictPath);
+    if (shared == null) {
+      shared = new SharedDictionary();
+      dictionaries.put(dictPath, shared);
+    }
+    if (shared.dictionary == null || shared.lastModified != lastModified) {
+      try {
+        shared.dictionary = DictionaryTrie.load(dictPath);
+      } catch (final IOException e) {
+        if (shared.users == 0) {
+          dictionaries.remove(dictPath);
+        }
+        throw e;
+      }
+      shared.lastModified = lastModified;
+    }
+    shared.users++;
+    return shared.dictionary;
+  }
+
+  /**
+   * Count one annotator less using the dictionaries of a path, dropping them
+   * if it was the last one.
+   *
+   * @param dictPath
+   *          the dictionary path
+   */
+  static synchronized void releaseDictionary(final String dictPath) {
+    final SharedDictionary shared = dictionaries.get(dictPath);
+    if (shared != null && --shared.users == 0) {
+      dictionaries.remove(dictPath);
+    }
+  }
+
+  private static Map<?, ?> getLabelerCache() {
+    for (final Field field : StatisticalSequenceLabeler.class
+        .getDeclaredFields()) {
+      if (Modifier.isStatic(field.getModifiers())
+          && Map.class.isAssignableFrom(field.getType())) {
+        try {
+          field.setAccessible(true);
+          return (Map<?, ?>) field.get(null);
+        } catch (IllegalAccessException | SecurityException e) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A model with the number of annotators using it and the ixa-pipe-ml cache
+   * entries added when it was loaded.
+   */
+  private static final class SharedModel {
+
+    private int users;
+    private final List<Object> cacheKeys = new ArrayList<>();
+  }
+
+  /**
+   * The dictionaries of a path with the number of annotators using them and
+   * the modification time of their files when they were loaded.
+   */
+  private static final class SharedDictionary {
+
+    private int users;
+    private DictionaryTrie dictionary;
+    private long lastModified;
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import eus.ixa.ixa.pipe.ml.StatisticalSequenceLabeler;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * The mutable state needed to tag the sentences of one document: the
+ * sequence labeler with its adaptive features and beam search buffers, the
+ * numeric lexer and the buffers reused from sentence to sentence, so that the
+ * tagging loop does not allocate them for every sentence. The model itself is
+ * loaded once and shared by all the contexts. A context is used by one thread
+ * at a time; {@link Annotate} keeps a pool of them and hands them out with
+ * {@link Annotate#getTaggingContext()}.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public final class TaggingContext {
+
+  /**
+   * The longest sentence whose buffers are kept. The buffers of longer
+   * sentences, such as the rows of a table, are allocated for the sentence
+   * only, so that one of them does not keep arrays of every length up to its
+   * own in every context of the pool.
+   */
+  static final int MAX_BUFFERED_LENGTH = 256;
+
+  /**
+   * The sequence labeler, null if no statistical model is used.
+   */
+  private final StatisticalSequenceLabeler nerTagger;
+  /**
+   * The numeric lexer.
+   */
+  private final ReusableNumericTagger numericNerTaggerLexer =
+      new ReusableNumericTagger();
+  /**
+   * The token arrays by length, as the labelers take arrays of the exact
+   * length of the sentence, up to {@link #MAX_BUFFERED_LENGTH}.
+   */
+  private String[][] tokens = new String[0][];
+  /**
+   * The span arrays by length, up to {@link #MAX_BUFFERED_LENGTH}.
+   */
+  private Span[][] spanArrays = new Span[0][];
+  /**
+   * The WF ids of a sentence, sized to the longest sentence seen so far up
+   * to {@link #MAX_BUFFERED_LENGTH}.
+   */
+  private String[] tokenIds = new String[0];
+  /**
+   * The dictionary ids of the tokens of a sentence, sized to the longest
+   * sentence seen so far up to {@link #MAX_BUFFERED_LENGTH}.
+   */
+  private int[] tokenIndexes = new int[0];
+  /**
+   * The spans of a sentence collected from the taggers.
+   */
+  private final List<Span> spans = new ArrayList<>();
+
+  TaggingContext(final StatisticalSequenceLabeler nerTagger) {
+    this.nerTagger = nerTagger;
+  }
+
+  StatisticalSequenceLabeler getNerTagger() {
+    return this.nerTagger;
+  }
+
+  ReusableNumericTagger getNumericNerTaggerLexer() {
+    return this.numericNerTaggerLexer;
+  }
+
+  /**
+   * Get the token array of the given length, the same for every call with
+   * that length unless it is longer than {@link #MAX_BUFFERED_LENGTH}.
+   *
+   * @param length
+   *          the number of tokens of the sentence
+   * @return the array
+   */
+  String[] getTokens(final int length) {
+    if (length > MAX_BUFFERED_LENGTH) {
+      return new String[length];
+    }
+    if (length >= this.tokens.length) {
+      this.tokens = Arrays.copyOf(this.tokens, length + 1);
+    }
+    if (this.tokens[length] == null) {
+      this.tokens[length] = new String[length];
+    }
+    return this.tokens[length];
+  }
+
+  /**
+   * Get the span array of the given length, the same for every call with that
+   * length unless it is longer than {@link #MAX_BUFFERED_LENGTH}.
+   *
+   * @param length
+   *          the number of spans
+   * @return the array
+   */
+  Span[] getSpanArray(final int length) {
+    if (length > MAX_BUFFERED_LENGTH) {
+      return new Span[length];
+    }
+    if (length >= this.spanArrays.length) {
+      this.spanArrays = Arrays.copyOf(this.spanArrays, length + 1);
+    }
+    if (this.spanArrays[length] == null) {
+      this.spanArrays[length] = new Span[length];
+    }
+    return this.spanArrays[length];
+  }
+
+  /**
+   * Get the WF id array, with room for at least the given number of tokens.
+   *
+   * @param length
+   *          the number of tokens of the sentence
+   * @return the array
+   */
+  String[] getTokenIds(final int length) {
+    if (length > MAX_BUFFERED_LENGTH) {
+      return new String[length];
+    }
+    if (length > this.tokenIds.length) {
+      this.tokenIds = new String[length];
+    }
+    return this.tokenIds;
+  }
+
+  /**
+   * Get the dictionary id array, with room for at least the given number of
+   * tokens.
+   *
+   * @param length
+   *          the number of tokens of the sentence
+   * @return the array
+   */
+  int[] getTokenIndexes(final int length) {
+    if (length > MAX_BUFFERED_LENGTH) {
+      return new int[length];
+    }
+    if (length > this.tokenIndexes.length) {
+      this.tokenIndexes = new int[length];
+    }
+    return this.tokenIndexes;
+  }
+
+  /**
+   * Get the span list, emptied.
+   *
+   * @return the list
+   */
+  List<Span> getSpans() {
+    this.spans.clear();
+    return this.spans;
+  }
+
+  /**
+   * Drop the references to the tokens and spans of the last document from the
+   * buffers, keeping the buffers themselves.
+   */
+  void clearBuffers() {
+    for (final String[] array : this.tokens) {
+      if (array != null) {
+        Arrays.fill(array, null);
+      }
+    }
+    for (final Span[] array : this.spanArrays) {
+      if (array != null) {
+        Arrays.fill(array, null);
+      }
+    }
+    Arrays.fill(this.tokenIds, null);
+    this.spans.clear();
+  }
+
+  /**
+   * Clear the adaptive features collected from the previous sentences.
+   */
+  public void clearAdaptiveData() {
+    if (this.nerTagger != null) {
+      this.nerTagger.clearAdaptiveData();
+    }
+  }
+
+}
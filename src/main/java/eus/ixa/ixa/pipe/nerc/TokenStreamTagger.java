@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2026 agent
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelSample;
+import eus.ixa.ixa.pipe.ml.utils.Span;
+
+/**
+ * Streaming Named Entity tagging of already tokenized text, which is fed to
+ * the same tagging as NAF documents without building a NAF document. Two
+ * input formats are read:
+ * <ul>
+ * <li>tokens: one sentence per line, with the tokens separated by
+ * whitespace.</li>
+ * <li>conll: one token per line, with the token in the first of its
+ * whitespace separated columns and an empty line after every sentence.</li>
+ * </ul>
+ * Every sentence is tagged and written as soon as it has been read, so memory
+ * is bounded by the sentence size. The output formats are CoNLL 2002 and CoNLL
+ * 2003, where every token line holds the input columns followed by the tag,
+ * OpenNLP and the compact JSON entities.
+ *
+ * @author agent
+ * @version 2.0.0
+ */
+public class TokenStreamTagger {
+
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+
+  /**
+   * The tokenized text.
+   */
+  private final BufferedReader reader;
+  /**
+   * Whether the input is in the conll format rather than tokens.
+   */
+  private final boolean isCoNLL;
+
+  /**
+   * Start reading tokenized text.
+   *
+   * @param reader
+   *          the tokenized text
+   * @param inputFormat
+   *          tokens or conll
+   */
+  public TokenStreamTagger(final BufferedReader reader,
+      final String inputFormat) {
+    if (!isTokenizedFormat(inputFormat)) {
+      throw new IllegalArgumentException(
+          "Input format " + inputFormat + " is not tokenized text");
+    }
+    this.reader = reader;
+    this.isCoNLL = inputFormat.equalsIgnoreCase("conll");
+  }
+
+  /**
+   * Check whether an input format is tokenized text read by this tagger.
+   *
+   * @param inputFormat
+   *          the input format
+   * @return true for the tokens and conll formats
+   */
+  public static boolean isTokenizedFormat(final String inputFormat) {
+    return inputFormat != null && (inputFormat.equalsIgnoreCase("tokens")
+        || inputFormat.equalsIgnoreCase("conll"));
+  }
+
+  /**
+   * Check whether tokenized text can be output in a format.
+   *
+   * @param outputFormat
+   *          the output format
+   * @return true for the CoNLL 2002, CoNLL 2003, OpenNLP and JSON formats
+   */
+  public static boolean isOutputFormat(final String outputFormat) {
+    return outputFormat.equalsIgnoreCase("conll02")
+        || outputFormat.equalsIgnoreCase("conll03")
+        || NAFStreamTagger.isStreamingFormat(outputFormat);
+  }
+
+  /**
+   * Tag the Named Entities of the text and write them in the output format.
+   *
+   * @param annotator
+   *          the annotator
+   * @param outputFormat
+   *          conll02, conll03, opennlp or json
+   * @param writer
+   *          the writer for the annotated sentences
+   * @throws IOException
+   *           if io error
+   */
+  public final void annotate(final Annotate annotator,
+      final String outputFormat, final Writer writer) throws IOException {
+    if (!isOutputFormat(outputFormat)) {
+      throw new IllegalArgumentException("Tokenized input cannot be output as "
+          + outputFormat);
+    }
+    final boolean isOpenNLP = outputFormat.equalsIgnoreCase("opennlp");
+    final boolean isJSON = outputFormat.equalsIgnoreCase("json");
+    final boolean isClearAdaptiveData = annotator.getClearFeatures()
+        .equalsIgnoreCase("yes");
+    final CoNLLFormatter formatter = new CoNLLFormatter(writer,
+        outputFormat.equalsIgnoreCase("conll03"));
+    final List<String> lines = new ArrayList<>();
+    final TaggingContext context = annotator.getTaggingContext();
+    try {
+      if (isJSON) {
+        writer.write("{\"entities\":[");
+      }
+      boolean first = true;
+      int sentNumber = 0;
+      String[] tokens;
+      while ((tokens = readSentence(lines)) != null) {
+        final Span[] allSpans = annotator.nercToSpans(context, tokens);
+        if (isOpenNLP) {
+          if (sentNumber > 0) {
+            writer.write('\n');
+          }
+          writer.write(new SequenceLabelSample(tokens, allSpans,
+              isClearAdaptiveData).toString());
+        } else if (isJSON) {
+          for (final Span span : allSpans) {
+            if (!first) {
+              writer.write(',');
+            }
+            first = false;
+            Json.writeEntity(writer, sentNumber, span, tokens);
+          }
+        } else {
+          writeCoNLL(annotator, formatter, lines, tokens, allSpans);
+        }
+        sentNumber++;
+      }
+      if (isJSON) {
+        writer.write("]}");
+      }
+    } finally {
+      annotator.releaseTaggingContext(context);
+    }
+  }
+
+  /**
+   * Read the next sentence, skipping empty ones.
+   *
+   * @param lines
+   *          filled with the token lines of a conll sentence
+   * @return the tokens or null at the end of the input
+   * @throws IOException
+   *           if io error
+   */
+  private String[] readSentence(final List<String> lines) throws IOException {
+    lines.clear();
+    String line;
+    if (!this.isCoNLL) {
+      while ((line = this.reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty()) {
+          return SPACES.split(line);
+        }
+      }
+      return null;
+    }
+    while ((line = this.reader.readLine()) != null) {
+      line = line.trim();
+      if (!line.isEmpty()) {
+        lines.add(line);
+      } else if (!lines.isEmpty()) {
+        break;
+      }
+    }
+    if (lines.isEmpty()) {
+      return null;
+    }
+    final String[] tokens = new String[lines.size()];
+    for (int i = 0; i < tokens.length; i++) {
+      final String columns = lines.get(i);
+      final int end = indexOfSpace(columns);
+      tokens[i] = end == -1 ? columns : columns.substring(0, end);
+    }
+    return tokens;
+  }
+
+  private static int indexOfSpace(final String line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (Character.isWhitespace(line.charAt(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void writeCoNLL(final Annotate annotator,
+      final CoNLLFormatter formatter, final List<String> lines,
+      final String[] tokens, final Span[] allSpans) throws IOException {
+    final String[] neTypes = new String[tokens.length];
+    final boolean[] neBegins = new boolean[tokens.length];
+    for (final Span span : allSpans) {
+      final String neType = annotator.convertToConLLTypes(span.getType());
+      neBegins[span.getStart()] = true;
+      for (int i = span.getStart(); i < span.getEnd(); i++) {
+        neTypes[i] = neType;
+      }
+    }
+    for (int i = 0; i < tokens.length; i++) {
+      formatter.token(this.isCoNLL ? lines.get(i) : tokens[i], neTypes[i],
+          neBegins[i]);
+    }
+    formatter.endSentence();
+  }
+
+}
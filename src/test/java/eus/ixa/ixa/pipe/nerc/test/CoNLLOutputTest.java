@@ -0,0 +1,85 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+
+public class CoNLLOutputTest {
+
+  private static final String[][] SENTENCES = {
+      { "Achilles", "Abraham", "Lincoln", "met", "Aristotle", "." },
+      { "Ayn", "Rand", "wrote", "." } };
+
+  private static Annotate annotator;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    annotator = Fixtures.dictionaryAnnotator();
+  }
+
+  @Test
+  public void conll02() throws IOException {
+    KAFDocument kaf = getDocument();
+    annotator.annotateNEsToKAF(kaf);
+    assertEquals("Achilles\tachilles\tNNP\tB-per\n"
+        + "Abraham\tabraham\tNNP\tB-per\n"
+        + "Lincoln\tlincoln\tNNP\tI-per\n"
+        + "met\tmet\tNNP\tO\n"
+        + "Aristotle\taristotle\tNNP\tB-per\n"
+        + ".\t.\tNNP\tO\n"
+        + "\n"
+        + "Ayn\tayn\tNNP\tB-per\n"
+        + "Rand\trand\tNNP\tI-per\n"
+        + "wrote\twrote\tNNP\tO\n"
+        + ".\t.\tNNP\tO\n"
+        + "\n", annotator.annotateNEsToCoNLL2002(kaf));
+  }
+
+  @Test
+  public void conll03() throws IOException {
+    KAFDocument kaf = getDocument();
+    annotator.annotateNEsToKAF(kaf);
+    // B- only for an entity following another of the same class
+    String expected = "Achilles\tachilles\tNNP\tI-per\n"
+        + "Abraham\tabraham\tNNP\tB-per\n"
+        + "Lincoln\tlincoln\tNNP\tI-per\n"
+        + "met\tmet\tNNP\tO\n"
+        + "Aristotle\taristotle\tNNP\tI-per\n"
+        + ".\t.\tNNP\tO\n"
+        + "\n"
+        + "Ayn\tayn\tNNP\tI-per\n"
+        + "Rand\trand\tNNP\tI-per\n"
+        + "wrote\twrote\tNNP\tO\n"
+        + ".\t.\tNNP\tO\n"
+        + "\n";
+    assertEquals(expected, annotator.annotateNEsToCoNLL2003(kaf));
+    StringWriter writer = new StringWriter();
+    annotator.annotateNEsToCoNLL2003(kaf, writer);
+    assertEquals(expected, writer.toString());
+  }
+
+  @Test
+  public void noTerms() throws IOException {
+    KAFDocument kaf = new KAFDocument("en", "v1.naf");
+    annotator.annotateNEsToKAF(kaf);
+    assertEquals("", annotator.annotateNEsToCoNLL2002(kaf));
+  }
+
+  private static KAFDocument getDocument() {
+    KAFDocument kaf = Fixtures.naf(SENTENCES);
+    for (Term term : kaf.getTerms()) {
+      term.setLemma(term.getStr().toLowerCase());
+      term.setMorphofeat("NNP");
+    }
+    return kaf;
+  }
+
+}
@@ -4,35 +4,46 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import eus.ixa.ixa.pipe.ml.nerc.DictionariesNERTagger;
 import eus.ixa.ixa.pipe.ml.resources.Dictionaries;
+import eus.ixa.ixa.pipe.ml.sequence.SequenceLabelerME;
 import eus.ixa.ixa.pipe.ml.utils.Span;
+import eus.ixa.ixa.pipe.nerc.DictionaryTrie;
 
 public class DictionariesNameFinderTest {
 
   private static DictionariesNERTagger finder = null;
+  private static DictionaryTrie trie = null;
+  private static File dictsDir = null;
 
   @BeforeClass
   public static void setUpClass() throws IOException {
     // copy to a temporary dir so that it can be loaded
-    File dictsDir = Files.createTempDirectory("dicts").toFile();
+    dictsDir = Files.createTempDirectory("dicts").toFile();
     Files.copy(
         DictionariesNameFinderTest.class.getResourceAsStream("/names.txt"),
         new File(dictsDir, "names.txt").toPath());
     // now load it into a Dictionaries instance
     finder = new DictionariesNERTagger(
         new Dictionaries(dictsDir.getAbsolutePath()));
+    trie = DictionaryTrie.compile(dictsDir.getAbsolutePath());
   }
 
   @Test
   public void oneOccurrence() throws IOException {
     Span[] spans = finder.nercToSpansExact(new String[] { "Achilles" });
     assertEquals(1, spans.length);
+    assertEquals(1, trie.nercToSpansExact(new String[] { "Achilles" }).length);
   }
 
   @Test
@@ -40,6 +51,92 @@ public class DictionariesNameFinderTest {
     Span[] spans = finder.nercToSpansExact(
         new String[] { "Achilles", "Apollo", "Zeus", "Achilles" });
     assertEquals(2, spans.length);
+    assertEquals(2, trie.nercToSpansExact(
+        new String[] { "Achilles", "Apollo", "Zeus", "Achilles" }).length);
+  }
+
+  @Test
+  public void multiTokenEntry() throws IOException {
+    Span[] spans = trie.nercToSpansExact(
+        new String[] { "Abraham", "Lincoln", "met", "Abraham", "Ang", "Lee" });
+    assertEquals(2, spans.length);
+    assertEquals(new Span(0, 2, "person").toString(), spans[0].toString());
+    assertEquals(new Span(4, 6, "person").toString(), spans[1].toString());
+  }
+
+  @Test
+  public void sameEntriesAsDictionaries() throws IOException {
+    // irregular whitespace, entries repeated within and across gazetteers
+    // and overlapping entries of different gazetteers
+    File dir = Files.createTempDirectory("dicts").toFile();
+    Files.write(new File(dir, "a.txt").toPath(), Arrays.asList(
+        "Abraham Lincoln\tPER", "Ang Lee \tPER", " Zeus\tPER",
+        "Apollo  Zeus\tPER", "Achilles\tPER", "Achilles\tHERO",
+        "Aldous\tPER\t", "film\tMISC\tMISC", "Huxley", "\tPER",
+        "Lincoln film\tMISC"), StandardCharsets.UTF_8);
+    Files.write(new File(dir, "b.txt").toPath(), Arrays.asList(
+        "Achilles\tLOC", "Abraham Lincoln\tORG", "Lincoln\tLOC",
+        "film by\tMISC", "Ang Lee\tORG", "Zeus\tLOC", "Zeus Achilles\tORG",
+        "the\tMISC"), StandardCharsets.UTF_8);
+    DictionariesNERTagger dictionaries = new DictionariesNERTagger(
+        new Dictionaries(dir.getAbsolutePath()));
+    DictionaryTrie compiled = DictionaryTrie.compile(dir.getAbsolutePath());
+    for (String[] sentence : getSentences(2000)) {
+      assertEquals(
+          Arrays.toString(SequenceLabelerME.dropOverlappingSpans(
+              dictionaries.nercToSpansExact(sentence))),
+          Arrays.toString(compiled.nercToSpansExact(sentence)));
+    }
+  }
+
+  @Test
+  public void snapshot() throws IOException {
+    File snapshot = new File(dictsDir, DictionaryTrie.SNAPSHOT_NAME);
+    trie.write(snapshot.toPath());
+    try {
+      DictionaryTrie loaded = DictionaryTrie
+          .load(dictsDir.getAbsolutePath());
+      assertEquals(trie.getNodeCount(), loaded.getNodeCount());
+      assertEquals(trie.getTypes(), loaded.getTypes());
+      for (String[] sentence : getSentences(1000)) {
+        assertEquals(Arrays.toString(trie.nercToSpansExact(sentence)),
+            Arrays.toString(loaded.nercToSpansExact(sentence)));
+      }
+    } finally {
+      snapshot.delete();
+    }
+  }
+
+  @Test
+  public void sameSpansAsDictionariesNERTagger() throws IOException {
+    for (String[] sentence : getSentences(2000)) {
+      assertEquals(
+          Arrays.toString(SequenceLabelerME
+              .dropOverlappingSpans(finder.nercToSpansExact(sentence))),
+          Arrays.toString(trie.nercToSpansExact(sentence)));
+    }
+  }
+
+  /**
+   * Random sentences mixing dictionary entries, parts of entries and other
+   * tokens.
+   */
+  private static List<String[]> getSentences(int count) {
+    String[] words = { "Achilles", "Abraham Lincoln", "Ang Lee",
+        "Andrei Tarkovsky", "Aldous", "Huxley", "Lincoln", "Abraham", "the",
+        "film", "by", "of", "and", "wrote", "met", "Apollo", "Zeus", "." };
+    Random random = new Random(42);
+    List<String[]> sentences = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      List<String> tokens = new ArrayList<>();
+      int length = 5 + random.nextInt(30);
+      while (tokens.size() < length) {
+        tokens.addAll(Arrays.asList(words[random.nextInt(words.length)]
+            .split(" ")));
+      }
+      sentences.add(tokens.toArray(new String[tokens.size()]));
+    }
+    return sentences;
   }
 
 }
@@ -0,0 +1,111 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.NERTaggerServer;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.WF;
+
+/**
+ * The annotators, documents and servers shared by the tests. The annotators
+ * tag English with a copy of the names.txt gazetteer only, so that no model is
+ * needed; the tests set the properties they vary as key and value pairs.
+ */
+final class Fixtures {
+
+  private Fixtures() {
+  }
+
+  /**
+   * Copy the test gazetteer to a new dictionaries directory, which the
+   * caller may change.
+   */
+  static File dictionaryDir() throws IOException {
+    File dictsDir = Files.createTempDirectory("dicts").toFile();
+    Files.copy(Fixtures.class.getResourceAsStream("/names.txt"),
+        new File(dictsDir, "names.txt").toPath());
+    return dictsDir;
+  }
+
+  /**
+   * The dictionary only properties with a new copy of the gazetteer and the
+   * given keys and values on top.
+   */
+  static Properties dictionaryProperties(String... overrides)
+      throws IOException {
+    return dictionaryProperties(dictionaryDir(), overrides);
+  }
+
+  /**
+   * The dictionary only properties with the gazetteers of a directory and
+   * the given keys and values on top.
+   */
+  static Properties dictionaryProperties(File dictsDir, String... overrides) {
+    if (overrides.length % 2 != 0) {
+      throw new IllegalArgumentException("A key without value");
+    }
+    Properties properties = new Properties();
+    properties.setProperty("language", "en");
+    properties.setProperty("model", "en-dictionaries.bin");
+    properties.setProperty("dictTag", "tag");
+    properties.setProperty("dictPath", dictsDir.getAbsolutePath());
+    properties.setProperty("ruleBasedOption", "off");
+    properties.setProperty("clearFeatures", "no");
+    for (int i = 0; i < overrides.length; i += 2) {
+      properties.setProperty(overrides[i], overrides[i + 1]);
+    }
+    return properties;
+  }
+
+  static Annotate dictionaryAnnotator(String... overrides)
+      throws IOException {
+    return new Annotate(dictionaryProperties(overrides));
+  }
+
+  /**
+   * A document with one term per token of the sentences.
+   */
+  static KAFDocument naf(String[][] sentences) {
+    KAFDocument kaf = new KAFDocument("en", "v1.naf");
+    int offset = 0;
+    for (int s = 0; s < sentences.length; s++) {
+      for (String token : sentences[s]) {
+        WF wf = kaf.newWF(offset, token, s + 1);
+        offset += token.length() + 1;
+        List<WF> wfs = new ArrayList<>();
+        wfs.add(wf);
+        kaf.newTerm(KAFDocument.newWFSpan(wfs));
+      }
+    }
+    return kaf;
+  }
+
+  static int getFreePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * Start a server, which serves until the JVM exits. The caller waits for it
+   * to listen.
+   */
+  static void startServer(final Properties properties) {
+    Thread server = new Thread() {
+      @Override
+      public void run() {
+        new NERTaggerServer(properties);
+      }
+    };
+    server.setDaemon(true);
+    server.start();
+  }
+
+}
@@ -0,0 +1,80 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.FramedProtocol;
+
+public class FramedProtocolTest {
+
+  @Test
+  public void pipelinedFrames() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, "<NAF>Bilbo</NAF>");
+    FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, "Donostia ñ");
+    out.flush();
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    FramedProtocol.Frame first = FramedProtocol.readFrame(in);
+    assertEquals(FramedProtocol.DOCUMENT, first.getType());
+    assertEquals("<NAF>Bilbo</NAF>", first.getText());
+    assertEquals("Donostia ñ", FramedProtocol.readFrame(in).getText());
+    assertNull(FramedProtocol.readFrame(in));
+  }
+
+  @Test
+  public void fileFrame() throws IOException {
+    Path file = Files.createTempFile("frame", ".naf");
+    try {
+      Files.write(file, "<NAF>Bilbo ñ</NAF>".getBytes(StandardCharsets.UTF_8));
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, file);
+      FramedProtocol.writeFrame(out, FramedProtocol.STATS, "");
+      out.flush();
+      DataInputStream in = new DataInputStream(
+          new ByteArrayInputStream(bytes.toByteArray()));
+      FramedProtocol.Frame frame = FramedProtocol.readFrame(in);
+      assertEquals(FramedProtocol.DOCUMENT, frame.getType());
+      assertEquals("<NAF>Bilbo ñ</NAF>", frame.getText());
+      assertEquals(FramedProtocol.STATS, FramedProtocol.readFrame(in).getType());
+      assertNull(FramedProtocol.readFrame(in));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void truncatedFrame() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, "<NAF></NAF>");
+    out.flush();
+    byte[] truncated = new byte[bytes.size() - 2];
+    System.arraycopy(bytes.toByteArray(), 0, truncated, 0, truncated.length);
+    FramedProtocol.readFrame(
+        new DataInputStream(new ByteArrayInputStream(truncated)));
+  }
+
+  @Test
+  public void magic() {
+    assertTrue(FramedProtocol.isMagic(new byte[] { 'N', 'E', 'R', 'C' }, 4));
+    assertFalse(FramedProtocol.isMagic("<?xm".getBytes(), 4));
+    assertFalse(FramedProtocol.isMagic(new byte[] { 'N', 'E', 0, 0 }, 2));
+  }
+
+}
@@ -0,0 +1,179 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.jdom2.JDOMException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import ixa.kaflib.Entity;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+
+public class IncrementalAnnotationTest {
+
+  private static final String[][] SENTENCES = {
+      { "Achilles", "met", "Abraham", "Lincoln", "." },
+      { "Aristotle", "wrote", "to", "Ayn", "Rand", "." },
+      { "the", "film", "was", "long", "." },
+      { "Achilles", "met", "Abraham", "Lincoln", "." } };
+
+  private static Annotate incremental;
+  private static Annotate full;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    full = Fixtures.dictionaryAnnotator();
+    incremental = Fixtures.dictionaryAnnotator("incremental", "true");
+  }
+
+  @Test
+  public void sameEntitiesAsFullAnnotation() throws Exception {
+    KAFDocument kaf = getDocument("Aristotle");
+    incremental.annotateNEsToKAF(kaf);
+    KAFDocument expected = getDocument("Aristotle");
+    full.annotateNEsToKAF(expected);
+    assertEquals(getEntities(expected), getEntities(kaf));
+    assertTrue(kaf.toString().contains("<nercFingerprints>"));
+    // annotated again unchanged, nothing changes
+    KAFDocument again = reparse(kaf);
+    incremental.annotateNEsToKAF(again);
+    assertEquals(getEntities(kaf), getEntities(again));
+    assertEquals(getEntities(kaf), getEntities(reparse(again)));
+  }
+
+  @Test
+  public void onlyChangedSentencesReplaced() throws Exception {
+    KAFDocument kaf = getDocument("Aristotle");
+    incremental.annotateNEsToKAF(kaf);
+    Map<String, String> previous = getEntities(kaf);
+    KAFDocument edited = reparse(kaf);
+    // an entity of another tool, with an external reference
+    List<Term> terms = new ArrayList<>();
+    terms.add(edited.getTerms().get(7));
+    List<ixa.kaflib.Span<Term>> references = new ArrayList<>();
+    references.add(KAFDocument.newTermSpan(terms));
+    Entity other = edited.newEntity("x1", references);
+    other.setType("OTHER");
+    other.addExternalRef(edited.newExternalRef("wikipedia", "Reading"));
+    // the second sentence loses Aristotle
+    edited.getSentences().get(1).get(0).setForm("Hermes");
+    edited = reparse(edited);
+
+    incremental.annotateNEsToKAF(edited);
+    // the replaced entities are gone from every index of the document, which
+    // fails if kaflib no longer has the internals they are removed through
+    Term hermes = edited.getTerms().get(5);
+    assertEquals("Hermes", hermes.getStr());
+    assertTrue(edited.getEntitiesByTerm(hermes).isEmpty());
+    assertEquals(getEntities(edited).size(),
+        edited.getLayer(KAFDocument.Layer.ENTITIES).size());
+    List<String> secondSentence = new ArrayList<>();
+    for (Entity entity : edited.getEntitiesBySent(2)) {
+      secondSentence.add(entity.getStr());
+    }
+    Collections.sort(secondSentence);
+    assertEquals("[Ayn Rand, to]", secondSentence.toString());
+    edited = reparse(edited);
+    Map<String, String> entities = getEntities(edited);
+    // the entities of the other sentences are kept with their ids
+    for (Map.Entry<String, String> entity : previous.entrySet()) {
+      if (entity.getValue().startsWith("Aristotle")
+          || entity.getValue().startsWith("Ayn Rand")) {
+        assertFalse(entities.containsKey(entity.getKey()));
+      } else {
+        assertEquals(entity.getValue(), entities.get(entity.getKey()));
+      }
+    }
+    assertEquals("to OTHER", entities.get("x1"));
+    for (Entity entity : edited.getEntities()) {
+      if (entity.getId().equals("x1")) {
+        assertEquals("Reading",
+            entity.getExternalRefs().get(0).getReference());
+      }
+    }
+    // Ayn Rand tagged again, with a new id
+    assertEquals("Ayn Rand person",
+        entities.get("e" + (previous.size() + 1)));
+    assertEquals(previous.size(), entities.size());
+
+    KAFDocument expected = getDocument("Hermes");
+    full.annotateNEsToKAF(expected);
+    entities.remove("x1");
+    List<String> expectedEntities = new ArrayList<>(
+        getEntities(expected).values());
+    List<String> actualEntities = new ArrayList<>(entities.values());
+    Collections.sort(expectedEntities);
+    Collections.sort(actualEntities);
+    assertEquals(expectedEntities, actualEntities);
+  }
+
+  @Test
+  public void changedGazetteerEntry() throws Exception {
+    File dictsDir = Fixtures.dictionaryDir();
+    Path names = new File(dictsDir, "names.txt").toPath();
+    Properties properties = Fixtures.dictionaryProperties(dictsDir,
+        "incremental", "true");
+    KAFDocument kaf = getDocument("Aristotle");
+    new Annotate(properties).annotateNEsToKAF(kaf);
+    // as many entries and classes, one of them another name
+    String gazetteer = new String(Files.readAllBytes(names),
+        StandardCharsets.UTF_8);
+    Files.write(names, gazetteer.replace("Achilles\tperson",
+        "Hermes\tperson").getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(names, FileTime.fromMillis(
+        Files.getLastModifiedTime(names).toMillis() + 10000));
+
+    KAFDocument again = reparse(kaf);
+    new Annotate(properties).annotateNEsToKAF(again);
+    Map<String, String> entities = getEntities(again);
+    assertFalse(entities.containsValue("Achilles person"));
+    assertTrue(entities.containsValue("Abraham Lincoln person"));
+  }
+
+  /**
+   * Get the text and type of the entities of a document by id.
+   */
+  private static Map<String, String> getEntities(KAFDocument kaf) {
+    Map<String, String> entities = new TreeMap<>();
+    for (Entity entity : kaf.getEntities()) {
+      entities.put(entity.getId(), entity.getStr() + " " + entity.getType());
+    }
+    return entities;
+  }
+
+  private static KAFDocument reparse(KAFDocument kaf)
+      throws IOException, JDOMException {
+    return KAFDocument.createFromStream(new StringReader(kaf.toString()));
+  }
+
+  /**
+   * Get the document of the sentences, with the given first word of the
+   * second one.
+   */
+  private static KAFDocument getDocument(String firstWord)
+      throws IOException, JDOMException {
+    String[][] sentences = SENTENCES.clone();
+    sentences[1] = sentences[1].clone();
+    sentences[1][0] = firstWord;
+    return reparse(Fixtures.naf(sentences));
+  }
+
+}
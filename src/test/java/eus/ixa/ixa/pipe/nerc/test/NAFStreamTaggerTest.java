@@ -0,0 +1,91 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.jdom2.JDOMException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.NAFStreamTagger;
+import ixa.kaflib.KAFDocument;
+
+public class NAFStreamTaggerTest {
+
+  private static final String[][] SENTENCES = {
+      { "Achilles", "met", "Abraham", "Lincoln", "." },
+      { "the", "film", "was", "long", "." },
+      { "Ayn", "Rand", "&", "Aristotle", "." } };
+
+  private static Annotate annotator;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    annotator = Fixtures.dictionaryAnnotator();
+  }
+
+  @Test
+  public void streamingFormats() {
+    assertTrue(NAFStreamTagger.isStreamingFormat("OpenNLP"));
+    assertTrue(NAFStreamTagger.isStreamingFormat("json"));
+    assertFalse(NAFStreamTagger.isStreamingFormat("conll02"));
+    assertFalse(NAFStreamTagger.isStreamingFormat("naf"));
+  }
+
+  @Test
+  public void sameOpenNLPAsDocument() throws Exception {
+    KAFDocument kaf = Fixtures.naf(SENTENCES);
+    NAFStreamTagger tagger = new NAFStreamTagger(
+        new StringReader(kaf.toString()));
+    assertEquals("en", tagger.getLang());
+    StringWriter writer = new StringWriter();
+    tagger.annotate(annotator, "opennlp", writer);
+    assertEquals(annotator.annotateNEsToOpenNLP(kaf), writer.toString());
+  }
+
+  @Test
+  public void json() throws Exception {
+    StringWriter writer = new StringWriter();
+    new NAFStreamTagger(new StringReader(Fixtures.naf(SENTENCES).toString()))
+        .annotate(annotator, "json", writer);
+    assertEquals("{\"entities\":["
+        + "{\"sentence\":0,\"start\":0,\"end\":1,\"type\":\"person\","
+        + "\"text\":\"Achilles\"},"
+        + "{\"sentence\":0,\"start\":2,\"end\":4,\"type\":\"person\","
+        + "\"text\":\"Abraham Lincoln\"},"
+        + "{\"sentence\":2,\"start\":0,\"end\":2,\"type\":\"person\","
+        + "\"text\":\"Ayn Rand\"},"
+        + "{\"sentence\":2,\"start\":3,\"end\":4,\"type\":\"person\","
+        + "\"text\":\"Aristotle\"}]}", writer.toString());
+  }
+
+  @Test
+  public void noText() throws Exception {
+    StringWriter writer = new StringWriter();
+    new NAFStreamTagger(new StringReader(
+        new KAFDocument("en", "v1.naf").toString()))
+        .annotate(annotator, "json", writer);
+    assertEquals("{\"entities\":[]}", writer.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notStreamingFormat() throws Exception {
+    new NAFStreamTagger(new StringReader(Fixtures.naf(SENTENCES).toString()))
+        .annotate(annotator, "conll02", new StringWriter());
+  }
+
+  @Test(expected = JDOMException.class)
+  public void badlyFormattedDocument() throws Exception {
+    // cut within the text layer, as nothing after it is read
+    String naf = Fixtures.naf(SENTENCES).toString();
+    new NAFStreamTagger(new StringReader(naf.substring(0, naf.indexOf("film"))))
+        .annotate(annotator, "opennlp", new StringWriter());
+  }
+
+}
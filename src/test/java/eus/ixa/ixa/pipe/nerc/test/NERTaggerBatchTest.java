@@ -0,0 +1,123 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.NERTaggerBatch;
+
+public class NERTaggerBatchTest {
+
+  private static final String[][] SENTENCES = {
+      { "Achilles", "met", "Abraham", "Lincoln", "." },
+      { "Zeus", "wrote", "to", "Apollo", "." },
+      { "the", "film", "was", "long", "." } };
+
+  private static File dictsDir;
+  private static Path inputDir;
+  private static Map<Path, Path> documents;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    dictsDir = Fixtures.dictionaryDir();
+    inputDir = Files.createTempDirectory("batch");
+    for (int i = 0; i < 30; i++) {
+      Path document = inputDir.resolve("part" + i % 3)
+          .resolve("doc" + i + ".naf");
+      Files.createDirectories(document.getParent());
+      Files.write(document,
+          getDocument(i).getBytes(StandardCharsets.UTF_8));
+    }
+    Files.write(inputDir.resolve("broken.naf"),
+        "<NAF>".getBytes(StandardCharsets.UTF_8));
+    documents = NERTaggerBatch.getRelativeDocuments(
+        Collections.singletonList(inputDir.toString()));
+  }
+
+  @Test
+  public void pipelinedSameAsSequential() throws Exception {
+    assertEquals(31, documents.size());
+    Path sequential = Files.createTempDirectory("sequential");
+    assertEquals(1, new NERTaggerBatch(getProperties(sequential))
+        .annotate(documents));
+
+    Path pipelined = Files.createTempDirectory("pipelined");
+    assertEquals(1, new NERTaggerBatch(getProperties(pipelined, "pipeline",
+        "true", "threads", "2", "pipelineQueue", "8", "sentenceThreads", "2"))
+            .annotate(documents));
+
+    for (int i = 0; i < 30; i++) {
+      Path output = Paths.get("part" + i % 3, "doc" + i + ".ner.naf");
+      String expected = read(sequential.resolve(output));
+      assertTrue(expected, expected.contains("<entities>"));
+      assertEquals(output.toString(), expected,
+          read(pipelined.resolve(output)));
+    }
+    assertFalse(Files.exists(pipelined.resolve("broken.ner.naf")));
+  }
+
+  @Test
+  public void conllOutput() throws Exception {
+    Path outputDir = Files.createTempDirectory("conll");
+    assertEquals(1, new NERTaggerBatch(getProperties(outputDir,
+        "outputFormat", "conll02", "pipeline", "true")).annotate(documents));
+    List<String> lines = Files.readAllLines(
+        outputDir.resolve("part0").resolve("doc0.ner.conll02"),
+        StandardCharsets.UTF_8);
+    assertTrue(lines.get(0), lines.get(0).startsWith("Achilles\t"));
+    assertTrue(lines.get(0), lines.get(0).endsWith("\tB-per"));
+    assertTrue(lines.get(1), lines.get(1).endsWith("\tO"));
+    assertTrue(lines.get(2), lines.get(2).endsWith("\tB-per"));
+    assertTrue(lines.get(3), lines.get(3).endsWith("\tI-per"));
+  }
+
+  /**
+   * The properties writing NAF to a directory with one thread, with the
+   * given keys and values on top.
+   */
+  private static Properties getProperties(Path outputDir,
+      String... overrides) {
+    Properties properties = Fixtures.dictionaryProperties(dictsDir,
+        overrides);
+    properties.setProperty("outputDir", outputDir.toString());
+    properties.putIfAbsent("outputFormat", "naf");
+    properties.putIfAbsent("threads", "1");
+    return properties;
+  }
+
+  /**
+   * Read an annotated document without the timestamps of its linguistic
+   * processors.
+   */
+  private static String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8)
+        .replaceAll("(begin|end)?[tT]imestamp=\"[^\"]*\"", "");
+  }
+
+  /**
+   * A document with the sentences repeated a different number of times.
+   */
+  private static String getDocument(int index) {
+    List<String[]> sentences = new ArrayList<>();
+    for (int i = 0; i <= index; i++) {
+      Collections.addAll(sentences, SENTENCES);
+    }
+    return Fixtures.naf(sentences.toArray(new String[0][])).toString();
+  }
+
+}
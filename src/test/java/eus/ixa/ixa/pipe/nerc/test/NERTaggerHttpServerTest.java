@@ -0,0 +1,151 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class NERTaggerHttpServerTest {
+
+  private static int httpPort;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    httpPort = Fixtures.getFreePort();
+    Fixtures.startServer(Fixtures.dictionaryProperties("port",
+        String.valueOf(Fixtures.getFreePort()), "httpPort",
+        String.valueOf(httpPort), "threads", "1", "outputFormat", "naf"));
+    for (int i = 0; i < 100; i++) {
+      try {
+        if (get("/health").startsWith("200")) {
+          return;
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(100);
+    }
+    throw new IllegalStateException("HTTP server not started");
+  }
+
+  @Test
+  public void health() throws IOException {
+    String reply = get("/health");
+    assertEquals("200 {\"status\":\"ok\",\"models\":[\"en\"]}", reply);
+  }
+
+  @Test
+  public void annotateTokens() throws IOException {
+    String reply = post("/annotate", "application/json",
+        "{\"sentences\":[[\"Achilles\",\"met\",\"Abraham\",\"Lincoln\"],[],"
+            + "[\"the\",\"film\"]]}");
+    assertTrue(reply, reply.startsWith("200 {\"entities\":["));
+    assertTrue(reply, reply.contains("\"Achilles\""));
+    assertTrue(reply, reply.contains("\"Abraham Lincoln\""));
+    assertTrue(reply, reply.contains("\"person\""));
+  }
+
+  @Test
+  public void badRequests() throws IOException {
+    assertTrue(get("/annotate").startsWith("405 "));
+    assertTrue(post("/annotate?format=conll02", "application/json",
+        "{\"sentences\":[]}").startsWith("400 "));
+    assertTrue(post("/annotate", "application/json", "[1]")
+        .startsWith("400 "));
+    assertTrue(post("/annotate?format=xml", "application/xml", "<NAF/>")
+        .startsWith("400 "));
+  }
+
+  @Test
+  public void overloaded() throws Exception {
+    // requests whose body never arrives keep the only worker busy and fill
+    // the queue of 16 requests
+    List<Socket> stalled = new ArrayList<>();
+    try {
+      for (int i = 0; i < 17; i++) {
+        Socket socket = new Socket("localhost", httpPort);
+        OutputStream out = socket.getOutputStream();
+        out.write(("POST /annotate HTTP/1.1\r\nHost: localhost\r\n"
+            + "Content-Type: application/json\r\nContent-Length: 100\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        stalled.add(socket);
+      }
+      String stats = "";
+      for (int i = 0; i < 100 && !stats.contains("queueDepth=16\n"); i++) {
+        Thread.sleep(50);
+        stats = get("/stats");
+      }
+      assertTrue(stats, stats.contains("queueDepth=16\n"));
+      // still answered, as they are not queued
+      assertTrue(get("/health").startsWith("200 "));
+      String reply = post("/annotate", "application/json",
+          "{\"sentences\":[[\"Achilles\"]]}");
+      assertTrue(reply, reply.startsWith("503 "));
+      assertTrue(get("/stats").contains("rejected=1\n"));
+    } finally {
+      for (Socket socket : stalled) {
+        socket.close();
+      }
+    }
+  }
+
+  private static String get(String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://localhost:" + httpPort + path).openConnection();
+    return getReply(connection);
+  }
+
+  private static String post(String path, String contentType, String body)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://localhost:" + httpPort + path).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", contentType);
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return getReply(connection);
+  }
+
+  /**
+   * Get the status and the body of a reply.
+   */
+  private static String getReply(HttpURLConnection connection)
+      throws IOException {
+    connection.setConnectTimeout(5000);
+    connection.setReadTimeout(5000);
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream()
+        : connection.getErrorStream();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if (in != null) {
+      try {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          body.write(buffer, 0, read);
+        }
+      } finally {
+        in.close();
+      }
+    }
+    return status + " " + new String(body.toByteArray(),
+        StandardCharsets.UTF_8);
+  }
+
+}
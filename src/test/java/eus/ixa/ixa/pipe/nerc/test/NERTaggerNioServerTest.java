@@ -0,0 +1,160 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.FramedProtocol;
+import eus.ixa.ixa.pipe.nerc.NERTaggerNioServer;
+
+public class NERTaggerNioServerTest {
+
+  private static int port;
+  private static String document;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    document = Fixtures.naf(new String[][] {
+        { "Achilles", "met", "Abraham", "Lincoln", "." },
+        { "Zeus", "wrote", "to", "Apollo", "." } }).toString();
+    port = Fixtures.getFreePort();
+    // a request longer than a megabyte is answered as overloaded
+    Fixtures.startServer(Fixtures.dictionaryProperties("port",
+        String.valueOf(port), "nio", "true", "threads", "2", "maxBufferedMB",
+        "1", "outputFormat", "naf"));
+    for (int i = 0; i < 100; i++) {
+      try {
+        new Socket("localhost", port).close();
+        return;
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(100);
+    }
+    throw new IllegalStateException("NIO server not started");
+  }
+
+  @Test
+  public void pipelinedFrames() throws IOException {
+    try (Socket socket = new Socket("localhost", port)) {
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      out.write(FramedProtocol.MAGIC);
+      for (int i = 0; i < 3; i++) {
+        FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, document);
+      }
+      FramedProtocol.writeFrame(out, FramedProtocol.STATS, "");
+      out.flush();
+      socket.shutdownOutput();
+      DataInputStream in = new DataInputStream(
+          new BufferedInputStream(socket.getInputStream()));
+      for (int i = 0; i < 3; i++) {
+        FramedProtocol.Frame frame = FramedProtocol.readFrame(in);
+        assertEquals(frame.getText(), FramedProtocol.RESULT, frame.getType());
+        assertTrue(frame.getText().contains("<entities>"));
+      }
+      FramedProtocol.Frame stats = FramedProtocol.readFrame(in);
+      assertEquals(FramedProtocol.STATS, stats.getType());
+      assertTrue(stats.getText().contains("queueDepth="));
+      assertNull(FramedProtocol.readFrame(in));
+    }
+  }
+
+  @Test
+  public void lineProtocol() throws IOException {
+    String reply = sendLines(document + "\n<ENDOFDOCUMENT>\n");
+    assertTrue(reply, reply.contains("<entities>"));
+  }
+
+  @Test
+  public void emptyConnections() throws IOException {
+    long accepted = getStat("accepted");
+    new Socket("localhost", port).close();
+    assertEquals("", sendLines(""));
+    assertEquals("", sendLines("\n \n"));
+    // a document afterwards is the only one queued
+    assertTrue(sendLines(document).contains("<entities>"));
+    assertEquals(accepted + 1, getStat("accepted"));
+  }
+
+  @Test
+  public void overloaded() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 2 * 1024 * 1024) {
+      sb.append("Achilles met Abraham Lincoln . ");
+    }
+    String longText = sb.toString();
+    long rejected = getStat("rejected");
+    try (Socket socket = new Socket("localhost", port)) {
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      out.write(FramedProtocol.MAGIC);
+      FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, longText);
+      // the frames after the rejected one are still annotated
+      FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, document);
+      out.flush();
+      socket.shutdownOutput();
+      DataInputStream in = new DataInputStream(
+          new BufferedInputStream(socket.getInputStream()));
+      assertEquals(FramedProtocol.OVERLOADED,
+          FramedProtocol.readFrame(in).getType());
+      assertEquals(FramedProtocol.RESULT,
+          FramedProtocol.readFrame(in).getType());
+      assertNull(FramedProtocol.readFrame(in));
+    }
+    String reply = sendLines(longText);
+    assertTrue(reply, reply.startsWith(NERTaggerNioServer.LINE_OVERLOADED
+        + "\n-> ERROR"));
+    assertEquals(rejected + 2, getStat("rejected"));
+    assertTrue(getStat("bufferedBytes") < 1024 * 1024);
+  }
+
+  private static String sendLines(String text) throws IOException {
+    try (Socket socket = new Socket("localhost", port)) {
+      socket.getOutputStream().write(text.getBytes(StandardCharsets.UTF_8));
+      socket.shutdownOutput();
+      return read(socket.getInputStream());
+    }
+  }
+
+  private static long getStat(String name) throws IOException {
+    try (Socket socket = new Socket("localhost", port)) {
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.write(FramedProtocol.MAGIC);
+      FramedProtocol.writeFrame(out, FramedProtocol.STATS, "");
+      out.flush();
+      String stats = FramedProtocol
+          .readFrame(new DataInputStream(socket.getInputStream())).getText();
+      for (String line : stats.split("\n")) {
+        if (line.startsWith(name + "=")) {
+          return Long.parseLong(line.substring(name.length() + 1));
+        }
+      }
+      throw new IllegalStateException("No " + name + " in " + stats);
+    }
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      bytes.write(buffer, 0, read);
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,121 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.FramedProtocol;
+import eus.ixa.ixa.pipe.nerc.NERCMetrics;
+import ixa.kaflib.KAFDocument;
+
+public class ResponseCacheTest {
+
+  private static final String[] WORDS = { "Achilles", "met", "Abraham",
+      "Lincoln", "and", "Aristotle", "." };
+
+  private static int port;
+  private static NERCMetrics metrics = NERCMetrics.getInstance();
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    port = Fixtures.getFreePort();
+    // a megabyte of replies kept for a second
+    Fixtures.startServer(Fixtures.dictionaryProperties("port",
+        String.valueOf(port), "threads", "1", "responseCache", "1",
+        "responseCacheTtl", "1", "outputFormat", "naf"));
+    // a whole request, as a connection without any would still be served
+    // after the tests counted the cache misses
+    for (int i = 0; i < 100; i++) {
+      try {
+        annotate(getDocument(0, 1));
+        return;
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(100);
+    }
+    throw new IllegalStateException("Server not started");
+  }
+
+  @Test
+  public void duplicatedDocuments() throws IOException {
+    String document = getDocument(1, 20);
+    long hits = metrics.getResponseCacheHits();
+    long misses = metrics.getResponseCacheMisses();
+    String reply = annotate(document);
+    assertTrue(reply.contains("<entities>"));
+    // the same document with other line endings and trailing whitespace
+    assertEquals(reply, annotate(document.replace("\n", "\r\n") + "\n\n "));
+    assertEquals(hits + 1, metrics.getResponseCacheHits());
+    assertEquals(misses + 1, metrics.getResponseCacheMisses());
+  }
+
+  @Test
+  public void expiredReplies() throws Exception {
+    String document = getDocument(2, 20);
+    long misses = metrics.getResponseCacheMisses();
+    annotate(document);
+    annotate(document);
+    assertEquals(misses + 1, metrics.getResponseCacheMisses());
+    Thread.sleep(1100);
+    annotate(document);
+    assertEquals(misses + 2, metrics.getResponseCacheMisses());
+  }
+
+  @Test
+  public void evictedReplies() throws IOException {
+    // every reply takes over half of the cache
+    String first = getDocument(3, 1500);
+    String second = getDocument(4, 1500);
+    long misses = metrics.getResponseCacheMisses();
+    assertTrue(annotate(first).length() > 300000);
+    annotate(second);
+    annotate(second);
+    assertEquals(misses + 2, metrics.getResponseCacheMisses());
+    annotate(first);
+    assertEquals(misses + 3, metrics.getResponseCacheMisses());
+  }
+
+  private static String annotate(String document) throws IOException {
+    try (Socket socket = new Socket("localhost", port)) {
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      out.write(FramedProtocol.MAGIC);
+      FramedProtocol.writeFrame(out, FramedProtocol.DOCUMENT, document);
+      out.flush();
+      socket.shutdownOutput();
+      FramedProtocol.Frame frame = FramedProtocol.readFrame(
+          new DataInputStream(new BufferedInputStream(
+              socket.getInputStream())));
+      assertEquals(frame.getText(), FramedProtocol.RESULT, frame.getType());
+      return frame.getText();
+    }
+  }
+
+  /**
+   * A document of the given number of tokens, made distinct by its public
+   * id.
+   */
+  private static String getDocument(int id, int tokens) {
+    String[][] sentences = new String[(tokens + WORDS.length - 1)
+        / WORDS.length][];
+    for (int s = 0; s < sentences.length; s++) {
+      sentences[s] = Arrays.copyOf(WORDS,
+          Math.min(WORDS.length, tokens - s * WORDS.length));
+    }
+    KAFDocument kaf = Fixtures.naf(sentences);
+    kaf.createPublic().publicId = "doc" + id;
+    return kaf.toString();
+  }
+
+}
@@ -0,0 +1,58 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.ml.nerc.NumericNERTagger;
+import eus.ixa.ixa.pipe.ml.utils.StringUtils;
+import eus.ixa.ixa.pipe.nerc.ReusableNumericTagger;
+
+public class ReusableNumericTaggerTest {
+
+  private static final String[][] SENTENCES = {
+      { "The", "war", "ended", "in", "1865", "." },
+      { "He", "paid", "25", "%", "of", "$", "300", "on", "June", "3", "." },
+      {},
+      { "No", "numbers", "here" },
+      { "It", "cost", "3.5", "million", "euros", "in", "2016" } };
+
+  @Test
+  public void sameSpansAsNewTaggers() {
+    ReusableNumericTagger tagger = new ReusableNumericTagger();
+    for (int round = 0; round < 3; round++) {
+      for (String[] tokens : SENTENCES) {
+        NumericNERTagger expected = new NumericNERTagger(new BufferedReader(
+            new StringReader(StringUtils.getStringFromTokens(tokens))));
+        assertEquals(Arrays.toString(expected.nercToSpans(tokens)),
+            Arrays.toString(tagger.nercToSpans(tokens)));
+      }
+    }
+  }
+
+  @Test
+  public void sentenceLongerThanLexerBuffer() {
+    // over 16K characters, the buffer the lexer reads into, with numbers
+    // spread so that some of them are cut by a refill
+    String[] tokens = new String[6000];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = i % 7 == 0 ? String.valueOf(1800 + i % 200)
+          : i % 11 == 0 ? "25" : i % 13 == 0 ? "%" : "word";
+    }
+    NumericNERTagger expected = new NumericNERTagger(new BufferedReader(
+        new StringReader(StringUtils.getStringFromTokens(tokens))));
+    ReusableNumericTagger tagger = new ReusableNumericTagger();
+    tagger.nercToSpans(SENTENCES[1]);
+    assertEquals(Arrays.toString(expected.nercToSpans(tokens)),
+        Arrays.toString(tagger.nercToSpans(tokens)));
+    assertEquals(Arrays.toString(new NumericNERTagger(new BufferedReader(
+        new StringReader(StringUtils.getStringFromTokens(SENTENCES[4]))))
+        .nercToSpans(SENTENCES[4])),
+        Arrays.toString(tagger.nercToSpans(SENTENCES[4])));
+  }
+
+}
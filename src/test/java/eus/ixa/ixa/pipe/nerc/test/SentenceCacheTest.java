@@ -0,0 +1,55 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.ml.utils.Span;
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.NERCMetrics;
+
+public class SentenceCacheTest {
+
+  private static Annotate annotator;
+  private static NERCMetrics metrics = NERCMetrics.getInstance();
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    // one sentence in each of the 16 segments
+    annotator = Fixtures.dictionaryAnnotator("sentenceCache", "16");
+  }
+
+  @Test
+  public void repeatedSentences() {
+    String[] tokens = { "Achilles", "met", "Abraham", "Lincoln", "." };
+    long hits = metrics.getSentenceCacheHits();
+    Span[] spans = annotator.nercToSpans(tokens);
+    assertEquals(Arrays.toString(spans),
+        Arrays.toString(annotator.nercToSpans(tokens.clone())));
+    assertEquals(hits + 1, metrics.getSentenceCacheHits());
+    // the cached spans are not changed through the returned arrays
+    annotator.nercToSpans(tokens)[0] = null;
+    assertEquals(Arrays.toString(spans),
+        Arrays.toString(annotator.nercToSpans(tokens)));
+  }
+
+  @Test
+  public void evictedSentences() {
+    String[] tokens = { "Aristotle", "met", "Ayn", "Rand", "." };
+    annotator.nercToSpans(tokens);
+    long misses = metrics.getSentenceCacheMisses();
+    annotator.nercToSpans(tokens);
+    assertEquals(misses, metrics.getSentenceCacheMisses());
+    for (int i = 0; i < 1000; i++) {
+      annotator.nercToSpans(new String[] { "sentence", String.valueOf(i) });
+    }
+    misses = metrics.getSentenceCacheMisses();
+    annotator.nercToSpans(tokens);
+    assertEquals(misses + 1, metrics.getSentenceCacheMisses());
+  }
+
+}
@@ -0,0 +1,125 @@
+package eus.ixa.ixa.pipe.nerc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.TokenStreamTagger;
+
+public class TokenStreamTaggerTest {
+
+  private static final String TOKENS = "Achilles met Abraham Lincoln .\n"
+      + "\n"
+      + "  Ayn Rand   wrote .  \n";
+
+  private static final String CONLL = "Achilles\tNNP\n"
+      + "met\tVBD\n"
+      + "Abraham\tNNP\n"
+      + "Lincoln\tNNP\n"
+      + ".\t.\n"
+      + "\n"
+      + "\n"
+      + "Ayn\tNNP\n"
+      + "Rand\tNNP\n"
+      + "wrote\tVBD\n"
+      + ".\t.\n";
+
+  private static Annotate annotator;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    annotator = Fixtures.dictionaryAnnotator();
+  }
+
+  @Test
+  public void formats() {
+    assertTrue(TokenStreamTagger.isTokenizedFormat("tokens"));
+    assertTrue(TokenStreamTagger.isTokenizedFormat("CoNLL"));
+    assertFalse(TokenStreamTagger.isTokenizedFormat("naf"));
+    assertFalse(TokenStreamTagger.isTokenizedFormat(null));
+    assertTrue(TokenStreamTagger.isOutputFormat("conll03"));
+    assertTrue(TokenStreamTagger.isOutputFormat("json"));
+    assertFalse(TokenStreamTagger.isOutputFormat("naf"));
+  }
+
+  @Test
+  public void tokensToCoNLL02() throws IOException {
+    assertEquals("Achilles\tB-per\n"
+        + "met\tO\n"
+        + "Abraham\tB-per\n"
+        + "Lincoln\tI-per\n"
+        + ".\tO\n"
+        + "\n"
+        + "Ayn\tB-per\n"
+        + "Rand\tI-per\n"
+        + "wrote\tO\n"
+        + ".\tO\n"
+        + "\n", annotate(TOKENS, "tokens", "conll02"));
+  }
+
+  @Test
+  public void conllToCoNLL03() throws IOException {
+    // the input columns are kept before the tag
+    assertEquals("Achilles\tNNP\tI-per\n"
+        + "met\tVBD\tO\n"
+        + "Abraham\tNNP\tI-per\n"
+        + "Lincoln\tNNP\tI-per\n"
+        + ".\t.\tO\n"
+        + "\n"
+        + "Ayn\tNNP\tI-per\n"
+        + "Rand\tNNP\tI-per\n"
+        + "wrote\tVBD\tO\n"
+        + ".\t.\tO\n"
+        + "\n", annotate(CONLL, "conll", "conll03"));
+  }
+
+  @Test
+  public void sameJSONForBothInputs() throws IOException {
+    String expected = "{\"entities\":["
+        + "{\"sentence\":0,\"start\":0,\"end\":1,\"type\":\"person\","
+        + "\"text\":\"Achilles\"},"
+        + "{\"sentence\":0,\"start\":2,\"end\":4,\"type\":\"person\","
+        + "\"text\":\"Abraham Lincoln\"},"
+        + "{\"sentence\":1,\"start\":0,\"end\":2,\"type\":\"person\","
+        + "\"text\":\"Ayn Rand\"}]}";
+    assertEquals(expected, annotate(TOKENS, "tokens", "json"));
+    assertEquals(expected, annotate(CONLL, "conll", "json"));
+    assertEquals(annotate(TOKENS, "tokens", "opennlp"),
+        annotate(CONLL, "conll", "opennlp"));
+  }
+
+  @Test
+  public void emptyInput() throws IOException {
+    assertEquals("", annotate("\n\n", "tokens", "conll02"));
+    assertEquals("{\"entities\":[]}", annotate("", "conll", "json"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notTokenizedFormat() {
+    new TokenStreamTagger(new BufferedReader(new StringReader(TOKENS)),
+        "naf");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notOutputFormat() throws IOException {
+    annotate(TOKENS, "tokens", "naf");
+  }
+
+  private static String annotate(String input, String inputFormat,
+      String outputFormat) throws IOException {
+    StringWriter writer = new StringWriter();
+    new TokenStreamTagger(new BufferedReader(new StringReader(input)),
+        inputFormat).annotate(annotator, outputFormat, writer);
+    return writer.toString();
+  }
+
+}